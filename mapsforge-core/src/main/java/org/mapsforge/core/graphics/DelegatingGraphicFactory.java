@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.core.graphics;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A GraphicFactory which forwards all calls to another GraphicFactory. Subclasses override the methods whose behavior
+ * they change.
+ */
+public abstract class DelegatingGraphicFactory implements GraphicFactory {
+	protected final GraphicFactory graphicFactory;
+
+	/**
+	 * @param graphicFactory
+	 *            the GraphicFactory to which all calls are forwarded.
+	 */
+	protected DelegatingGraphicFactory(GraphicFactory graphicFactory) {
+		this.graphicFactory = graphicFactory;
+	}
+
+	@Override
+	public Bitmap createBitmap(int width, int height) {
+		return this.graphicFactory.createBitmap(width, height);
+	}
+
+	@Override
+	public Bitmap createBitmap(int width, int height, boolean isTransparent) {
+		return this.graphicFactory.createBitmap(width, height, isTransparent);
+	}
+
+	@Override
+	public Canvas createCanvas() {
+		return this.graphicFactory.createCanvas();
+	}
+
+	@Override
+	public int createColor(Color color) {
+		return this.graphicFactory.createColor(color);
+	}
+
+	@Override
+	public int createColor(int alpha, int red, int green, int blue) {
+		return this.graphicFactory.createColor(alpha, red, green, blue);
+	}
+
+	@Override
+	public Matrix createMatrix() {
+		return this.graphicFactory.createMatrix();
+	}
+
+	@Override
+	public Paint createPaint() {
+		return this.graphicFactory.createPaint();
+	}
+
+	@Override
+	public Paint createPaint(Paint paint) {
+		return this.graphicFactory.createPaint(paint);
+	}
+
+	@Override
+	public Path createPath() {
+		return this.graphicFactory.createPath();
+	}
+
+	@Override
+	public ResourceBitmap createResourceBitmap(InputStream inputStream, int hash) throws IOException {
+		return this.graphicFactory.createResourceBitmap(inputStream, hash);
+	}
+
+	@Override
+	public TileBitmap createTileBitmap(InputStream inputStream, int tileSize, boolean isTransparent)
+			throws IOException {
+		return this.graphicFactory.createTileBitmap(inputStream, tileSize, isTransparent);
+	}
+
+	@Override
+	public TileBitmap createTileBitmap(int tileSize, boolean isTransparent) {
+		return this.graphicFactory.createTileBitmap(tileSize, isTransparent);
+	}
+
+	@Override
+	public InputStream platformSpecificSources(String relativePathPrefix, String src) throws IOException {
+		return this.graphicFactory.platformSpecificSources(relativePathPrefix, src);
+	}
+
+	@Override
+	public ResourceBitmap renderSvg(InputStream inputStream, float scaleFactor, int hash) throws IOException {
+		return this.graphicFactory.renderSvg(inputStream, scaleFactor, hash);
+	}
+}
@@ -33,6 +33,13 @@ public interface GraphicFactory {
 
 	Paint createPaint();
 
+	/**
+	 * @param paint
+	 *            the paint to copy, which must have been created by this GraphicFactory.
+	 * @return a new paint with the same properties as the given paint.
+	 */
+	Paint createPaint(Paint paint);
+
 	Path createPath();
 
 	ResourceBitmap createResourceBitmap(InputStream inputStream, int hash) throws IOException;
@@ -14,8 +14,10 @@
  */
 package org.mapsforge.core.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,6 +44,25 @@ public final class IOUtils {
 		}
 	}
 
+	/**
+	 * Reads all remaining bytes from the given input stream. The input stream is not closed.
+	 * 
+	 * @param inputStream
+	 *            the data source which should be read.
+	 * @return the bytes which have been read.
+	 * @throws IOException
+	 *             if an I/O error occurs during reading.
+	 */
+	public static byte[] readFully(InputStream inputStream) throws IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int bytesRead;
+		while ((bytesRead = inputStream.read(buffer)) != -1) {
+			outputStream.write(buffer, 0, bytesRead);
+		}
+		return outputStream.toByteArray();
+	}
+
 	private IOUtils() {
 		throw new IllegalStateException();
 	}
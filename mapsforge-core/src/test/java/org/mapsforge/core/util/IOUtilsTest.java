@@ -14,6 +14,9 @@
  */
 package org.mapsforge.core.util;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -28,4 +31,16 @@ public class IOUtilsTest {
 
 		IOUtils.closeQuietly(dummyCloseable);
 	}
+
+	@Test
+	public void readFullyTest() throws IOException {
+		Assert.assertArrayEquals(new byte[0], IOUtils.readFully(new ByteArrayInputStream(new byte[0])));
+
+		// the data is larger than the internal buffer
+		byte[] data = new byte[20000];
+		for (int i = 0; i < data.length; ++i) {
+			data[i] = (byte) i;
+		}
+		Assert.assertArrayEquals(data, IOUtils.readFully(new ByteArrayInputStream(data)));
+	}
 }
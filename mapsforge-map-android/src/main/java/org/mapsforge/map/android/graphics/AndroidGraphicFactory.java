@@ -192,6 +192,11 @@ public final class AndroidGraphicFactory implements GraphicFactory {
 		return new AndroidPaint();
 	}
 
+	@Override
+	public Paint createPaint(Paint paint) {
+		return new AndroidPaint((AndroidPaint) paint);
+	}
+
 	@Override
 	public Path createPath() {
 		return new AndroidPath();
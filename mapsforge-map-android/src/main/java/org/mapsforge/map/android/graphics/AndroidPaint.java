@@ -99,15 +99,20 @@ class AndroidPaint implements Paint {
 		throw new IllegalArgumentException("unknown font family: " + fontFamily);
 	}
 
-	final android.graphics.Paint paint = new android.graphics.Paint();
+	final android.graphics.Paint paint;
 
 	AndroidPaint() {
+		this.paint = new android.graphics.Paint();
 		this.paint.setAntiAlias(true);
 		this.paint.setStrokeCap(getAndroidCap(Cap.ROUND));
 		this.paint.setStrokeJoin(Join.ROUND);
 		this.paint.setStyle(getAndroidStyle(Style.FILL));
 	}
 
+	AndroidPaint(AndroidPaint androidPaint) {
+		this.paint = new android.graphics.Paint(androidPaint.paint);
+	}
+
 	@Override
 	public int getTextHeight(String text) {
 		Rect rect = new Rect();
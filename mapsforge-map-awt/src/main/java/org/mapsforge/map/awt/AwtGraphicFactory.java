@@ -119,6 +119,11 @@ public final class AwtGraphicFactory implements GraphicFactory {
 		return new AwtPaint();
 	}
 
+	@Override
+	public Paint createPaint(Paint paint) {
+		return new AwtPaint((AwtPaint) paint);
+	}
+
 	@Override
 	public Path createPath() {
 		return new AwtPath();
@@ -93,6 +93,20 @@ class AwtPaint implements Paint {
 		this.style = Style.FILL;
 	}
 
+	AwtPaint(AwtPaint awtPaint) {
+		this.color = awtPaint.color;
+		this.font = awtPaint.font;
+		this.stroke = awtPaint.stroke;
+		this.style = awtPaint.style;
+		this.texturePaint = awtPaint.texturePaint;
+		this.cap = awtPaint.cap;
+		this.fontName = awtPaint.fontName;
+		this.fontStyle = awtPaint.fontStyle;
+		this.strokeDasharray = awtPaint.strokeDasharray;
+		this.strokeWidth = awtPaint.strokeWidth;
+		this.textSize = awtPaint.textSize;
+	}
+
 	@Override
 	public int getTextHeight(String text) {
 		BufferedImage bufferedImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
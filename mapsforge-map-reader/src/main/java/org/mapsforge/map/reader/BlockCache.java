@@ -0,0 +1,186 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tag;
+
+/**
+ * A cache for decoded map blocks with a fixed size in bytes and LRU policy.
+ * <p>
+ * Blocks are cached per sub-file, block number and query zoom level. Ways are stored together with their tile bitmask,
+ * so that a cached block can be filtered for every tile which it covers. The size of a block is estimated from the
+ * number of its objects, tags and way nodes.
+ * <p>
+ * This class is thread-safe.
+ */
+public class BlockCache {
+	private static final int BYTES_PER_BLOCK = 64;
+	private static final int BYTES_PER_CHARACTER = 2;
+	private static final int BYTES_PER_LAT_LONG = 40;
+	private static final int BYTES_PER_OBJECT = 48;
+	private static final int BYTES_PER_REFERENCE = 8;
+	private static final int BYTES_PER_STRING = 48;
+
+	private static long estimateSize(List<Tag> tags) {
+		long size = BYTES_PER_OBJECT + tags.size() * BYTES_PER_REFERENCE;
+		for (int i = 0, n = tags.size(); i < n; ++i) {
+			// tags from the map file header are shared between blocks, so this overestimates the size
+			Tag tag = tags.get(i);
+			if (tag.value != null) {
+				size += BYTES_PER_STRING + tag.value.length() * BYTES_PER_CHARACTER;
+			}
+		}
+		return size;
+	}
+
+	private static long estimateSize(PoiWayBundle poiWayBundle) {
+		long size = BYTES_PER_BLOCK;
+
+		for (PointOfInterest pointOfInterest : poiWayBundle.pois) {
+			size += BYTES_PER_OBJECT + BYTES_PER_LAT_LONG + estimateSize(pointOfInterest.tags);
+		}
+
+		for (Way way : poiWayBundle.ways) {
+			size += BYTES_PER_OBJECT + estimateSize(way.tags);
+			if (way.labelPosition != null) {
+				size += BYTES_PER_LAT_LONG;
+			}
+			for (LatLong[] latLongs : way.latLongs) {
+				if (latLongs != null) {
+					size += BYTES_PER_OBJECT + latLongs.length * (BYTES_PER_REFERENCE + BYTES_PER_LAT_LONG);
+				}
+			}
+		}
+
+		return size;
+	}
+
+	private final long capacity;
+	private long evictions;
+	private long hits;
+	private final Map<BlockCacheKey, CachedBlock> map;
+	private long misses;
+	private long size;
+
+	/**
+	 * @param capacity
+	 *            the maximum size of all cached blocks in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	BlockCache(long capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+		}
+		this.capacity = capacity;
+		this.map = new LinkedHashMap<BlockCacheKey, CachedBlock>(16, 0.75f, true);
+	}
+
+	/**
+	 * @return the maximum size of all cached blocks in bytes.
+	 */
+	public long getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * @return the number of blocks which have been removed from the cache to free space.
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * @return the number of block lookups which could be answered from the cache.
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * @return the number of block lookups which required the block to be decoded.
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * @return the estimated size of all cached blocks in bytes.
+	 */
+	public synchronized long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Removes all blocks from the cache. The counters are not reset.
+	 */
+	synchronized void clear() {
+		this.map.clear();
+		this.size = 0;
+	}
+
+	/**
+	 * @return the cached block for the given key or null, if the block is not in the cache.
+	 */
+	synchronized PoiWayBundle get(BlockCacheKey blockCacheKey) {
+		CachedBlock cachedBlock = this.map.get(blockCacheKey);
+		if (cachedBlock == null) {
+			++this.misses;
+			return null;
+		}
+		++this.hits;
+		return cachedBlock.poiWayBundle;
+	}
+
+	/**
+	 * Adds the given decoded block to the cache and evicts the least recently used blocks if necessary. Blocks which
+	 * are larger than the capacity of the cache are not stored.
+	 */
+	synchronized void put(BlockCacheKey blockCacheKey, PoiWayBundle poiWayBundle) {
+		long blockSize = estimateSize(poiWayBundle);
+		if (blockSize > this.capacity) {
+			return;
+		}
+
+		CachedBlock previousBlock = this.map.put(blockCacheKey, new CachedBlock(poiWayBundle, blockSize));
+		if (previousBlock != null) {
+			this.size -= previousBlock.size;
+		}
+		this.size += blockSize;
+
+		Iterator<CachedBlock> iterator = this.map.values().iterator();
+		while (this.size > this.capacity) {
+			this.size -= iterator.next().size;
+			iterator.remove();
+			++this.evictions;
+		}
+	}
+
+	private static class CachedBlock {
+		final PoiWayBundle poiWayBundle;
+		final long size;
+
+		CachedBlock(PoiWayBundle poiWayBundle, long size) {
+			this.poiWayBundle = poiWayBundle;
+			this.size = size;
+		}
+	}
+}
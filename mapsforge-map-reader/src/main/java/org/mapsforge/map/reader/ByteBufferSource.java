@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link MapFileSource} which serves a map file that is completely held in a {@link ByteBuffer}, for example a map
+ * file which has been loaded from a classpath resource. No file handle is needed and all reads return views of the
+ * buffer without copying.
+ */
+class ByteBufferSource extends MapFileSource {
+	private final ByteBuffer mapData;
+
+	/**
+	 * @param mapData
+	 *            the content of the map file from its position to its limit, must not be modified afterwards.
+	 */
+	ByteBufferSource(ByteBuffer mapData) {
+		this.mapData = mapData.slice();
+	}
+
+	@Override
+	void close() {
+		// the buffer is released when garbage collected
+	}
+
+	@Override
+	long getSize() {
+		return this.mapData.capacity();
+	}
+
+	@Override
+	boolean isInMemory() {
+		return true;
+	}
+
+	@Override
+	boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	ByteBuffer read(long position, int length, ByteBuffer buffer) {
+		if (position < 0 || length < 0 || position + length > this.mapData.capacity()) {
+			return null;
+		}
+
+		// the buffer is never modified, so each caller works on its own duplicate
+		ByteBuffer view = this.mapData.duplicate();
+		view.limit((int) position + length);
+		view.position((int) position);
+		return view.slice();
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Specifies the optional sections of POIs and ways which a {@link MapDatabase} query decodes. Sections which are not
+ * requested are skipped in the map file without being decoded.
+ * 
+ * @see MapDatabase#readMapData(org.mapsforge.core.model.Tile, MapDataSink, TagFilter, java.util.Set)
+ */
+public enum DecodeSection {
+	/**
+	 * The way nodes of ways. Without this section each way is passed to the sink once without any way nodes.
+	 */
+	GEOMETRY,
+
+	/**
+	 * The label position of ways.
+	 */
+	LABEL_POSITION,
+
+	/**
+	 * The name, house number and reference of POIs and ways.
+	 */
+	NAMES,
+
+	/**
+	 * The tags of POIs and ways which are stored as tag IDs, including the elevation of POIs. Without this section the
+	 * tag filter is still applied, but the sink receives elements without these tags.
+	 */
+	TAGS;
+}
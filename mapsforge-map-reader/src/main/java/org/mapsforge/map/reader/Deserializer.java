@@ -14,6 +14,8 @@
  */
 package org.mapsforge.map.reader;
 
+import java.nio.ByteBuffer;
+
 /**
  * An utility class to convert byte arrays to numbers.
  */
@@ -34,6 +36,23 @@ final class Deserializer {
 				| (buffer[offset + 3] & 0xffL) << 8 | (buffer[offset + 4] & 0xffL);
 	}
 
+	/**
+	 * Converts five bytes of a byte buffer to an unsigned long.
+	 * <p>
+	 * The byte order is big-endian.
+	 * 
+	 * @param buffer
+	 *            the byte buffer.
+	 * @param index
+	 *            the absolute index in the buffer.
+	 * @return the long value.
+	 */
+	static long getFiveBytesLong(ByteBuffer buffer, int index) {
+		return (buffer.get(index) & 0xffL) << 32 | (buffer.get(index + 1) & 0xffL) << 24
+				| (buffer.get(index + 2) & 0xffL) << 16 | (buffer.get(index + 3) & 0xffL) << 8
+				| (buffer.get(index + 4) & 0xffL);
+	}
+
 	/**
 	 * Converts four bytes of a byte array to a signed int.
 	 * <p>
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Specifies how a {@link MapDatabase} accesses the map file.
+ */
+public enum FileAccessMode {
+	/**
+	 * Maps the whole map file into memory and decodes all blocks directly from the mapping. A single MapDatabase may be
+	 * queried by multiple threads concurrently.
+	 */
+	MEMORY_MAPPED,
+
+	/**
+	 * Reads each block via positional {@link java.nio.channels.FileChannel} reads into a buffer of the calling thread.
+	 * A single MapDatabase may be queried by multiple threads concurrently without mapping the map file into memory.
+	 */
+	POSITIONAL_READ,
+
+	/**
+	 * Reads each block via {@link java.io.RandomAccessFile}. A MapDatabase must only be queried by one thread at a
+	 * time.
+	 */
+	RANDOM_ACCESS_FILE;
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link MapFileSource} which reads via positional {@link FileChannel#read(ByteBuffer, long)} calls. Positional reads
+ * do not modify the file pointer, so one channel can be shared by all threads.
+ * <p>
+ * A thread which is interrupted while reading closes the channel for all other threads as well. In this case the
+ * channel is reopened transparently.
+ * <p>
+ * This class is thread-safe.
+ */
+class FileChannelSource extends MapFileSource {
+	private static final String READ_ONLY_MODE = "r";
+
+	private volatile boolean closed;
+	private volatile FileChannel fileChannel;
+	private final long fileSize;
+	private RandomAccessFile inputFile;
+	private final File mapFile;
+
+	FileChannelSource(File mapFile) throws IOException {
+		this.mapFile = mapFile;
+		this.inputFile = new RandomAccessFile(mapFile, READ_ONLY_MODE);
+		this.fileChannel = this.inputFile.getChannel();
+		this.fileSize = this.fileChannel.size();
+	}
+
+	@Override
+	synchronized void close() throws IOException {
+		this.closed = true;
+		this.inputFile.close();
+	}
+
+	@Override
+	long getSize() {
+		return this.fileSize;
+	}
+
+	@Override
+	boolean isInMemory() {
+		return false;
+	}
+
+	@Override
+	boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	ByteBuffer read(long position, int length, ByteBuffer buffer) throws IOException {
+		ByteBuffer readBuffer = buffer;
+		if (readBuffer == null || readBuffer.capacity() < length) {
+			readBuffer = ByteBuffer.allocate(length);
+		}
+
+		while (true) {
+			FileChannel currentFileChannel = this.fileChannel;
+			try {
+				readBuffer.clear();
+				readBuffer.limit(length);
+				if (!readFully(currentFileChannel, position, readBuffer)) {
+					return null;
+				}
+				readBuffer.flip();
+				return readBuffer;
+			} catch (ClosedChannelException e) {
+				if (this.closed || Thread.currentThread().isInterrupted()) {
+					throw e;
+				}
+				// the channel has been closed by an interrupt in another thread
+				reopen(currentFileChannel);
+			}
+		}
+	}
+
+	private static boolean readFully(FileChannel fileChannel, long position, ByteBuffer readBuffer)
+			throws IOException {
+		while (readBuffer.hasRemaining()) {
+			if (fileChannel.read(readBuffer, position + readBuffer.position()) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private synchronized void reopen(FileChannel closedFileChannel) throws IOException {
+		if (this.closed) {
+			throw new ClosedChannelException();
+		} else if (this.fileChannel != closedFileChannel) {
+			// another thread has already reopened the channel
+			return;
+		}
+
+		this.inputFile.close();
+		this.inputFile = new RandomAccessFile(this.mapFile, READ_ONLY_MODE);
+		this.fileChannel = this.inputFile.getChannel();
+	}
+}
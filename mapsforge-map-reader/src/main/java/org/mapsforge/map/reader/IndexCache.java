@@ -15,14 +15,24 @@
 package org.mapsforge.map.reader;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import org.mapsforge.core.util.LRUCache;
 import org.mapsforge.map.reader.header.SubFileParameter;
 
 /**
  * A cache for database index blocks with a fixed size and LRU policy.
+ * <p>
+ * If the complete index has been loaded on creation, all index entries are held in one array per sub-file and nothing
+ * else is cached.
+ * <p>
+ * If the map file is held in memory, the index entries are read directly from the {@link MapFileSource} and nothing is
+ * cached. If the map file can be read by multiple threads concurrently, the LRU cache is split into segments which
+ * are locked independently, so that concurrent queries rarely wait for each other. The capacity is divided evenly
+ * among the segments and each segment evicts its least recently used entries.
  */
 class IndexCache {
 	/**
@@ -30,32 +40,135 @@ class IndexCache {
 	 */
 	private static final int INDEX_ENTRIES_PER_BLOCK = 128;
 
+	/**
+	 * Number of index entries that are read at once while loading the complete index.
+	 */
+	private static final int INDEX_ENTRIES_PER_READ = 64 * INDEX_ENTRIES_PER_BLOCK;
+
+	/**
+	 * Maximum number of independently locked segments of the LRU cache.
+	 */
+	private static final int SEGMENTS_MAX = 8;
+
+	/**
+	 * Minimum number of entries per segment of the LRU cache, small caches are not split.
+	 */
+	private static final int SEGMENT_CAPACITY_MIN = 8;
+
 	/**
 	 * Maximum size in bytes of one index block.
 	 */
 	private static final int SIZE_OF_INDEX_BLOCK = INDEX_ENTRIES_PER_BLOCK * SubFileParameter.BYTES_PER_INDEX_ENTRY;
 
-	private final Map<IndexCacheEntryKey, byte[]> map;
-	private final RandomAccessFile randomAccessFile;
+	/**
+	 * Calculates the memory which is needed to load the complete index of the given sub-files.
+	 * 
+	 * @param subFileParameters
+	 *            the parameters of the sub-files.
+	 * @return the size of the loaded index in bytes.
+	 */
+	static long getLoadedIndexSize(Collection<SubFileParameter> subFileParameters) {
+		long loadedIndexSize = 0;
+		for (SubFileParameter subFileParameter : subFileParameters) {
+			loadedIndexSize += subFileParameter.numberOfBlocks * 8;
+		}
+		return loadedIndexSize;
+	}
+
+	private static long[] loadIndex(MapFileSource mapFileSource, SubFileParameter subFileParameter)
+			throws IOException {
+		if (subFileParameter.numberOfBlocks > Integer.MAX_VALUE) {
+			throw new IOException("index too large to be loaded: " + subFileParameter.numberOfBlocks);
+		}
+
+		long[] indexEntries = new long[(int) subFileParameter.numberOfBlocks];
+		ByteBuffer indexBuffer = null;
+		int indexEntry = 0;
+		while (indexEntry < indexEntries.length) {
+			int numberOfEntries = Math.min(indexEntries.length - indexEntry, INDEX_ENTRIES_PER_READ);
+			long position = subFileParameter.indexStartAddress + (long) indexEntry
+					* SubFileParameter.BYTES_PER_INDEX_ENTRY;
+			int readSize = numberOfEntries * SubFileParameter.BYTES_PER_INDEX_ENTRY;
+			indexBuffer = mapFileSource.read(position, readSize, indexBuffer);
+			if (indexBuffer == null) {
+				throw new IOException("could not read index with size: " + readSize);
+			}
+
+			for (int i = 0; i < numberOfEntries; ++i) {
+				indexEntries[indexEntry++] = Deserializer.getFiveBytesLong(indexBuffer,
+						i * SubFileParameter.BYTES_PER_INDEX_ENTRY);
+			}
+		}
+		return indexEntries;
+	}
+
+	private final long[][] loadedIndexes;
+	private final SubFileParameter[] loadedSubFiles;
+	private final MapFileSource mapFileSource;
+	private final List<LRUCache<IndexCacheEntryKey, ByteBuffer>> segments;
 
 	/**
-	 * @param randomAccessFile
+	 * @param mapFileSource
 	 *            the map file from which the index should be read and cached.
 	 * @param capacity
 	 *            the maximum number of entries in the cache.
 	 * @throws IllegalArgumentException
 	 *             if the capacity is negative.
 	 */
-	IndexCache(RandomAccessFile randomAccessFile, int capacity) {
-		this.randomAccessFile = randomAccessFile;
-		this.map = new LRUCache<IndexCacheEntryKey, byte[]>(capacity);
+	IndexCache(MapFileSource mapFileSource, int capacity) {
+		this.mapFileSource = mapFileSource;
+		this.loadedIndexes = null;
+		this.loadedSubFiles = null;
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+		}
+
+		int numberOfSegments = 1;
+		if (mapFileSource.isThreadSafe()) {
+			numberOfSegments = Math.max(1, Math.min(SEGMENTS_MAX, capacity / SEGMENT_CAPACITY_MIN));
+		}
+		int segmentCapacity = (capacity + numberOfSegments - 1) / numberOfSegments;
+		this.segments = new ArrayList<LRUCache<IndexCacheEntryKey, ByteBuffer>>(numberOfSegments);
+		for (int i = 0; i < numberOfSegments; ++i) {
+			this.segments.add(new LRUCache<IndexCacheEntryKey, ByteBuffer>(segmentCapacity));
+		}
+	}
+
+	/**
+	 * Loads the complete index of the given sub-files from the given map file.
+	 * 
+	 * @param mapFileSource
+	 *            the map file from which the index should be read.
+	 * @param subFileParameters
+	 *            the parameters of all sub-files whose index entries will be requested.
+	 * @throws IOException
+	 *             if an I/O error occurs during reading or if an index is too large.
+	 */
+	IndexCache(MapFileSource mapFileSource, Collection<SubFileParameter> subFileParameters) throws IOException {
+		this.mapFileSource = mapFileSource;
+		this.segments = null;
+		this.loadedIndexes = new long[subFileParameters.size()][];
+		this.loadedSubFiles = new SubFileParameter[subFileParameters.size()];
+
+		int i = 0;
+		for (SubFileParameter subFileParameter : subFileParameters) {
+			this.loadedIndexes[i] = loadIndex(mapFileSource, subFileParameter);
+			this.loadedSubFiles[i] = subFileParameter;
+			++i;
+		}
 	}
 
 	/**
 	 * Destroy the cache at the end of its lifetime.
 	 */
 	void destroy() {
-		this.map.clear();
+		if (this.segments != null) {
+			for (LRUCache<IndexCacheEntryKey, ByteBuffer> segment : this.segments) {
+				synchronized (segment) {
+					segment.clear();
+				}
+			}
+		}
 	}
 
 	/**
@@ -71,11 +184,58 @@ class IndexCache {
 	 *             if an I/O error occurs during reading.
 	 */
 	long getIndexEntry(SubFileParameter subFileParameter, long blockNumber) throws IOException {
+		return getIndexEntry(subFileParameter, blockNumber, null);
+	}
+
+	/**
+	 * Returns the index entry of a block in the given map file and counts the cache hit or miss.
+	 * 
+	 * @param subFileParameter
+	 *            the parameters of the map file for which the index entry is needed.
+	 * @param blockNumber
+	 *            the number of the block in the map file.
+	 * @param queryStatistics
+	 *            the statistics of the current query, null if nothing should be counted.
+	 * @return the index entry.
+	 * @throws IOException
+	 *             if an I/O error occurs during reading.
+	 * @see #getIndexEntry(SubFileParameter, long)
+	 */
+	long getIndexEntry(SubFileParameter subFileParameter, long blockNumber, QueryStatistics queryStatistics)
+			throws IOException {
 		// check if the block number is out of bounds
 		if (blockNumber >= subFileParameter.numberOfBlocks) {
 			throw new IOException("invalid block number: " + blockNumber);
 		}
 
+		if (this.loadedIndexes != null) {
+			// a linear search is fast enough as a map file has only a few sub-files
+			for (int i = 0; i < this.loadedSubFiles.length; ++i) {
+				if (this.loadedSubFiles[i] == subFileParameter) {
+					if (queryStatistics != null) {
+						++queryStatistics.indexCacheHits;
+					}
+					return this.loadedIndexes[i][(int) blockNumber];
+				}
+			}
+			throw new IOException("index has not been loaded for sub-file: " + subFileParameter.baseZoomLevel);
+		}
+
+		if (this.mapFileSource.isInMemory()) {
+			// read the index entry directly from memory
+			long indexEntryPosition = subFileParameter.indexStartAddress + blockNumber
+					* SubFileParameter.BYTES_PER_INDEX_ENTRY;
+			ByteBuffer indexEntry = this.mapFileSource.read(indexEntryPosition,
+					SubFileParameter.BYTES_PER_INDEX_ENTRY, null);
+			if (indexEntry == null) {
+				throw new IOException("could not read index entry: " + blockNumber);
+			}
+			if (queryStatistics != null) {
+				++queryStatistics.indexCacheHits;
+			}
+			return Deserializer.getFiveBytesLong(indexEntry, 0);
+		}
+
 		// calculate the index block number
 		long indexBlockNumber = blockNumber / INDEX_ENTRIES_PER_BLOCK;
 
@@ -83,22 +243,33 @@ class IndexCache {
 		IndexCacheEntryKey indexCacheEntryKey = new IndexCacheEntryKey(subFileParameter, indexBlockNumber);
 
 		// check for cached index block
-		byte[] indexBlock = this.map.get(indexCacheEntryKey);
+		LRUCache<IndexCacheEntryKey, ByteBuffer> segment = getSegment(indexCacheEntryKey);
+		ByteBuffer indexBlock;
+		synchronized (segment) {
+			indexBlock = segment.get(indexCacheEntryKey);
+		}
 		if (indexBlock == null) {
-			// cache miss, seek to the correct index block in the file and read it
+			// cache miss, read the correct index block from the file
 			long indexBlockPosition = subFileParameter.indexStartAddress + indexBlockNumber * SIZE_OF_INDEX_BLOCK;
 
 			int remainingIndexSize = (int) (subFileParameter.indexEndAddress - indexBlockPosition);
 			int indexBlockSize = Math.min(SIZE_OF_INDEX_BLOCK, remainingIndexSize);
-			indexBlock = new byte[indexBlockSize];
 
-			this.randomAccessFile.seek(indexBlockPosition);
-			if (this.randomAccessFile.read(indexBlock, 0, indexBlockSize) != indexBlockSize) {
+			indexBlock = this.mapFileSource.read(indexBlockPosition, indexBlockSize, null);
+			if (indexBlock == null) {
 				throw new IOException("could not read index block with size: " + indexBlockSize);
 			}
+			if (queryStatistics != null) {
+				++queryStatistics.indexCacheMisses;
+				queryStatistics.bytesRead += indexBlockSize;
+			}
 
 			// put the index block in the map
-			this.map.put(indexCacheEntryKey, indexBlock);
+			synchronized (segment) {
+				segment.put(indexCacheEntryKey, indexBlock);
+			}
+		} else if (queryStatistics != null) {
+			++queryStatistics.indexCacheHits;
 		}
 
 		// calculate the address of the index entry inside the index block
@@ -108,4 +279,21 @@ class IndexCache {
 		// return the real index entry
 		return Deserializer.getFiveBytesLong(indexBlock, addressInIndexBlock);
 	}
+
+	/**
+	 * @return the number of independently locked segments of the LRU cache, zero if no LRU cache is used.
+	 */
+	int getNumberOfSegments() {
+		return this.segments == null ? 0 : this.segments.size();
+	}
+
+	private LRUCache<IndexCacheEntryKey, ByteBuffer> getSegment(IndexCacheEntryKey indexCacheEntryKey) {
+		if (this.segments.size() == 1) {
+			return this.segments.get(0);
+		}
+		// spread the high bits of the hash code, the low bits of neighbouring index blocks differ only slightly
+		int hashCode = indexCacheEntryKey.hashCode();
+		hashCode ^= hashCode >>> 16;
+		return this.segments.get((hashCode & Integer.MAX_VALUE) % this.segments.size());
+	}
 }
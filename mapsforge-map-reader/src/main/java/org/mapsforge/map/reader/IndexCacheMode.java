@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Specifies how a {@link MapDatabase} keeps the block index of the map file in memory.
+ */
+public enum IndexCacheMode {
+	/**
+	 * Loads the complete index on opening if it fits into the configured memory budget, otherwise uses an LRU cache.
+	 * 
+	 * @see MapDatabase#setIndexMemoryBudget(long)
+	 */
+	AUTO,
+
+	/**
+	 * Loads the complete index of all sub-files into memory when the map file is opened, so that a lookup is a single
+	 * array access. Needs eight bytes per block of the map file.
+	 */
+	EAGER,
+
+	/**
+	 * Reads parts of the index on demand and keeps a fixed number of them in an LRU cache.
+	 */
+	LRU;
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.List;
+
+import org.mapsforge.core.model.Tag;
+
+/**
+ * Receives the map data of a query while it is being decoded by the {@link MapDatabase}.
+ * <p>
+ * Before an element is decoded completely, the sink is asked whether it wants to receive it. The tags which are passed
+ * to the accept methods may not contain the name, house number, reference and elevation of the element yet, as these
+ * are decoded only for accepted elements.
+ * <p>
+ * If a block of the map file turns out to be corrupted while it is decoded, its remaining elements are skipped and the
+ * query continues with the next block. The elements of the corrupted block which have been decoded before the error
+ * have already been passed to the sink and are not revoked.
+ */
+public interface MapDataSink {
+	/**
+	 * @param layer
+	 *            the layer of the POI + 5 (to avoid negative values).
+	 * @param tags
+	 *            the tags of the POI, which must not be modified.
+	 * @return true if the POI should be decoded and passed to {@link #pointOfInterest(PointOfInterest)}, false if it
+	 *         should be skipped.
+	 */
+	boolean acceptPointOfInterest(byte layer, List<Tag> tags);
+
+	/**
+	 * @param layer
+	 *            the layer of the way + 5 (to avoid negative values).
+	 * @param tags
+	 *            the tags of the way, which must not be modified.
+	 * @return true if the way nodes should be decoded and passed to {@link #way(PackedWay)}, false if the way should
+	 *         be skipped.
+	 */
+	boolean acceptWay(byte layer, List<Tag> tags);
+
+	/**
+	 * Called for each accepted POI.
+	 */
+	void pointOfInterest(PointOfInterest pointOfInterest);
+
+	/**
+	 * Called after all POIs and ways if the read area is completely covered by water.
+	 */
+	void water();
+
+	/**
+	 * Called for each accepted way. The given way is reused for the next way, so it is only valid during this call.
+	 */
+	void way(PackedWay way);
+}
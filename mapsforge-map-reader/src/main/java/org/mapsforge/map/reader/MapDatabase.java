@@ -16,12 +16,32 @@ package org.mapsforge.map.reader;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.core.model.Tile;
@@ -35,11 +55,25 @@ import org.mapsforge.map.reader.header.SubFileParameter;
 /**
  * A class for reading binary map files.
  * <p>
- * This class is not thread-safe. Each thread should use its own instance.
+ * Whether this class is thread-safe depends on the {@link FileAccessMode} which was used to open the map file. In
+ * {@link FileAccessMode#RANDOM_ACCESS_FILE} mode each thread should use its own instance, in
+ * {@link FileAccessMode#MEMORY_MAPPED} and {@link FileAccessMode#POSITIONAL_READ} mode one instance may be queried
+ * by multiple threads concurrently. The same applies to a map file which is held in memory, see
+ * {@link #openFile(ByteBuffer)}. In all cases a map file must not be closed while it is being queried.
  * 
  * @see <a href="https://code.google.com/p/mapsforge/wiki/SpecificationBinaryMapFile">Specification</a>
  */
 public class MapDatabase {
+	/**
+	 * Number of seconds after which an idle thread for asynchronous reads is terminated.
+	 */
+	private static final long ASYNC_READ_KEEP_ALIVE = 30;
+
+	/**
+	 * Maximum number of threads which execute asynchronous reads.
+	 */
+	private static final int ASYNC_READ_THREADS = 4;
+
 	/**
 	 * Bitmask to extract the block offset from an index entry.
 	 */
@@ -65,6 +99,11 @@ public class MapDatabase {
 	 */
 	private static final String DEBUG_SIGNATURE_WAY = "way signature: ";
 
+	/**
+	 * Default memory budget in bytes for loading the complete index in {@link IndexCacheMode#AUTO}.
+	 */
+	private static final long DEFAULT_INDEX_MEMORY_BUDGET = 2 * 1024 * 1024;
+
 	/**
 	 * Amount of cache blocks that the index cache should store.
 	 */
@@ -82,6 +121,16 @@ public class MapDatabase {
 	 */
 	private static final int MAXIMUM_WAY_NODES_SEQUENCE_LENGTH = 8192;
 
+	/**
+	 * Minimum number of blocks covered by a query for decoding them in parallel.
+	 */
+	private static final int PARALLEL_DECODING_BLOCKS_MIN = 16;
+
+	/**
+	 * Maximum number of blocks which are decoded sequentially by one parallel decoding task.
+	 */
+	private static final int PARALLEL_DECODING_BLOCKS_PER_TASK = 4;
+
 	/**
 	 * Bitmask for the optional POI feature "elevation".
 	 */
@@ -112,8 +161,6 @@ public class MapDatabase {
 	 */
 	private static final int POI_NUMBER_OF_TAGS_BITMASK = 0x0f;
 
-	private static final String READ_ONLY_MODE = "r";
-
 	/**
 	 * Length of the debug signature at the beginning of each block.
 	 */
@@ -132,22 +179,22 @@ public class MapDatabase {
 	/**
 	 * The key of the elevation OpenStreetMap tag.
 	 */
-	private static final String TAG_KEY_ELE = "ele";
+	static final String TAG_KEY_ELE = "ele";
 
 	/**
 	 * The key of the house number OpenStreetMap tag.
 	 */
-	private static final String TAG_KEY_HOUSE_NUMBER = "addr:housenumber";
+	static final String TAG_KEY_HOUSE_NUMBER = "addr:housenumber";
 
 	/**
 	 * The key of the name OpenStreetMap tag.
 	 */
-	private static final String TAG_KEY_NAME = "name";
+	static final String TAG_KEY_NAME = "name";
 
 	/**
 	 * The key of the reference OpenStreetMap tag.
 	 */
-	private static final String TAG_KEY_REF = "ref";
+	static final String TAG_KEY_REF = "ref";
 
 	/**
 	 * Bitmask for the optional way data blocks byte.
@@ -194,40 +241,92 @@ public class MapDatabase {
 	 */
 	private static final int WAY_NUMBER_OF_TAGS_BITMASK = 0x0f;
 
+	private ExecutorService asyncReadExecutor;
+	private final ConcurrentMap<Tile, FutureTask<MapReadResult>> asyncReads = new ConcurrentHashMap<>();
+	private volatile BlockCache blockCache;
 	private IndexCache databaseIndexCache;
+	private int decodingParallelism = 1;
+	private ForkJoinPool decodingPool;
 	private long fileSize;
-	private RandomAccessFile inputFile;
+	private IndexCacheMode indexCacheMode = IndexCacheMode.LRU;
+	private long indexMemoryBudget = DEFAULT_INDEX_MEMORY_BUDGET;
 	private MapFileHeader mapFileHeader;
-	private ReadBuffer readBuffer;
-	private String signatureBlock;
-	private String signaturePoi;
-	private String signatureWay;
-	private double tileLatitude;
-	private double tileLongitude;
+	private MapFileSource mapFileSource;
+	private QueryContext queryContext;
+	private volatile QueryListener queryListener;
+	private final QueryStatistics statistics = new QueryStatistics();
+	private int tagCacheCapacity;
+	private ThreadLocal<QueryContext> threadQueryContext;
 
 	/**
 	 * Closes the map file and destroys all internal caches. Has no effect if no map file is currently opened.
 	 */
 	public void closeFile() {
 		try {
+			cancelAsyncReads();
+			shutdownDecodingPool();
 			this.mapFileHeader = null;
 
+			BlockCache currentBlockCache = this.blockCache;
+			if (currentBlockCache != null) {
+				currentBlockCache.clear();
+			}
+
 			if (this.databaseIndexCache != null) {
 				this.databaseIndexCache.destroy();
 				this.databaseIndexCache = null;
 			}
 
-			if (this.inputFile != null) {
-				this.inputFile.close();
-				this.inputFile = null;
+			if (this.mapFileSource != null) {
+				this.mapFileSource.close();
+				this.mapFileSource = null;
 			}
 
-			this.readBuffer = null;
+			this.queryContext = null;
+			this.threadQueryContext = null;
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, null, e);
 		}
 	}
 
+	/**
+	 * Estimates the cost of reading the map data for the given tile from the index alone, without reading any block.
+	 * The cost is proportional to the number and size of the blocks which need to be read and decoded, so tiles can be
+	 * ordered or split by their expected cost before they are read.
+	 * 
+	 * @param tile
+	 *            the tile whose cost should be estimated.
+	 * @return the estimated cost or null, if the index could not be read.
+	 * @throws IllegalStateException
+	 *             if no map is currently opened.
+	 */
+	public QueryCost estimateQueryCost(Tile tile) {
+		if (this.mapFileHeader == null) {
+			throw new IllegalStateException("no map file is currently opened");
+		}
+
+		// get and check the sub-file for the query zoom level
+		SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(this.mapFileHeader
+				.getQueryZoomLevel(tile.zoomLevel));
+		if (subFileParameter == null) {
+			return new QueryCost(0, 0, false);
+		}
+
+		try {
+			return estimateQueryCost(tile, subFileParameter);
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return the cache for decoded blocks or null, if blocks are not cached.
+	 */
+	public BlockCache getBlockCache() {
+		return this.blockCache;
+	}
+
 	/**
 	 * @return the metadata for the current map file.
 	 * @throws IllegalStateException
@@ -240,15 +339,104 @@ public class MapDatabase {
 		return this.mapFileHeader.getMapFileInfo();
 	}
 
+	/**
+	 * @return a snapshot of the statistics of all queries since this MapDatabase has been created.
+	 */
+	public QueryStatistics getStatistics() {
+		synchronized (this.statistics) {
+			return new QueryStatistics(this.statistics);
+		}
+	}
+
 	/**
 	 * @return true if a map file is currently opened, false otherwise.
 	 */
 	public boolean hasOpenFile() {
-		return this.inputFile != null;
+		return this.mapFileSource != null;
 	}
 
 	/**
-	 * Opens the given map file, reads its header data and validates them.
+	 * Checks from the index alone whether the given tile is completely covered by water and contains no map data. For
+	 * such a tile {@link #readMapData(Tile)} would return an empty water tile, so no block needs to be read.
+	 * <p>
+	 * The check is conservative: a tile whose blocks are flagged as water but contain POIs or ways is not reported as
+	 * water only, even if none of them is visible in the tile.
+	 * 
+	 * @param tile
+	 *            the tile to check.
+	 * @return true if the tile contains only water, false otherwise.
+	 * @throws IllegalStateException
+	 *             if no map is currently opened.
+	 */
+	public boolean isWaterOnly(Tile tile) {
+		if (this.mapFileHeader == null) {
+			throw new IllegalStateException("no map file is currently opened");
+		}
+
+		// get and check the sub-file for the query zoom level
+		SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(this.mapFileHeader
+				.getQueryZoomLevel(tile.zoomLevel));
+		if (subFileParameter == null) {
+			return false;
+		}
+
+		try {
+			return isWaterOnly(tile, subFileParameter);
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Opens a map file which is completely held in the given array, see {@link #openFile(ByteBuffer)}.
+	 * 
+	 * @param mapData
+	 *            the content of the map file, must not be modified while the map file is opened.
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 * @throws IllegalArgumentException
+	 *             if the given map data is null.
+	 */
+	public FileOpenResult openFile(byte[] mapData) {
+		if (mapData == null) {
+			throw new IllegalArgumentException("mapData must not be null");
+		}
+		return openFile(ByteBuffer.wrap(mapData));
+	}
+
+	/**
+	 * Opens a map file which is completely held in the given buffer, for example after loading it from a classpath
+	 * resource, reads its header data and validates them. All blocks are decoded directly from the buffer without any
+	 * file access, and the MapDatabase may be queried by multiple threads concurrently.
+	 * 
+	 * @param mapData
+	 *            the content of the map file from the position to the limit of the buffer, must not be modified while
+	 *            the map file is opened.
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 * @throws IllegalArgumentException
+	 *             if the given map data is null.
+	 */
+	public FileOpenResult openFile(ByteBuffer mapData) {
+		if (mapData == null) {
+			throw new IllegalArgumentException("mapData must not be null");
+		}
+
+		// make sure to close any previously opened file first
+		closeFile();
+
+		try {
+			return openSource(new ByteBufferSource(mapData));
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			// make sure that the file is closed
+			closeFile();
+			return new FileOpenResult(e.getMessage());
+		}
+	}
+
+	/**
+	 * Opens the given map file in {@link FileAccessMode#RANDOM_ACCESS_FILE} mode, reads its header data and validates
+	 * them.
 	 * 
 	 * @param mapFile
 	 *            the map file.
@@ -257,9 +445,26 @@ public class MapDatabase {
 	 *             if the given map file is null.
 	 */
 	public FileOpenResult openFile(File mapFile) {
+		return openFile(mapFile, FileAccessMode.RANDOM_ACCESS_FILE);
+	}
+
+	/**
+	 * Opens the given map file, reads its header data and validates them.
+	 * 
+	 * @param mapFile
+	 *            the map file.
+	 * @param fileAccessMode
+	 *            the way in which the map file is accessed.
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 * @throws IllegalArgumentException
+	 *             if the given map file or file access mode is null.
+	 */
+	public FileOpenResult openFile(File mapFile, FileAccessMode fileAccessMode) {
 		try {
 			if (mapFile == null) {
 				throw new IllegalArgumentException("mapFile must not be null");
+			} else if (fileAccessMode == null) {
+				throw new IllegalArgumentException("fileAccessMode must not be null");
 			}
 
 			// make sure to close any previously opened file first
@@ -275,18 +480,12 @@ public class MapDatabase {
 			}
 
 			// open the file in read only mode
-			this.inputFile = new RandomAccessFile(mapFile, READ_ONLY_MODE);
-			this.fileSize = this.inputFile.length();
-
-			this.readBuffer = new ReadBuffer(this.inputFile);
-			this.mapFileHeader = new MapFileHeader();
-			FileOpenResult fileOpenResult = this.mapFileHeader.readHeader(this.readBuffer, this.fileSize);
-			if (!fileOpenResult.isSuccess()) {
-				closeFile();
-				return fileOpenResult;
+			if (fileAccessMode == FileAccessMode.MEMORY_MAPPED) {
+				return openSource(new MappedFileSource(mapFile));
+			} else if (fileAccessMode == FileAccessMode.POSITIONAL_READ) {
+				return openSource(new FileChannelSource(mapFile));
 			}
-
-			return FileOpenResult.SUCCESS;
+			return openSource(new RandomAccessFileSource(mapFile));
 		} catch (IOException e) {
 			LOGGER.log(Level.SEVERE, null, e);
 			// make sure that the file is closed
@@ -296,17 +495,375 @@ public class MapDatabase {
 	}
 
 	/**
-	 * Reads all map data for the area covered by the given tile at the tile zoom level.
+	 * Enables or disables the cache for decoded blocks. Adjacent tiles above the base zoom level of a sub-file share
+	 * the same blocks, which then only need to be decoded once. Any previously cached blocks are discarded.
+	 * 
+	 * @param capacity
+	 *            the maximum estimated size of all cached blocks in bytes, 0 disables the cache.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public void setBlockCacheCapacity(long capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+		}
+		this.blockCache = capacity == 0 ? null : new BlockCache(capacity);
+	}
+
+	/**
+	 * Sets how the block index of a map file is kept in memory. The mode is applied when the next map file is opened.
+	 * 
+	 * @param indexCacheMode
+	 *            the new index cache mode. The default is {@link IndexCacheMode#LRU}.
+	 * @throws IllegalArgumentException
+	 *             if the given index cache mode is null.
+	 */
+	public void setIndexCacheMode(IndexCacheMode indexCacheMode) {
+		if (indexCacheMode == null) {
+			throw new IllegalArgumentException("indexCacheMode must not be null");
+		}
+		this.indexCacheMode = indexCacheMode;
+	}
+
+	/**
+	 * Sets the number of threads which decode the blocks of a single query in parallel. Only queries which cover many
+	 * blocks, usually at low zoom levels, are decoded in parallel. The result of a query does not depend on the number
+	 * of threads. Parallel decoding requires a {@link FileAccessMode} which can be shared between threads.
+	 * 
+	 * @param decodingParallelism
+	 *            the number of threads, 1 to decode all blocks on the thread of the query. The default is 1.
+	 * @throws IllegalArgumentException
+	 *             if the number of threads is less than 1.
+	 */
+	public void setDecodingParallelism(int decodingParallelism) {
+		if (decodingParallelism < 1) {
+			throw new IllegalArgumentException("decodingParallelism must be at least 1: " + decodingParallelism);
+		}
+		synchronized (this) {
+			this.decodingParallelism = decodingParallelism;
+			shutdownDecodingPool();
+		}
+	}
+
+	/**
+	 * Sets the maximum memory for loading the complete block index of a map file in {@link IndexCacheMode#AUTO}. The
+	 * budget is applied when the next map file is opened.
+	 * 
+	 * @param indexMemoryBudget
+	 *            the maximum size of the loaded index in bytes.
+	 * @throws IllegalArgumentException
+	 *             if the budget is negative.
+	 */
+	public void setIndexMemoryBudget(long indexMemoryBudget) {
+		if (indexMemoryBudget < 0) {
+			throw new IllegalArgumentException("indexMemoryBudget must not be negative: " + indexMemoryBudget);
+		}
+		this.indexMemoryBudget = indexMemoryBudget;
+	}
+
+	/**
+	 * Sets the listener which receives the statistics of each finished query, see {@link QueryListener}.
+	 * 
+	 * @param queryListener
+	 *            the new listener, null to remove the current listener.
+	 */
+	public void setQueryListener(QueryListener queryListener) {
+		this.queryListener = queryListener;
+	}
+
+	/**
+	 * Sets the number of tags with a string value, like names, house numbers and references, which are cached per
+	 * reading thread. A cached tag is reused without decoding its value again whenever the same value occurs in
+	 * another POI or way, which is common for adjacent tiles. The capacity is applied when the next map file is opened.
+	 * 
+	 * @param tagCacheCapacity
+	 *            the number of cached tags, 0 disables the cache. The default is 0.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public void setTagCacheCapacity(int tagCacheCapacity) {
+		if (tagCacheCapacity < 0) {
+			throw new IllegalArgumentException("tagCacheCapacity must not be negative: " + tagCacheCapacity);
+		}
+		this.tagCacheCapacity = tagCacheCapacity;
+	}
+
+	/**
+	 * Reads all map data for the areas covered by the given tiles at their zoom levels. Each block which is needed by
+	 * several of the tiles, for example by the tiles of a metatile, is read and decoded only once. The tile bitmask of
+	 * each way is used to distribute the decoded elements to the tiles.
+	 * 
+	 * @param tiles
+	 *            the tiles which define areas and zoom levels of read map data.
+	 * @return the read map data of each tile in iteration order, null for a tile whose map data could not be read.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened.
+	 */
+	public Map<Tile, MapReadResult> readMapData(Collection<Tile> tiles) {
+		return readMapData(tiles, null);
+	}
+
+	/**
+	 * Reads the map data for the areas covered by the given tiles like {@link #readMapData(Collection)} but only the
+	 * POIs and ways which are accepted by the given filter. Elements which are rejected by the filter are skipped
+	 * directly after their tag IDs have been read, unless the decoded blocks are cached.
+	 * 
+	 * @param tiles
+	 *            the tiles which define areas and zoom levels of read map data.
+	 * @param tagFilter
+	 *            the filter for the read map data, null to read all elements.
+	 * @return the read map data of each tile in iteration order, null for a tile whose map data could not be read.
+	 * @throws IllegalArgumentException
+	 *             if the filter has not been created for the currently opened map file.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened.
+	 */
+	public Map<Tile, MapReadResult> readMapData(Collection<Tile> tiles, TagFilter tagFilter) {
+		Map<Tile, MapReadResultBuilder> mapReadResultBuilders = new LinkedHashMap<Tile, MapReadResultBuilder>();
+		for (Tile tile : tiles) {
+			mapReadResultBuilders.put(tile, new MapReadResultBuilder());
+		}
+
+		Set<Tile> readTiles = readMapData(mapReadResultBuilders, tagFilter, 0);
+
+		Map<Tile, MapReadResult> mapReadResults = new LinkedHashMap<Tile, MapReadResult>();
+		for (Map.Entry<Tile, MapReadResultBuilder> entry : mapReadResultBuilders.entrySet()) {
+			Tile tile = entry.getKey();
+			mapReadResults.put(tile, readTiles.contains(tile) ? entry.getValue().build() : null);
+		}
+		return mapReadResults;
+	}
+
+	/**
+	 * Reads the map data for the areas covered by the given tiles like {@link #readMapData(Collection, TagFilter)} but
+	 * projects the way nodes directly into the pixel space of each tile, see
+	 * {@link #readMapData(Tile, int, MapDataSink, TagFilter)}. The map data of each tile is passed to its own sink.
+	 * 
+	 * @param mapDataSinks
+	 *            the tiles which define areas and zoom levels of read map data, each with the sink which receives its
+	 *            map data.
+	 * @param tileSize
+	 *            the size of the tiles in pixels.
+	 * @param tagFilter
+	 *            the filter for the read map data, null to read all elements.
+	 * @return the tiles whose map data could be read successfully.
+	 * @throws IllegalArgumentException
+	 *             if the filter has not been created for the currently opened map file.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened.
+	 */
+	public Set<Tile> readMapData(Map<Tile, ? extends MapDataSink> mapDataSinks, int tileSize, TagFilter tagFilter) {
+		return readMapData(mapDataSinks, tagFilter, tileSize);
+	}
+
+	/**
+	 * Reads all map data for the area covered by the given tile at the tile zoom level without blocking the calling
+	 * thread. The map data is read by a bounded pool of background threads. Concurrent requests for the same tile are
+	 * coalesced and share a single future, so that the tile is only read once. Cancelling the future therefore also
+	 * cancels the request of all other callers of the same tile.
+	 * <p>
+	 * Pending reads are cancelled when the map file is closed.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @return a future for the read map data, its result is null if the map data could not be read.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened or if it has not been opened in a thread-safe
+	 *             {@link FileAccessMode}.
+	 */
+	public Future<MapReadResult> readMapDataAsync(final Tile tile) {
+		MapFileSource currentMapFileSource = this.mapFileSource;
+		if (currentMapFileSource == null) {
+			throw new IllegalStateException("no map file is currently opened");
+		} else if (!currentMapFileSource.isThreadSafe()) {
+			throw new IllegalStateException("asynchronous reads need a thread-safe file access mode");
+		}
+
+		FutureTask<MapReadResult> asyncRead = this.asyncReads.get(tile);
+		if (asyncRead != null) {
+			return asyncRead;
+		}
+
+		asyncRead = new FutureTask<MapReadResult>(new Callable<MapReadResult>() {
+			@Override
+			public MapReadResult call() {
+				return readMapData(tile);
+			}
+		}) {
+			@Override
+			protected void done() {
+				MapDatabase.this.asyncReads.remove(tile, this);
+			}
+		};
+
+		FutureTask<MapReadResult> pendingAsyncRead = this.asyncReads.putIfAbsent(tile, asyncRead);
+		if (pendingAsyncRead != null) {
+			return pendingAsyncRead;
+		}
+		getAsyncReadExecutor().execute(asyncRead);
+		return asyncRead;
+	}
+
+	/**
+	 * Reads all map data for the area covered by the given tile at the tile zoom level. Corrupted blocks do not abort
+	 * the query, but the result may contain the elements which have been decoded before the error, see
+	 * {@link MapDataSink}.
 	 * 
 	 * @param tile
 	 *            defines area and zoom level of read map data.
 	 * @return the read map data.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened.
 	 */
 	public MapReadResult readMapData(Tile tile) {
+		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+		if (!readMapData(tile, mapReadResultBuilder)) {
+			return null;
+		}
+		return mapReadResultBuilder.build();
+	}
+
+	/**
+	 * Reads all map data for the area covered by the given tile at the tile zoom level into the given result. The
+	 * result is cleared first, its buffers are reused.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param packedMapReadResult
+	 *            the result which receives the read map data.
+	 * @return true if the map data could be read successfully, false otherwise.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened.
+	 */
+	public boolean readMapData(Tile tile, PackedMapReadResult packedMapReadResult) {
+		packedMapReadResult.clear();
+		return readMapData(tile, packedMapReadResult.sink);
+	}
+
+	/**
+	 * Reads all map data for the area covered by the given tile at the tile zoom level and passes each POI and way to
+	 * the given sink as soon as it has been decoded. Elements which are not accepted by the sink are skipped without
+	 * decoding their coordinates.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param mapDataSink
+	 *            the sink which receives the read map data.
+	 * @return true if the map data could be read successfully, false otherwise.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened.
+	 */
+	public boolean readMapData(Tile tile, MapDataSink mapDataSink) {
+		return readMapData(tile, mapDataSink, null);
+	}
+
+	/**
+	 * Reads the map data for the area covered by the given tile at the tile zoom level and passes each POI and way
+	 * which is accepted by the given filter to the given sink. Elements which are rejected by the filter are skipped
+	 * directly after their tag IDs have been read.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param mapDataSink
+	 *            the sink which receives the read map data.
+	 * @param tagFilter
+	 *            the filter for the read map data, null to read all elements.
+	 * @return true if the map data could be read successfully, false otherwise.
+	 * @throws IllegalArgumentException
+	 *             if the filter has not been created for the currently opened map file.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened.
+	 */
+	public boolean readMapData(Tile tile, MapDataSink mapDataSink, TagFilter tagFilter) {
+		return readMapData(tile, mapDataSink, tagFilter, null, null);
+	}
+
+	/**
+	 * Reads the map data for the area covered by the given tile like {@link #readMapData(Tile, MapDataSink, TagFilter)}
+	 * but decodes only the given sections of each element. All other sections are skipped in the map file, so a caller
+	 * which for example only needs the names and label positions of ways does not pay for decoding their way nodes.
+	 * <p>
+	 * A partial query neither uses parallel decoding nor fills the block cache. Elements which are taken from the block
+	 * cache are complete and may therefore contain sections which have not been requested.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param mapDataSink
+	 *            the sink which receives the read map data.
+	 * @param tagFilter
+	 *            the filter for the read map data, null to read all elements.
+	 * @param decodeSections
+	 *            the sections of the elements which should be decoded.
+	 * @return true if the map data could be read successfully, false otherwise.
+	 * @throws IllegalArgumentException
+	 *             if the decode sections are null or if the filter has not been created for the currently opened map
+	 *             file.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened.
+	 */
+	public boolean readMapData(Tile tile, MapDataSink mapDataSink, TagFilter tagFilter,
+			Set<DecodeSection> decodeSections) {
+		if (decodeSections == null) {
+			throw new IllegalArgumentException("decodeSections must not be null");
+		}
+
+		EnumSet<DecodeSection> sections = EnumSet.noneOf(DecodeSection.class);
+		sections.addAll(decodeSections);
+		if (sections.size() == DecodeSection.values().length) {
+			// all sections are decoded by a complete query
+			sections = null;
+		}
+		return readMapData(tile, mapDataSink, tagFilter, null, sections);
+	}
+
+	/**
+	 * Reads the map data for the area covered by the given tile like {@link #readMapData(Tile, MapDataSink, TagFilter)}
+	 * but projects the way nodes directly into the pixel space of the tile. Each way node is decoded and projected in
+	 * one pass, the ways which are passed to the sink contain pixel coordinates relative to the top left corner of the
+	 * tile instead of geographic coordinates.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param tileSize
+	 *            the size of the tile in pixels.
+	 * @param mapDataSink
+	 *            the sink which receives the read map data.
+	 * @param tagFilter
+	 *            the filter for the read map data, null to read all elements.
+	 * @return true if the map data could be read successfully, false otherwise.
+	 * @throws IllegalArgumentException
+	 *             if the filter has not been created for the currently opened map file.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened.
+	 * @see PackedWay#getPixelCoordinates()
+	 */
+	public boolean readMapData(Tile tile, int tileSize, MapDataSink mapDataSink, TagFilter tagFilter) {
+		return readMapData(tile, mapDataSink, tagFilter, new TileProjection(tile, tileSize), null);
+	}
+
+	/**
+	 * Reads the POIs inside the given bounding box at the given zoom level. Only the POI section of each covered block
+	 * is decoded, all ways are skipped.
+	 * 
+	 * @param boundingBox
+	 *            the area of the POIs to read.
+	 * @param zoomLevel
+	 *            the zoom level at which the POIs should be read.
+	 * @param poiFilter
+	 *            the filter for the read POIs, null to read all POIs.
+	 * @return the read POIs or null if the POIs could not be read.
+	 * @throws IllegalStateException
+	 *             if no map file is currently opened.
+	 */
+	public List<PointOfInterest> readPoiData(BoundingBox boundingBox, byte zoomLevel, PoiFilter poiFilter) {
+		checkQuery(null);
+
+		QueryContext context = getQueryContext();
+		QueryStatistics queryStatistics = startQuery(context);
 		try {
-			prepareExecution();
 			QueryParameters queryParameters = new QueryParameters();
-			queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel);
+			queryParameters.poisOnly = true;
+			queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(zoomLevel);
 
 			// get and check the sub-file for the query zoom level
 			SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
@@ -315,37 +872,243 @@ public class MapDatabase {
 				return null;
 			}
 
-			QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
+			QueryCalculations.calculateBaseTiles(queryParameters, boundingBox, subFileParameter);
 			QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
 
-			return processBlocks(queryParameters, subFileParameter);
-		} catch (IOException e) {
-			LOGGER.log(Level.SEVERE, null, e);
-			return null;
+			PoiQuerySink poiQuerySink = new PoiQuerySink(boundingBox, poiFilter);
+			if (!processBlocks(context, queryParameters, subFileParameter, poiQuerySink)) {
+				return null;
+			}
+			return poiQuerySink.pointOfInterests;
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			return null;
+		} finally {
+			finishQuery(null, queryStatistics);
+		}
+	}
+
+	/**
+	 * Checks from the index alone which tiles within the given bounding box contain only water, see
+	 * {@link #isWaterOnly(Tile)}. The first row and column of the mask belong to the tile which contains the upper left
+	 * corner of the bounding box.
+	 * 
+	 * @param boundingBox
+	 *            the area to check.
+	 * @param zoomLevel
+	 *            the zoom level of the tiles.
+	 * @return the water mask, indexed by the tile row and then by the tile column.
+	 * @throws IllegalStateException
+	 *             if no map is currently opened.
+	 */
+	public boolean[][] waterMask(BoundingBox boundingBox, byte zoomLevel) {
+		if (this.mapFileHeader == null) {
+			throw new IllegalStateException("no map file is currently opened");
+		}
+
+		long fromTileX = MercatorProjection.longitudeToTileX(boundingBox.minLongitude, zoomLevel);
+		long fromTileY = MercatorProjection.latitudeToTileY(boundingBox.maxLatitude, zoomLevel);
+		long toTileX = MercatorProjection.longitudeToTileX(boundingBox.maxLongitude, zoomLevel);
+		long toTileY = MercatorProjection.latitudeToTileY(boundingBox.minLatitude, zoomLevel);
+		boolean[][] waterMask = new boolean[(int) (toTileY - fromTileY + 1)][(int) (toTileX - fromTileX + 1)];
+
+		// get and check the sub-file for the query zoom level
+		SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(this.mapFileHeader
+				.getQueryZoomLevel(zoomLevel));
+		if (subFileParameter == null) {
+			return waterMask;
+		}
+
+		try {
+			for (long tileY = fromTileY; tileY <= toTileY; ++tileY) {
+				for (long tileX = fromTileX; tileX <= toTileX; ++tileX) {
+					waterMask[(int) (tileY - fromTileY)][(int) (tileX - fromTileX)] = isWaterOnly(new Tile(tileX,
+							tileY, zoomLevel), subFileParameter);
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+		}
+		return waterMask;
+	}
+
+	private static void addPoiWayBundle(QueryContext context, QueryParameters queryParameters,
+			PoiWayBundle poiWayBundle, MapDataSink mapDataSink) {
+		TagFilter tagFilter = queryParameters.tagFilter;
+		for (PointOfInterest pointOfInterest : poiWayBundle.pois) {
+			if (tagFilter != null && !tagFilter.acceptsPointOfInterest(pointOfInterest.tags)) {
+				continue;
+			}
+			if (mapDataSink.acceptPointOfInterest(pointOfInterest.layer, pointOfInterest.tags)) {
+				mapDataSink.pointOfInterest(pointOfInterest);
+			}
+		}
+		if (queryParameters.poisOnly) {
+			return;
+		}
+		for (Way way : poiWayBundle.ways) {
+			// check if the way is inside the requested tile
+			if (queryParameters.useTileBitmask && (queryParameters.queryTileBitmask & way.tileBitmask) == 0) {
+				continue;
+			}
+			if (tagFilter != null && !tagFilter.acceptsWay(way.tags)) {
+				continue;
+			}
+			if (mapDataSink.acceptWay(way.layer, way.tags)) {
+				context.wayBuffer.set(way, queryParameters.tileProjection);
+				mapDataSink.way(context.wayBuffer);
+			}
+		}
+	}
+
+	private static ThreadLocal<QueryContext> createThreadQueryContext(final MapFileSource mapFileSource,
+			final int tagCacheCapacity) {
+		return new ThreadLocal<QueryContext>() {
+			@Override
+			protected QueryContext initialValue() {
+				return new QueryContext(new ReadBuffer(mapFileSource), tagCacheCapacity);
+			}
+		};
+	}
+
+	private static void skipOptionalPoiFeatures(QueryContext context, boolean featureName,
+			boolean featureHouseNumber, boolean featureElevation) {
+		if (featureName) {
+			context.readBuffer.skipUTF8EncodedString();
+		}
+		if (featureHouseNumber) {
+			context.readBuffer.skipUTF8EncodedString();
+		}
+		if (featureElevation) {
+			context.readBuffer.readSignedInt();
+		}
+	}
+
+	private static void skipOptionalWayFeatures(QueryContext context, boolean featureName,
+			boolean featureHouseNumber, boolean featureRef) {
+		if (featureName) {
+			context.readBuffer.skipUTF8EncodedString();
+		}
+		if (featureHouseNumber) {
+			context.readBuffer.skipUTF8EncodedString();
+		}
+		if (featureRef) {
+			context.readBuffer.skipUTF8EncodedString();
+		}
+	}
+
+	/**
+	 * Starts counting the work of a new query in the given context.
+	 * 
+	 * @return the statistics of the new query.
+	 */
+	private static QueryStatistics startQuery(QueryContext context) {
+		context.statistics = new QueryStatistics();
+		context.statistics.queries = 1;
+		return context.statistics;
+	}
+
+	private synchronized void cancelAsyncReads() {
+		if (this.asyncReadExecutor != null) {
+			this.asyncReadExecutor.shutdownNow();
+			this.asyncReadExecutor = null;
+		}
+		for (FutureTask<MapReadResult> asyncRead : this.asyncReads.values()) {
+			asyncRead.cancel(true);
+		}
+		this.asyncReads.clear();
+	}
+
+	/**
+	 * Checks that a map file is currently opened and that the given filter has been created for it.
+	 */
+	private void checkQuery(TagFilter tagFilter) {
+		if (!hasOpenFile()) {
+			throw new IllegalStateException("no map file is currently opened");
+		} else if (tagFilter != null && tagFilter.mapFileInfo != this.mapFileHeader.getMapFileInfo()) {
+			throw new IllegalArgumentException("tag filter has been created for a different map file");
+		}
+	}
+
+	private synchronized ForkJoinPool getDecodingPool() {
+		if (this.decodingParallelism < 2) {
+			return null;
+		} else if (this.decodingPool == null) {
+			this.decodingPool = new ForkJoinPool(this.decodingParallelism);
+		}
+		return this.decodingPool;
+	}
+
+	private IndexCache createIndexCache() throws IOException {
+		// collect the sub-files which are used for queries
+		List<SubFileParameter> subFileParameters = new ArrayList<SubFileParameter>();
+		byte zoomLevelMaximum = this.mapFileHeader.getQueryZoomLevel(Byte.MAX_VALUE);
+		for (int zoomLevel = 0; zoomLevel <= zoomLevelMaximum; ++zoomLevel) {
+			SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(zoomLevel);
+			if (subFileParameter != null && !subFileParameters.contains(subFileParameter)) {
+				subFileParameters.add(subFileParameter);
+			}
+		}
+
+		if (this.indexCacheMode == IndexCacheMode.EAGER
+				|| (this.indexCacheMode == IndexCacheMode.AUTO
+						&& IndexCache.getLoadedIndexSize(subFileParameters) <= this.indexMemoryBudget)) {
+			return new IndexCache(this.mapFileSource, subFileParameters);
+		}
+		return new IndexCache(this.mapFileSource, INDEX_CACHE_SIZE);
+	}
+
+	/**
+	 * Decodes the whole block in the buffer, so that it can be reused for all tiles which it covers. The way nodes are
+	 * neither projected nor filtered by the tile bitmask of the query.
+	 * 
+	 * @param useTagFilter
+	 *            true to skip the elements which are rejected by the tag filter of the query, must be false if the
+	 *            decoded block is cached.
+	 * @return the decoded block or null if the block could not be decoded successfully.
+	 */
+	private PoiWayBundle decodeBlock(QueryContext context, QueryParameters queryParameters,
+			SubFileParameter subFileParameter, boolean useTagFilter) {
+		long startTime = System.nanoTime();
+		try {
+			QueryParameters blockQueryParameters = new QueryParameters();
+			blockQueryParameters.queryZoomLevel = queryParameters.queryZoomLevel;
+			if (useTagFilter) {
+				blockQueryParameters.tagFilter = queryParameters.tagFilter;
+			}
+
+			MapReadResultBuilder blockBuilder = new MapReadResultBuilder();
+			if (!processBlock(context, blockQueryParameters, subFileParameter, true, blockBuilder)) {
+				return null;
+			}
+			return new PoiWayBundle(blockBuilder.pointOfInterests, blockBuilder.ways);
+		} finally {
+			context.statistics.decodeTime += System.nanoTime() - startTime;
 		}
 	}
 
-	private void decodeWayNodesDoubleDelta(LatLong[] waySegment) {
+	private void decodeWayNodesDoubleDelta(QueryContext context, PackedWay packedWay, int numberOfWayNodes,
+			TileProjection tileProjection) {
 		// get the first way node latitude offset (VBE-S)
-		double wayNodeLatitude = this.tileLatitude
-				+ LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+		double wayNodeLatitude = context.tileLatitude
+				+ LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 		// get the first way node longitude offset (VBE-S)
-		double wayNodeLongitude = this.tileLongitude
-				+ LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+		double wayNodeLongitude = context.tileLongitude
+				+ LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 		// store the first way node
-		waySegment[0] = new LatLong(wayNodeLatitude, wayNodeLongitude);
+		packedWay.addNode(wayNodeLatitude, wayNodeLongitude, tileProjection);
 
 		double previousSingleDeltaLatitude = 0;
 		double previousSingleDeltaLongitude = 0;
 
-		for (int wayNodesIndex = 1; wayNodesIndex < waySegment.length; ++wayNodesIndex) {
+		for (int wayNodesIndex = 1; wayNodesIndex < numberOfWayNodes; ++wayNodesIndex) {
 			// get the way node latitude double-delta offset (VBE-S)
-			double doubleDeltaLatitude = LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+			double doubleDeltaLatitude = LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 			// get the way node longitude double-delta offset (VBE-S)
-			double doubleDeltaLongitude = LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+			double doubleDeltaLongitude = LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 			double singleDeltaLatitude = doubleDeltaLatitude + previousSingleDeltaLatitude;
 			double singleDeltaLongitude = doubleDeltaLongitude + previousSingleDeltaLongitude;
@@ -353,113 +1116,234 @@ public class MapDatabase {
 			wayNodeLatitude = wayNodeLatitude + singleDeltaLatitude;
 			wayNodeLongitude = wayNodeLongitude + singleDeltaLongitude;
 
-			waySegment[wayNodesIndex] = new LatLong(wayNodeLatitude, wayNodeLongitude);
+			packedWay.addNode(wayNodeLatitude, wayNodeLongitude, tileProjection);
 
 			previousSingleDeltaLatitude = singleDeltaLatitude;
 			previousSingleDeltaLongitude = singleDeltaLongitude;
 		}
 	}
 
-	private void decodeWayNodesSingleDelta(LatLong[] waySegment) {
+	private void decodeWayNodesSingleDelta(QueryContext context, PackedWay packedWay, int numberOfWayNodes,
+			TileProjection tileProjection) {
 		// get the first way node latitude single-delta offset (VBE-S)
-		double wayNodeLatitude = this.tileLatitude
-				+ LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+		double wayNodeLatitude = context.tileLatitude
+				+ LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 		// get the first way node longitude single-delta offset (VBE-S)
-		double wayNodeLongitude = this.tileLongitude
-				+ LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+		double wayNodeLongitude = context.tileLongitude
+				+ LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 		// store the first way node
-		waySegment[0] = new LatLong(wayNodeLatitude, wayNodeLongitude);
+		packedWay.addNode(wayNodeLatitude, wayNodeLongitude, tileProjection);
 
-		for (int wayNodesIndex = 1; wayNodesIndex < waySegment.length; ++wayNodesIndex) {
+		for (int wayNodesIndex = 1; wayNodesIndex < numberOfWayNodes; ++wayNodesIndex) {
 			// get the way node latitude offset (VBE-S)
-			wayNodeLatitude = wayNodeLatitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+			wayNodeLatitude = wayNodeLatitude + LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 			// get the way node longitude offset (VBE-S)
-			wayNodeLongitude = wayNodeLongitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+			wayNodeLongitude = wayNodeLongitude
+					+ LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
+
+			packedWay.addNode(wayNodeLatitude, wayNodeLongitude, tileProjection);
+		}
+	}
+
+	private QueryCost estimateQueryCost(Tile tile, SubFileParameter subFileParameter) throws IOException {
+		QueryParameters queryParameters = new QueryParameters();
+		QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
+		QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
+		if (queryParameters.fromBlockX > queryParameters.toBlockX
+				|| queryParameters.fromBlockY > queryParameters.toBlockY) {
+			// the tile is outside of the map area
+			return new QueryCost(0, 0, false);
+		}
+
+		long blocks = 0;
+		long bytes = 0;
+		boolean isWater = true;
+		for (long row = queryParameters.fromBlockY; row <= queryParameters.toBlockY; ++row) {
+			for (long column = queryParameters.fromBlockX; column <= queryParameters.toBlockX; ++column) {
+				long blockNumber = row * subFileParameter.blocksWidth + column;
+				long currentBlockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber);
+				isWater &= (currentBlockIndexEntry & BITMASK_INDEX_WATER) != 0;
 
-			waySegment[wayNodesIndex] = new LatLong(wayNodeLatitude, wayNodeLongitude);
+				// the size of a block is the distance to the start of the next block
+				long nextBlockPointer;
+				if (blockNumber + 1 == subFileParameter.numberOfBlocks) {
+					nextBlockPointer = subFileParameter.subFileSize;
+				} else {
+					nextBlockPointer = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber + 1)
+							& BITMASK_INDEX_OFFSET;
+				}
+				++blocks;
+				bytes += Math.max(0, nextBlockPointer - (currentBlockIndexEntry & BITMASK_INDEX_OFFSET));
+			}
 		}
+		return new QueryCost(blocks, bytes, isWater);
+	}
+
+	/**
+	 * Adds the statistics of a finished query to the statistics of all queries and notifies the query listener.
+	 */
+	private void finishQuery(Tile tile, QueryStatistics queryStatistics) {
+		synchronized (this.statistics) {
+			this.statistics.add(queryStatistics);
+		}
+
+		QueryListener currentQueryListener = this.queryListener;
+		if (currentQueryListener != null) {
+			currentQueryListener.queryFinished(tile, queryStatistics);
+		}
+	}
+
+	/**
+	 * Checks from the index entries whether all blocks which cover the given tile are flagged as water and empty.
+	 */
+	private boolean isWaterOnly(Tile tile, SubFileParameter subFileParameter) throws IOException {
+		QueryCost queryCost = estimateQueryCost(tile, subFileParameter);
+		return queryCost.isWater && queryCost.bytes == 0;
 	}
 
 	/**
 	 * Logs the debug signatures of the current way and block.
 	 */
-	private void logDebugSignatures() {
+	private void logDebugSignatures(QueryContext context) {
 		if (this.mapFileHeader.getMapFileInfo().debugFile) {
-			LOGGER.warning(DEBUG_SIGNATURE_WAY + this.signatureWay);
-			LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
+			LOGGER.warning(DEBUG_SIGNATURE_WAY + context.signatureWay);
+			LOGGER.warning(DEBUG_SIGNATURE_BLOCK + context.signatureBlock);
+		}
+	}
+
+	/**
+	 * Reads the header of the given map file source and prepares it for queries.
+	 * 
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 */
+	private FileOpenResult openSource(MapFileSource source) throws IOException {
+		this.mapFileSource = source;
+		this.fileSize = this.mapFileSource.getSize();
+
+		ReadBuffer headerReadBuffer = new ReadBuffer(this.mapFileSource);
+		this.mapFileHeader = new MapFileHeader();
+		FileOpenResult fileOpenResult = this.mapFileHeader.readHeader(headerReadBuffer, this.fileSize);
+		if (!fileOpenResult.isSuccess()) {
+			closeFile();
+			return fileOpenResult;
+		}
+
+		// a source which cannot be shared between threads only needs a single read buffer
+		if (this.mapFileSource.isThreadSafe()) {
+			this.threadQueryContext = createThreadQueryContext(this.mapFileSource, this.tagCacheCapacity);
+		} else {
+			this.queryContext = new QueryContext(headerReadBuffer, this.tagCacheCapacity);
 		}
+		this.databaseIndexCache = createIndexCache();
+
+		return FileOpenResult.SUCCESS;
 	}
 
-	private void prepareExecution() {
-		if (this.databaseIndexCache == null) {
-			this.databaseIndexCache = new IndexCache(this.inputFile, INDEX_CACHE_SIZE);
+	private synchronized ExecutorService getAsyncReadExecutor() {
+		if (this.asyncReadExecutor == null) {
+			ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(ASYNC_READ_THREADS, ASYNC_READ_THREADS,
+					ASYNC_READ_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "MapDatabaseAsyncRead");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			threadPoolExecutor.allowCoreThreadTimeOut(true);
+			this.asyncReadExecutor = threadPoolExecutor;
 		}
+		return this.asyncReadExecutor;
 	}
 
-	private PoiWayBundle processBlock(QueryParameters queryParameters, SubFileParameter subFileParameter) {
-		if (!processBlockSignature()) {
-			return null;
+	private QueryContext getQueryContext() {
+		if (this.queryContext != null) {
+			return this.queryContext;
+		}
+		return this.threadQueryContext.get();
+	}
+
+	private boolean processBlock(QueryContext context, QueryParameters queryParameters,
+			SubFileParameter subFileParameter, boolean useFilters, MapDataSink mapDataSink) {
+		if (!processBlockSignature(context)) {
+			return false;
 		}
 
-		int[][] zoomTable = readZoomTable(subFileParameter);
+		int[][] zoomTable = readZoomTable(context, subFileParameter);
 		int zoomTableRow = queryParameters.queryZoomLevel - subFileParameter.zoomLevelMin;
 		int poisOnQueryZoomLevel = zoomTable[zoomTableRow][0];
 		int waysOnQueryZoomLevel = zoomTable[zoomTableRow][1];
 
 		// get the relative offset to the first stored way in the block
-		int firstWayOffset = this.readBuffer.readUnsignedInt();
+		int firstWayOffset = context.readBuffer.readUnsignedInt();
 		if (firstWayOffset < 0) {
 			LOGGER.warning(INVALID_FIRST_WAY_OFFSET + firstWayOffset);
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
-				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
+				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + context.signatureBlock);
 			}
-			return null;
+			return false;
 		}
 
 		// add the current buffer position to the relative first way offset
-		firstWayOffset += this.readBuffer.getBufferPosition();
-		if (firstWayOffset > this.readBuffer.getBufferSize()) {
+		firstWayOffset += context.readBuffer.getBufferPosition();
+		if (firstWayOffset > context.readBuffer.getBufferSize()) {
 			LOGGER.warning(INVALID_FIRST_WAY_OFFSET + firstWayOffset);
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
-				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
+				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + context.signatureBlock);
 			}
-			return null;
+			return false;
 		}
 
-		List<PointOfInterest> pois = processPOIs(poisOnQueryZoomLevel);
-		if (pois == null) {
-			return null;
+		// a block which is decoded for the block cache must be complete and must not be projected
+		Set<DecodeSection> decodeSections = useFilters ? queryParameters.decodeSections : null;
+		TagFilter tagFilter = useFilters ? queryParameters.tagFilter : null;
+		TileProjection tileProjection = useFilters ? queryParameters.tileProjection : null;
+		if (!processPOIs(context, poisOnQueryZoomLevel, tagFilter, decodeSections, mapDataSink)) {
+			return false;
 		}
 
 		// finished reading POIs, check if the current buffer position is valid
-		if (this.readBuffer.getBufferPosition() > firstWayOffset) {
-			LOGGER.warning("invalid buffer position: " + this.readBuffer.getBufferPosition());
+		if (context.readBuffer.getBufferPosition() > firstWayOffset) {
+			LOGGER.warning("invalid buffer position: " + context.readBuffer.getBufferPosition());
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
-				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
+				LOGGER.warning(DEBUG_SIGNATURE_BLOCK + context.signatureBlock);
 			}
-			return null;
+			return false;
 		}
 
-		// move the pointer to the first way
-		this.readBuffer.setBufferPosition(firstWayOffset);
-
-		List<Way> ways = processWays(queryParameters, waysOnQueryZoomLevel);
-		if (ways == null) {
-			return null;
+		if (queryParameters.poisOnly) {
+			// the ways are not needed, stop at the first way offset
+			return true;
 		}
 
-		return new PoiWayBundle(pois, ways);
+		// move the pointer to the first way
+		context.readBuffer.setBufferPosition(firstWayOffset);
+
+		return processWays(context, queryParameters, waysOnQueryZoomLevel, useFilters, tagFilter, tileProjection,
+				decodeSections, mapDataSink);
 	}
 
-	private MapReadResult processBlocks(QueryParameters queryParameters, SubFileParameter subFileParameter)
-			throws IOException {
+	private boolean processBlocks(QueryContext context, QueryParameters queryParameters,
+			SubFileParameter subFileParameter, MapDataSink mapDataSink) throws IOException {
+		long numberOfBlocks = (queryParameters.toBlockX - queryParameters.fromBlockX + 1)
+				* (queryParameters.toBlockY - queryParameters.fromBlockY + 1);
+		if (numberOfBlocks >= PARALLEL_DECODING_BLOCKS_MIN && this.threadQueryContext != null
+				&& !queryParameters.poisOnly && queryParameters.decodeSections == null) {
+			ForkJoinPool currentDecodingPool = getDecodingPool();
+			if (currentDecodingPool != null) {
+				return processBlocksParallel(context, queryParameters, subFileParameter, (int) numberOfBlocks,
+						currentDecodingPool, mapDataSink);
+			}
+		}
+
+		boolean queryHasData = false;
 		boolean queryIsWater = true;
 		boolean queryReadWaterInfo = false;
 
-		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+		BlockCache currentBlockCache = this.blockCache;
 
 		// read and process all blocks from top to bottom and from left to right
 		for (long row = queryParameters.fromBlockY; row <= queryParameters.toBlockY; ++row) {
@@ -468,7 +1352,8 @@ public class MapDatabase {
 				long blockNumber = row * subFileParameter.blocksWidth + column;
 
 				// get the current index entry
-				long currentBlockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber);
+				long currentBlockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber,
+						context.statistics);
 
 				// check if the current query would still return a water tile
 				if (queryIsWater) {
@@ -477,69 +1362,41 @@ public class MapDatabase {
 					queryReadWaterInfo = true;
 				}
 
-				// get and check the current block pointer
-				long currentBlockPointer = currentBlockIndexEntry & BITMASK_INDEX_OFFSET;
-				if (currentBlockPointer < 1 || currentBlockPointer > subFileParameter.subFileSize) {
-					LOGGER.warning("invalid current block pointer: " + currentBlockPointer);
-					LOGGER.warning("subFileSize: " + subFileParameter.subFileSize);
-					return null;
-				}
-
-				long nextBlockPointer;
-				// check if the current block is the last block in the file
-				if (blockNumber + 1 == subFileParameter.numberOfBlocks) {
-					// set the next block pointer to the end of the file
-					nextBlockPointer = subFileParameter.subFileSize;
-				} else {
-					// get and check the next block pointer
-					nextBlockPointer = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber + 1)
-							& BITMASK_INDEX_OFFSET;
-					if (nextBlockPointer > subFileParameter.subFileSize) {
-						LOGGER.warning("invalid next block pointer: " + nextBlockPointer);
-						LOGGER.warning("sub-file size: " + subFileParameter.subFileSize);
-						return null;
+				BlockCacheKey blockCacheKey = null;
+				if (currentBlockCache != null) {
+					blockCacheKey = new BlockCacheKey(subFileParameter, blockNumber, queryParameters.queryZoomLevel);
+					PoiWayBundle poiWayBundle = currentBlockCache.get(blockCacheKey);
+					if (poiWayBundle != null) {
+						++context.statistics.blockCacheHits;
+						queryHasData = true;
+						addPoiWayBundle(context, queryParameters, poiWayBundle, mapDataSink);
+						continue;
 					}
 				}
 
-				// calculate the size of the current block
-				int currentBlockSize = (int) (nextBlockPointer - currentBlockPointer);
+				int currentBlockSize = readBlock(context, subFileParameter, row, column, currentBlockIndexEntry);
 				if (currentBlockSize < 0) {
-					LOGGER.warning("current block size must not be negative: " + currentBlockSize);
-					return null;
+					return false;
 				} else if (currentBlockSize == 0) {
-					// the current block is empty, continue with the next block
+					// the current block is empty or too large, continue with the next block
 					continue;
-				} else if (currentBlockSize > ReadBuffer.MAXIMUM_BUFFER_SIZE) {
-					// the current block is too large, continue with the next block
-					LOGGER.warning("current block size too large: " + currentBlockSize);
-					continue;
-				} else if (currentBlockPointer + currentBlockSize > this.fileSize) {
-					LOGGER.warning("current block largher than file size: " + currentBlockSize);
-					return null;
-				}
-
-				// seek to the current block in the map file
-				this.inputFile.seek(subFileParameter.startAddress + currentBlockPointer);
-
-				// read the current block into the buffer
-				if (!this.readBuffer.readFromFile(currentBlockSize)) {
-					// skip the current block
-					LOGGER.warning("reading current block has failed: " + currentBlockSize);
-					return null;
 				}
-
-				// calculate the top-left coordinates of the underlying tile
-				this.tileLatitude = MercatorProjection.tileYToLatitude(subFileParameter.boundaryTileTop + row,
-						subFileParameter.baseZoomLevel);
-				this.tileLongitude = MercatorProjection.tileXToLongitude(subFileParameter.boundaryTileLeft + column,
-						subFileParameter.baseZoomLevel);
+				queryHasData = true;
 
 				try {
-					PoiWayBundle poiWayBundle = processBlock(queryParameters, subFileParameter);
-					if (poiWayBundle != null) {
-						mapReadResultBuilder.add(poiWayBundle);
+					if (blockCacheKey == null || queryParameters.poisOnly || queryParameters.decodeSections != null) {
+						// incomplete blocks must not be put into the block cache
+						long startTime = System.nanoTime();
+						processBlock(context, queryParameters, subFileParameter, true, mapDataSink);
+						context.statistics.decodeTime += System.nanoTime() - startTime;
+					} else {
+						PoiWayBundle poiWayBundle = decodeBlock(context, queryParameters, subFileParameter, false);
+						if (poiWayBundle != null) {
+							currentBlockCache.put(blockCacheKey, poiWayBundle);
+							addPoiWayBundle(context, queryParameters, poiWayBundle, mapDataSink);
+						}
 					}
-				} catch (ArrayIndexOutOfBoundsException e) {
+				} catch (IndexOutOfBoundsException e) {
 					LOGGER.log(Level.SEVERE, null, e);
 				}
 			}
@@ -547,10 +1404,61 @@ public class MapDatabase {
 
 		// the query is finished, was the water flag set for all blocks?
 		if (queryIsWater && queryReadWaterInfo) {
-			mapReadResultBuilder.isWater = true;
+			if (!queryHasData) {
+				// the tile has been answered from the index alone
+				++context.statistics.waterOnlyTiles;
+			}
+			mapDataSink.water();
 		}
 
-		return mapReadResultBuilder.build();
+		return true;
+	}
+
+	/**
+	 * Decodes all blocks of the query in parallel and passes their content to the sink in the same order as
+	 * {@link #processBlocks(QueryContext, QueryParameters, SubFileParameter, MapDataSink)}.
+	 */
+	private boolean processBlocksParallel(QueryContext context, QueryParameters queryParameters,
+			SubFileParameter subFileParameter, int numberOfBlocks, ForkJoinPool currentDecodingPool,
+			MapDataSink mapDataSink) throws IOException {
+		// check the water flags of all blocks in their index entries
+		boolean queryIsWater = true;
+		for (long row = queryParameters.fromBlockY; queryIsWater && row <= queryParameters.toBlockY; ++row) {
+			for (long column = queryParameters.fromBlockX; queryIsWater
+					&& column <= queryParameters.toBlockX; ++column) {
+				long blockNumber = row * subFileParameter.blocksWidth + column;
+				long currentBlockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber);
+				queryIsWater = (currentBlockIndexEntry & BITMASK_INDEX_WATER) != 0;
+			}
+		}
+
+		PoiWayBundle[] poiWayBundles = new PoiWayBundle[numberOfBlocks];
+		BlockDecodingTask blockDecodingTask = new BlockDecodingTask(queryParameters, subFileParameter,
+				this.blockCache, poiWayBundles, 0, numberOfBlocks);
+		currentDecodingPool.invoke(blockDecodingTask);
+		context.statistics.add(blockDecodingTask.statistics);
+		if (blockDecodingTask.failed) {
+			return false;
+		}
+
+		// merge the decoded blocks from top to bottom and from left to right
+		boolean queryHasData = false;
+		for (PoiWayBundle poiWayBundle : poiWayBundles) {
+			if (poiWayBundle != null) {
+				queryHasData = true;
+				addPoiWayBundle(context, queryParameters, poiWayBundle, mapDataSink);
+			}
+		}
+
+		if (queryIsWater) {
+			if (!queryHasData && blockDecodingTask.statistics.blocksRead == 0) {
+				// the tile has been answered from the index alone
+				++context.statistics.waterOnlyTiles;
+			}
+			mapDataSink.water();
+		}
+
+		return true;
 	}
 
 	/**
@@ -558,41 +1466,46 @@ public class MapDatabase {
 	 * 
 	 * @return true if the block signature could be processed successfully, false otherwise.
 	 */
-	private boolean processBlockSignature() {
+	private boolean processBlockSignature(QueryContext context) {
 		if (this.mapFileHeader.getMapFileInfo().debugFile) {
 			// get and check the block signature
-			this.signatureBlock = this.readBuffer.readUTF8EncodedString(SIGNATURE_LENGTH_BLOCK);
-			if (!this.signatureBlock.startsWith("###TileStart")) {
-				LOGGER.warning("invalid block signature: " + this.signatureBlock);
+			context.signatureBlock = context.readBuffer.readUTF8EncodedString(SIGNATURE_LENGTH_BLOCK);
+			if (!context.signatureBlock.startsWith("###TileStart")) {
+				LOGGER.warning("invalid block signature: " + context.signatureBlock);
 				return false;
 			}
 		}
 		return true;
 	}
 
-	private List<PointOfInterest> processPOIs(int numberOfPois) {
-		List<PointOfInterest> pois = new ArrayList<PointOfInterest>();
+	private boolean processPOIs(QueryContext context, int numberOfPois, TagFilter tagFilter,
+			Set<DecodeSection> decodeSections, MapDataSink mapDataSink) {
 		Tag[] poiTags = this.mapFileHeader.getMapFileInfo().poiTags;
+		boolean[] acceptedTagIds = tagFilter == null ? null : tagFilter.poiTagIds;
+		boolean decodeNames = decodeSections == null || decodeSections.contains(DecodeSection.NAMES);
+		boolean decodeTags = decodeSections == null || decodeSections.contains(DecodeSection.TAGS);
 
 		for (int elementCounter = numberOfPois; elementCounter != 0; --elementCounter) {
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
 				// get and check the POI signature
-				this.signaturePoi = this.readBuffer.readUTF8EncodedString(SIGNATURE_LENGTH_POI);
-				if (!this.signaturePoi.startsWith("***POIStart")) {
-					LOGGER.warning("invalid POI signature: " + this.signaturePoi);
-					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
-					return null;
+				context.signaturePoi = context.readBuffer.readUTF8EncodedString(SIGNATURE_LENGTH_POI);
+				if (!context.signaturePoi.startsWith("***POIStart")) {
+					LOGGER.warning("invalid POI signature: " + context.signaturePoi);
+					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + context.signatureBlock);
+					return false;
 				}
 			}
 
 			// get the POI latitude offset (VBE-S)
-			double latitude = this.tileLatitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+			double latitude = context.tileLatitude
+					+ LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 			// get the POI longitude offset (VBE-S)
-			double longitude = this.tileLongitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+			double longitude = context.tileLongitude
+					+ LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 			// get the special byte which encodes multiple flags
-			byte specialByte = this.readBuffer.readByte();
+			byte specialByte = context.readBuffer.readByte();
 
 			// bit 1-4 represent the layer
 			byte layer = (byte) ((specialByte & POI_LAYER_BITMASK) >>> POI_LAYER_SHIFT);
@@ -600,149 +1513,317 @@ public class MapDatabase {
 			byte numberOfTags = (byte) (specialByte & POI_NUMBER_OF_TAGS_BITMASK);
 
 			List<Tag> tags = new ArrayList<Tag>();
+			boolean accepted = acceptedTagIds == null;
 
 			// get the tag IDs (VBE-U)
 			for (byte tagIndex = numberOfTags; tagIndex != 0; --tagIndex) {
-				int tagId = this.readBuffer.readUnsignedInt();
+				int tagId = context.readBuffer.readUnsignedInt();
 				if (tagId < 0 || tagId >= poiTags.length) {
 					LOGGER.warning("invalid POI tag ID: " + tagId);
 					if (this.mapFileHeader.getMapFileInfo().debugFile) {
-						LOGGER.warning(DEBUG_SIGNATURE_POI + this.signaturePoi);
-						LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
+						LOGGER.warning(DEBUG_SIGNATURE_POI + context.signaturePoi);
+						LOGGER.warning(DEBUG_SIGNATURE_BLOCK + context.signatureBlock);
 					}
-					return null;
+					return false;
 				}
-				tags.add(poiTags[tagId]);
+				if (decodeTags) {
+					tags.add(poiTags[tagId]);
+				}
+				accepted = accepted || acceptedTagIds[tagId];
 			}
 
 			// get the feature bitmask (1 byte)
-			byte featureByte = this.readBuffer.readByte();
+			byte featureByte = context.readBuffer.readByte();
 
 			// bit 1-3 enable optional features
 			boolean featureName = (featureByte & POI_FEATURE_NAME) != 0;
 			boolean featureHouseNumber = (featureByte & POI_FEATURE_HOUSE_NUMBER) != 0;
 			boolean featureElevation = (featureByte & POI_FEATURE_ELEVATION) != 0;
 
+			if (!accepted || !mapDataSink.acceptPointOfInterest(layer, tags)) {
+				// skip the optional features and continue with the next POI
+				skipOptionalPoiFeatures(context, featureName, featureHouseNumber, featureElevation);
+				++context.statistics.rejectedPointOfInterests;
+				continue;
+			}
+
+			if (!decodeNames) {
+				// skip the name and house number, they precede the elevation
+				skipOptionalPoiFeatures(context, featureName, featureHouseNumber, false);
+				featureName = false;
+				featureHouseNumber = false;
+			}
+
 			// check if the POI has a name
 			if (featureName) {
-				tags.add(new Tag(TAG_KEY_NAME, this.readBuffer.readUTF8EncodedString()));
+				tags.add(context.readBuffer.readUTF8EncodedTag(TAG_KEY_NAME, context.tagCache));
 			}
 
 			// check if the POI has a house number
 			if (featureHouseNumber) {
-				tags.add(new Tag(TAG_KEY_HOUSE_NUMBER, this.readBuffer.readUTF8EncodedString()));
+				tags.add(context.readBuffer.readUTF8EncodedTag(TAG_KEY_HOUSE_NUMBER, context.tagCache));
 			}
 
 			// check if the POI has an elevation
 			if (featureElevation) {
-				tags.add(new Tag(TAG_KEY_ELE, Integer.toString(this.readBuffer.readSignedInt())));
+				int elevation = context.readBuffer.readSignedInt();
+				if (decodeTags) {
+					tags.add(new Tag(TAG_KEY_ELE, Integer.toString(elevation)));
+				}
+			}
+
+			mapDataSink.pointOfInterest(new PointOfInterest(layer, tags, new LatLong(latitude, longitude)));
+			++context.statistics.pointOfInterests;
+		}
+
+		return true;
+	}
+
+	private void processTiles(QueryContext context, byte queryZoomLevel, List<Tile> tiles,
+			Map<Tile, ? extends MapDataSink> mapDataSinks, TagFilter tagFilter, int tileSize, Set<Tile> readTiles)
+			throws IOException {
+		// get and check the sub-file for the query zoom level
+		SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryZoomLevel);
+		if (subFileParameter == null) {
+			LOGGER.warning("no sub-file for zoom level: " + queryZoomLevel);
+			return;
+		}
+
+		int numberOfTiles = tiles.size();
+		QueryParameters[] queryParameters = new QueryParameters[numberOfTiles];
+		boolean[] queryFailed = new boolean[numberOfTiles];
+		boolean[] queryIsWater = new boolean[numberOfTiles];
+		boolean[] queryReadWaterInfo = new boolean[numberOfTiles];
+		boolean[] queryUsesBlock = new boolean[numberOfTiles];
+
+		// calculate the union of the blocks which need to be read
+		long fromBlockX = Long.MAX_VALUE;
+		long fromBlockY = Long.MAX_VALUE;
+		long toBlockX = Long.MIN_VALUE;
+		long toBlockY = Long.MIN_VALUE;
+		for (int i = 0; i < numberOfTiles; ++i) {
+			queryParameters[i] = new QueryParameters();
+			queryParameters[i].queryZoomLevel = queryZoomLevel;
+			queryParameters[i].tagFilter = tagFilter;
+			if (tileSize > 0) {
+				queryParameters[i].tileProjection = new TileProjection(tiles.get(i), tileSize);
 			}
+			QueryCalculations.calculateBaseTiles(queryParameters[i], tiles.get(i), subFileParameter);
+			QueryCalculations.calculateBlocks(queryParameters[i], subFileParameter);
+			fromBlockX = Math.min(fromBlockX, queryParameters[i].fromBlockX);
+			fromBlockY = Math.min(fromBlockY, queryParameters[i].fromBlockY);
+			toBlockX = Math.max(toBlockX, queryParameters[i].toBlockX);
+			toBlockY = Math.max(toBlockY, queryParameters[i].toBlockY);
+
+			queryIsWater[i] = true;
+		}
+
+		BlockCache currentBlockCache = this.blockCache;
+
+		// read and process all blocks from top to bottom and from left to right
+		for (long row = fromBlockY; row <= toBlockY; ++row) {
+			for (long column = fromBlockX; column <= toBlockX; ++column) {
+				// find the queries which need the current block
+				boolean blockIsUsed = false;
+				for (int i = 0; i < numberOfTiles; ++i) {
+					QueryParameters tileQueryParameters = queryParameters[i];
+					queryUsesBlock[i] = !queryFailed[i] && row >= tileQueryParameters.fromBlockY
+							&& row <= tileQueryParameters.toBlockY && column >= tileQueryParameters.fromBlockX
+							&& column <= tileQueryParameters.toBlockX;
+					blockIsUsed |= queryUsesBlock[i];
+				}
+				if (!blockIsUsed) {
+					continue;
+				}
+
+				// calculate the actual block number of the needed block in the file
+				long blockNumber = row * subFileParameter.blocksWidth + column;
+
+				// get the current index entry
+				long currentBlockIndexEntry = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber,
+						context.statistics);
+
+				// check the water flag of the current block in its index entry
+				boolean blockIsWater = (currentBlockIndexEntry & BITMASK_INDEX_WATER) != 0;
+				for (int i = 0; i < numberOfTiles; ++i) {
+					if (queryUsesBlock[i]) {
+						queryIsWater[i] &= blockIsWater;
+						queryReadWaterInfo[i] = true;
+					}
+				}
+
+				BlockCacheKey blockCacheKey = null;
+				PoiWayBundle poiWayBundle = null;
+				if (currentBlockCache != null) {
+					blockCacheKey = new BlockCacheKey(subFileParameter, blockNumber, queryZoomLevel);
+					poiWayBundle = currentBlockCache.get(blockCacheKey);
+				}
+
+				if (poiWayBundle != null) {
+					++context.statistics.blockCacheHits;
+				} else {
+					int currentBlockSize = readBlock(context, subFileParameter, row, column, currentBlockIndexEntry);
+					if (currentBlockSize < 0) {
+						// the queries which need the current block have failed
+						for (int i = 0; i < numberOfTiles; ++i) {
+							queryFailed[i] |= queryUsesBlock[i];
+						}
+						continue;
+					} else if (currentBlockSize == 0) {
+						// the current block is empty or too large, continue with the next block
+						continue;
+					}
+
+					try {
+						// all queries share the same tag filter, which is only applied if the block is not cached
+						poiWayBundle = decodeBlock(context, queryParameters[0], subFileParameter,
+								blockCacheKey == null);
+					} catch (IndexOutOfBoundsException e) {
+						LOGGER.log(Level.SEVERE, null, e);
+					}
+					if (poiWayBundle == null) {
+						continue;
+					} else if (blockCacheKey != null) {
+						currentBlockCache.put(blockCacheKey, poiWayBundle);
+					}
+				}
 
-			pois.add(new PointOfInterest(layer, tags, new LatLong(latitude, longitude)));
+				// distribute the elements of the current block to the queries which need it
+				for (int i = 0; i < numberOfTiles; ++i) {
+					if (queryUsesBlock[i]) {
+						addPoiWayBundle(context, queryParameters[i], poiWayBundle, mapDataSinks.get(tiles.get(i)));
+					}
+				}
+			}
 		}
 
-		return pois;
+		for (int i = 0; i < numberOfTiles; ++i) {
+			if (!queryFailed[i]) {
+				// the query is finished, was the water flag set for all blocks?
+				if (queryIsWater[i] && queryReadWaterInfo[i]) {
+					mapDataSinks.get(tiles.get(i)).water();
+				}
+				readTiles.add(tiles.get(i));
+			}
+		}
 	}
 
-	private LatLong[][] processWayDataBlock(boolean doubleDeltaEncoding) {
+	private boolean processWayDataBlock(QueryContext context, boolean doubleDeltaEncoding, PackedWay packedWay,
+			TileProjection tileProjection) {
 		// get and check the number of way coordinate blocks (VBE-U)
-		int numberOfWayCoordinateBlocks = this.readBuffer.readUnsignedInt();
+		int numberOfWayCoordinateBlocks = context.readBuffer.readUnsignedInt();
 		if (numberOfWayCoordinateBlocks < 1 || numberOfWayCoordinateBlocks > Short.MAX_VALUE) {
 			LOGGER.warning("invalid number of way coordinate blocks: " + numberOfWayCoordinateBlocks);
-			logDebugSignatures();
-			return null;
+			logDebugSignatures(context);
+			return false;
 		}
 
-		// create the array which will store the different way coordinate blocks
-		LatLong[][] wayCoordinates = new LatLong[numberOfWayCoordinateBlocks][];
-
 		// read the way coordinate blocks
 		for (int coordinateBlock = 0; coordinateBlock < numberOfWayCoordinateBlocks; ++coordinateBlock) {
 			// get and check the number of way nodes (VBE-U)
-			int numberOfWayNodes = this.readBuffer.readUnsignedInt();
+			int numberOfWayNodes = context.readBuffer.readUnsignedInt();
 			if (numberOfWayNodes < 2 || numberOfWayNodes > MAXIMUM_WAY_NODES_SEQUENCE_LENGTH) {
 				LOGGER.warning("invalid number of way nodes: " + numberOfWayNodes);
-				logDebugSignatures();
-				wayCoordinates[coordinateBlock] = null;
+				logDebugSignatures(context);
+				// store an empty way segment
+				packedWay.startSegment(0);
 				continue;
 			}
 
-			// create the array which will store the current way segment
-			LatLong[] waySegment = new LatLong[numberOfWayNodes];
+			// start the current way segment
+			packedWay.startSegment(numberOfWayNodes);
 
 			if (doubleDeltaEncoding) {
-				decodeWayNodesDoubleDelta(waySegment);
+				decodeWayNodesDoubleDelta(context, packedWay, numberOfWayNodes, tileProjection);
 			} else {
-				decodeWayNodesSingleDelta(waySegment);
+				decodeWayNodesSingleDelta(context, packedWay, numberOfWayNodes, tileProjection);
 			}
-
-			wayCoordinates[coordinateBlock] = waySegment;
 		}
 
-		return wayCoordinates;
+		return true;
 	}
 
-	private List<Way> processWays(QueryParameters queryParameters, int numberOfWays) {
-		List<Way> ways = new ArrayList<Way>();
+	private boolean processWays(QueryContext context, QueryParameters queryParameters, int numberOfWays,
+			boolean useTileBitmask, TagFilter tagFilter, TileProjection tileProjection,
+			Set<DecodeSection> decodeSections, MapDataSink mapDataSink) {
 		Tag[] wayTags = this.mapFileHeader.getMapFileInfo().wayTags;
+		boolean[] acceptedTagIds = tagFilter == null ? null : tagFilter.wayTagIds;
+		boolean decodeGeometry = decodeSections == null || decodeSections.contains(DecodeSection.GEOMETRY);
+		boolean decodeLabelPosition = decodeSections == null || decodeSections.contains(DecodeSection.LABEL_POSITION);
+		boolean decodeNames = decodeSections == null || decodeSections.contains(DecodeSection.NAMES);
+		boolean decodeTags = decodeSections == null || decodeSections.contains(DecodeSection.TAGS);
 
 		for (int elementCounter = numberOfWays; elementCounter != 0; --elementCounter) {
 			if (this.mapFileHeader.getMapFileInfo().debugFile) {
 				// get and check the way signature
-				this.signatureWay = this.readBuffer.readUTF8EncodedString(SIGNATURE_LENGTH_WAY);
-				if (!this.signatureWay.startsWith("---WayStart")) {
-					LOGGER.warning("invalid way signature: " + this.signatureWay);
-					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
-					return null;
+				context.signatureWay = context.readBuffer.readUTF8EncodedString(SIGNATURE_LENGTH_WAY);
+				if (!context.signatureWay.startsWith("---WayStart")) {
+					LOGGER.warning("invalid way signature: " + context.signatureWay);
+					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + context.signatureBlock);
+					return false;
 				}
 			}
 
 			// get the size of the way (VBE-U)
-			int wayDataSize = this.readBuffer.readUnsignedInt();
+			int wayDataSize = context.readBuffer.readUnsignedInt();
 			if (wayDataSize < 0) {
 				LOGGER.warning("invalid way data size: " + wayDataSize);
 				if (this.mapFileHeader.getMapFileInfo().debugFile) {
-					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + this.signatureBlock);
+					LOGGER.warning(DEBUG_SIGNATURE_BLOCK + context.signatureBlock);
 				}
-				return null;
+				return false;
 			}
 
-			if (queryParameters.useTileBitmask) {
-				// get the way tile bitmask (2 bytes)
-				int tileBitmask = this.readBuffer.readShort();
-				// check if the way is inside the requested tile
-				if ((queryParameters.queryTileBitmask & tileBitmask) == 0) {
-					// skip the rest of the way and continue with the next way
-					this.readBuffer.skipBytes(wayDataSize - 2);
-					continue;
-				}
-			} else {
-				// ignore the way tile bitmask (2 bytes)
-				this.readBuffer.skipBytes(2);
+			int wayEnd = context.readBuffer.getBufferPosition() + wayDataSize;
+
+			// get the way tile bitmask (2 bytes)
+			int tileBitmask = context.readBuffer.readShort();
+			// check if the way is inside the requested tile
+			if (useTileBitmask && queryParameters.useTileBitmask
+					&& (queryParameters.queryTileBitmask & tileBitmask) == 0) {
+				// skip the rest of the way and continue with the next way
+				context.readBuffer.skipBytes(wayDataSize - 2);
+				++context.statistics.skippedWays;
+				continue;
 			}
 
 			// get the special byte which encodes multiple flags
-			byte specialByte = this.readBuffer.readByte();
+			byte specialByte = context.readBuffer.readByte();
 
 			// bit 1-4 represent the layer
 			byte layer = (byte) ((specialByte & WAY_LAYER_BITMASK) >>> WAY_LAYER_SHIFT);
 			// bit 5-8 represent the number of tag IDs
 			byte numberOfTags = (byte) (specialByte & WAY_NUMBER_OF_TAGS_BITMASK);
 
-			List<Tag> tags = new ArrayList<Tag>();
+			PackedWay packedWay = context.wayBuffer;
+			packedWay.clear();
+			packedWay.layer = layer;
+			packedWay.tileBitmask = tileBitmask;
+			packedWay.projected = tileProjection != null;
+			boolean accepted = acceptedTagIds == null;
 
 			for (byte tagIndex = numberOfTags; tagIndex != 0; --tagIndex) {
-				int tagId = this.readBuffer.readUnsignedInt();
+				int tagId = context.readBuffer.readUnsignedInt();
 				if (tagId < 0 || tagId >= wayTags.length) {
 					LOGGER.warning("invalid way tag ID: " + tagId);
-					logDebugSignatures();
-					return null;
+					logDebugSignatures(context);
+					return false;
 				}
-				tags.add(wayTags[tagId]);
+				if (decodeTags) {
+					packedWay.tags.add(wayTags[tagId]);
+				}
+				accepted = accepted || acceptedTagIds[tagId];
+			}
+
+			if (!accepted || !mapDataSink.acceptWay(layer, packedWay.tags)) {
+				// skip the rest of the way and continue with the next way
+				context.readBuffer.setBufferPosition(wayEnd);
+				++context.statistics.rejectedWays;
+				continue;
 			}
 
 			// get the feature bitmask (1 byte)
-			byte featureByte = this.readBuffer.readByte();
+			byte featureByte = context.readBuffer.readByte();
 
 			// bit 1-6 enable optional features
 			boolean featureName = (featureByte & WAY_FEATURE_NAME) != 0;
@@ -752,50 +1833,226 @@ public class MapDatabase {
 			boolean featureWayDataBlocksByte = (featureByte & WAY_FEATURE_DATA_BLOCKS_BYTE) != 0;
 			boolean featureWayDoubleDeltaEncoding = (featureByte & WAY_FEATURE_DOUBLE_DELTA_ENCODING) != 0;
 
-			// check if the way has a name
-			if (featureName) {
-				tags.add(new Tag(TAG_KEY_NAME, this.readBuffer.readUTF8EncodedString()));
-			}
+			if (decodeNames) {
+				// check if the way has a name
+				if (featureName) {
+					packedWay.tags.add(context.readBuffer.readUTF8EncodedTag(TAG_KEY_NAME, context.tagCache));
+				}
 
-			// check if the way has a house number
-			if (featureHouseNumber) {
-				tags.add(new Tag(TAG_KEY_HOUSE_NUMBER, this.readBuffer.readUTF8EncodedString()));
+				// check if the way has a house number
+				if (featureHouseNumber) {
+					packedWay.tags.add(context.readBuffer.readUTF8EncodedTag(TAG_KEY_HOUSE_NUMBER, context.tagCache));
+				}
+
+				// check if the way has a reference
+				if (featureRef) {
+					packedWay.tags.add(context.readBuffer.readUTF8EncodedTag(TAG_KEY_REF, context.tagCache));
+				}
+			} else {
+				skipOptionalWayFeatures(context, featureName, featureHouseNumber, featureRef);
 			}
 
-			// check if the way has a reference
-			if (featureRef) {
-				tags.add(new Tag(TAG_KEY_REF, this.readBuffer.readUTF8EncodedString()));
+			if (decodeLabelPosition) {
+				packedWay.labelPosition = readOptionalLabelPosition(context, featureLabelPosition);
+			} else {
+				packedWay.labelPosition = null;
+				if (featureLabelPosition) {
+					// skip the latitude and longitude offsets of the label position
+					context.readBuffer.readSignedInt();
+					context.readBuffer.readSignedInt();
+				}
 			}
 
-			LatLong labelPosition = readOptionalLabelPosition(featureLabelPosition);
+			if (!decodeGeometry) {
+				// skip the way data blocks and pass the way without any way nodes
+				context.readBuffer.setBufferPosition(wayEnd);
+				packedWay.clearNodes();
+				mapDataSink.way(packedWay);
+				++context.statistics.ways;
+				continue;
+			}
 
-			int wayDataBlocks = readOptionalWayDataBlocksByte(featureWayDataBlocksByte);
+			int wayDataBlocks = readOptionalWayDataBlocksByte(context, featureWayDataBlocksByte);
 			if (wayDataBlocks < 1) {
 				LOGGER.warning("invalid number of way data blocks: " + wayDataBlocks);
-				logDebugSignatures();
-				return null;
+				logDebugSignatures(context);
+				return false;
 			}
 
 			for (int wayDataBlock = 0; wayDataBlock < wayDataBlocks; ++wayDataBlock) {
-				LatLong[][] wayNodes = processWayDataBlock(featureWayDoubleDeltaEncoding);
-				if (wayNodes == null) {
-					return null;
+				// all way data blocks share the properties of the way
+				packedWay.clearNodes();
+				if (!processWayDataBlock(context, featureWayDoubleDeltaEncoding, packedWay, tileProjection)) {
+					return false;
 				}
 
-				ways.add(new Way(layer, tags, wayNodes, labelPosition));
+				mapDataSink.way(packedWay);
+			}
+			++context.statistics.ways;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads the block with the given index entry into the buffer and calculates the coordinates of its underlying tile.
+	 * 
+	 * @return the size of the block, 0 if the block is empty or too large, -1 if the block could not be read.
+	 */
+	private int readBlock(QueryContext context, SubFileParameter subFileParameter, long row, long column,
+			long currentBlockIndexEntry) throws IOException {
+		long blockNumber = row * subFileParameter.blocksWidth + column;
+
+		// get and check the current block pointer
+		long currentBlockPointer = currentBlockIndexEntry & BITMASK_INDEX_OFFSET;
+		if (currentBlockPointer < 1 || currentBlockPointer > subFileParameter.subFileSize) {
+			LOGGER.warning("invalid current block pointer: " + currentBlockPointer);
+			LOGGER.warning("subFileSize: " + subFileParameter.subFileSize);
+			return -1;
+		}
+
+		long nextBlockPointer;
+		// check if the current block is the last block in the file
+		if (blockNumber + 1 == subFileParameter.numberOfBlocks) {
+			// set the next block pointer to the end of the file
+			nextBlockPointer = subFileParameter.subFileSize;
+		} else {
+			// get and check the next block pointer
+			nextBlockPointer = this.databaseIndexCache.getIndexEntry(subFileParameter, blockNumber + 1,
+					context.statistics) & BITMASK_INDEX_OFFSET;
+			if (nextBlockPointer > subFileParameter.subFileSize) {
+				LOGGER.warning("invalid next block pointer: " + nextBlockPointer);
+				LOGGER.warning("sub-file size: " + subFileParameter.subFileSize);
+				return -1;
+			}
+		}
+
+		// calculate the size of the current block
+		int currentBlockSize = (int) (nextBlockPointer - currentBlockPointer);
+		if (currentBlockSize < 0) {
+			LOGGER.warning("current block size must not be negative: " + currentBlockSize);
+			return -1;
+		} else if (currentBlockSize == 0) {
+			// the current block is empty
+			return 0;
+		} else if (currentBlockSize > ReadBuffer.MAXIMUM_BUFFER_SIZE) {
+			// the current block is too large
+			LOGGER.warning("current block size too large: " + currentBlockSize);
+			return 0;
+		} else if (currentBlockPointer + currentBlockSize > this.fileSize) {
+			LOGGER.warning("current block largher than file size: " + currentBlockSize);
+			return -1;
+		}
+
+		// read the current block into the buffer
+		long startTime = System.nanoTime();
+		if (!context.readBuffer.readFromFile(subFileParameter.startAddress + currentBlockPointer,
+				currentBlockSize)) {
+			// skip the current block
+			LOGGER.warning("reading current block has failed: " + currentBlockSize);
+			return -1;
+		}
+		context.statistics.readTime += System.nanoTime() - startTime;
+		++context.statistics.blocksRead;
+		context.statistics.bytesRead += currentBlockSize;
+
+		// calculate the top-left coordinates of the underlying tile
+		context.tileLatitude = MercatorProjection.tileYToLatitude(subFileParameter.boundaryTileTop + row,
+				subFileParameter.baseZoomLevel);
+		context.tileLongitude = MercatorProjection.tileXToLongitude(subFileParameter.boundaryTileLeft + column,
+				subFileParameter.baseZoomLevel);
+
+		return currentBlockSize;
+	}
+
+	private boolean readMapData(Tile tile, MapDataSink mapDataSink, TagFilter tagFilter,
+			TileProjection tileProjection, Set<DecodeSection> decodeSections) {
+		checkQuery(tagFilter);
+
+		QueryContext context = getQueryContext();
+		QueryStatistics queryStatistics = startQuery(context);
+		try {
+			QueryParameters queryParameters = new QueryParameters();
+			queryParameters.decodeSections = decodeSections;
+			queryParameters.tagFilter = tagFilter;
+			queryParameters.tileProjection = tileProjection;
+			queryParameters.queryZoomLevel = this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel);
+
+			// get and check the sub-file for the query zoom level
+			SubFileParameter subFileParameter = this.mapFileHeader.getSubFileParameter(queryParameters.queryZoomLevel);
+			if (subFileParameter == null) {
+				LOGGER.warning("no sub-file for zoom level: " + queryParameters.queryZoomLevel);
+				return false;
+			}
+
+			QueryCalculations.calculateBaseTiles(queryParameters, tile, subFileParameter);
+			QueryCalculations.calculateBlocks(queryParameters, subFileParameter);
+
+			return processBlocks(context, queryParameters, subFileParameter, mapDataSink);
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, null, e);
+			return false;
+		} finally {
+			finishQuery(tile, queryStatistics);
+		}
+	}
+
+	/**
+	 * Reads the map data for the areas covered by the given tiles, grouped by the sub-files of their zoom levels.
+	 * 
+	 * @param tileSize
+	 *            the size of the tiles in pixels to project the way nodes into, 0 to keep geographic coordinates.
+	 * @return the tiles whose map data could be read successfully.
+	 */
+	private Set<Tile> readMapData(Map<Tile, ? extends MapDataSink> mapDataSinks, TagFilter tagFilter, int tileSize) {
+		checkQuery(tagFilter);
+
+		// group the tiles by their query zoom level, each group reads the blocks of one sub-file
+		Map<Byte, List<Tile>> tilesByQueryZoomLevel = new HashMap<Byte, List<Tile>>();
+		for (Tile tile : mapDataSinks.keySet()) {
+			Byte queryZoomLevel = Byte.valueOf(this.mapFileHeader.getQueryZoomLevel(tile.zoomLevel));
+			List<Tile> queryTiles = tilesByQueryZoomLevel.get(queryZoomLevel);
+			if (queryTiles == null) {
+				queryTiles = new ArrayList<Tile>();
+				tilesByQueryZoomLevel.put(queryZoomLevel, queryTiles);
+			}
+			queryTiles.add(tile);
+		}
+
+		Set<Tile> readTiles = new HashSet<Tile>();
+		QueryContext context = getQueryContext();
+		QueryStatistics queryStatistics = startQuery(context);
+		try {
+			for (Map.Entry<Byte, List<Tile>> entry : tilesByQueryZoomLevel.entrySet()) {
+				try {
+					processTiles(context, entry.getKey().byteValue(), entry.getValue(), mapDataSinks, tagFilter,
+							tileSize, readTiles);
+				} catch (IOException e) {
+					LOGGER.log(Level.SEVERE, null, e);
+				}
 			}
+		} finally {
+			finishQuery(null, queryStatistics);
 		}
+		return readTiles;
+	}
 
-		return ways;
+	private synchronized void shutdownDecodingPool() {
+		if (this.decodingPool != null) {
+			this.decodingPool.shutdown();
+			this.decodingPool = null;
+		}
 	}
 
-	private LatLong readOptionalLabelPosition(boolean featureLabelPosition) {
+	private LatLong readOptionalLabelPosition(QueryContext context, boolean featureLabelPosition) {
 		if (featureLabelPosition) {
 			// get the label position latitude offset (VBE-S)
-			double latitude = this.tileLatitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+			double latitude = context.tileLatitude
+					+ LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 			// get the label position longitude offset (VBE-S)
-			double longitude = this.tileLongitude + LatLongUtils.microdegreesToDegrees(this.readBuffer.readSignedInt());
+			double longitude = context.tileLongitude
+					+ LatLongUtils.microdegreesToDegrees(context.readBuffer.readSignedInt());
 
 			return new LatLong(latitude, longitude);
 		}
@@ -803,16 +2060,16 @@ public class MapDatabase {
 		return null;
 	}
 
-	private int readOptionalWayDataBlocksByte(boolean featureWayDataBlocksByte) {
+	private int readOptionalWayDataBlocksByte(QueryContext context, boolean featureWayDataBlocksByte) {
 		if (featureWayDataBlocksByte) {
 			// get and check the number of way data blocks (VBE-U)
-			return this.readBuffer.readUnsignedInt();
+			return context.readBuffer.readUnsignedInt();
 		}
 		// only one way data block exists
 		return 1;
 	}
 
-	private int[][] readZoomTable(SubFileParameter subFileParameter) {
+	private int[][] readZoomTable(QueryContext context, SubFileParameter subFileParameter) {
 		int rows = subFileParameter.zoomLevelMax - subFileParameter.zoomLevelMin + 1;
 		int[][] zoomTable = new int[rows][2];
 
@@ -820,8 +2077,8 @@ public class MapDatabase {
 		int cumulatedNumberOfWays = 0;
 
 		for (int row = 0; row < rows; ++row) {
-			cumulatedNumberOfPois += this.readBuffer.readUnsignedInt();
-			cumulatedNumberOfWays += this.readBuffer.readUnsignedInt();
+			cumulatedNumberOfPois += context.readBuffer.readUnsignedInt();
+			cumulatedNumberOfWays += context.readBuffer.readUnsignedInt();
 
 			zoomTable[row][0] = cumulatedNumberOfPois;
 			zoomTable[row][1] = cumulatedNumberOfWays;
@@ -829,4 +2086,103 @@ public class MapDatabase {
 
 		return zoomTable;
 	}
+
+	/**
+	 * Decodes a range of the blocks of a query, each worker thread uses its own query context. The decoded blocks are
+	 * stored by their position in the query, so that they can be merged in a deterministic order.
+	 */
+	private final class BlockDecodingTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final BlockCache currentBlockCache;
+		boolean failed;
+		private final int from;
+		private final PoiWayBundle[] poiWayBundles;
+		private final QueryParameters queryParameters;
+		final QueryStatistics statistics = new QueryStatistics();
+		private final SubFileParameter subFileParameter;
+		private final int to;
+
+		BlockDecodingTask(QueryParameters queryParameters, SubFileParameter subFileParameter,
+				BlockCache currentBlockCache, PoiWayBundle[] poiWayBundles, int from, int to) {
+			this.queryParameters = queryParameters;
+			this.subFileParameter = subFileParameter;
+			this.currentBlockCache = currentBlockCache;
+			this.poiWayBundles = poiWayBundles;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > PARALLEL_DECODING_BLOCKS_PER_TASK) {
+				int middle = (this.from + this.to) >>> 1;
+				BlockDecodingTask left = new BlockDecodingTask(this.queryParameters, this.subFileParameter,
+						this.currentBlockCache, this.poiWayBundles, this.from, middle);
+				BlockDecodingTask right = new BlockDecodingTask(this.queryParameters, this.subFileParameter,
+						this.currentBlockCache, this.poiWayBundles, middle, this.to);
+				invokeAll(left, right);
+				this.failed = left.failed || right.failed;
+				this.statistics.add(left.statistics);
+				this.statistics.add(right.statistics);
+				return;
+			}
+
+			// count the work of this task separately, the worker thread may have been used by other queries
+			QueryContext context = getQueryContext();
+			QueryStatistics previousStatistics = context.statistics;
+			context.statistics = this.statistics;
+			try {
+				decodeBlocks(context);
+			} catch (IOException e) {
+				LOGGER.log(Level.SEVERE, null, e);
+				this.failed = true;
+			} finally {
+				context.statistics = previousStatistics;
+			}
+		}
+
+		private void decodeBlocks(QueryContext context) throws IOException {
+			long columns = this.queryParameters.toBlockX - this.queryParameters.fromBlockX + 1;
+			for (int i = this.from; i < this.to; ++i) {
+				long row = this.queryParameters.fromBlockY + i / columns;
+				long column = this.queryParameters.fromBlockX + i % columns;
+				long blockNumber = row * this.subFileParameter.blocksWidth + column;
+
+				BlockCacheKey blockCacheKey = null;
+				if (this.currentBlockCache != null) {
+					blockCacheKey = new BlockCacheKey(this.subFileParameter, blockNumber,
+							this.queryParameters.queryZoomLevel);
+					this.poiWayBundles[i] = this.currentBlockCache.get(blockCacheKey);
+					if (this.poiWayBundles[i] != null) {
+						++context.statistics.blockCacheHits;
+						continue;
+					}
+				}
+
+				long currentBlockIndexEntry = MapDatabase.this.databaseIndexCache.getIndexEntry(
+						this.subFileParameter, blockNumber, context.statistics);
+				int currentBlockSize = readBlock(context, this.subFileParameter, row, column, currentBlockIndexEntry);
+				if (currentBlockSize < 0) {
+					this.failed = true;
+					return;
+				} else if (currentBlockSize == 0) {
+					// the current block is empty or too large, continue with the next block
+					continue;
+				}
+
+				try {
+					// the tag filter of the query is only applied if the decoded block is not cached
+					PoiWayBundle poiWayBundle = decodeBlock(context, this.queryParameters, this.subFileParameter,
+							blockCacheKey == null);
+					if (poiWayBundle != null && blockCacheKey != null) {
+						this.currentBlockCache.put(blockCacheKey, poiWayBundle);
+					}
+					this.poiWayBundles[i] = poiWayBundle;
+				} catch (IndexOutOfBoundsException e) {
+					LOGGER.log(Level.SEVERE, null, e);
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Provides random access to the bytes of a map file.
+ * <p>
+ * Implementations which return true from {@link #isThreadSafe()} may be read concurrently by multiple threads.
+ */
+abstract class MapFileSource {
+	/**
+	 * Closes this source and releases all associated resources.
+	 * 
+	 * @throws IOException
+	 *             if an error occurs while closing the source.
+	 */
+	abstract void close() throws IOException;
+
+	/**
+	 * @return the size of the map file in bytes.
+	 */
+	abstract long getSize();
+
+	/**
+	 * @return true if all bytes are served from memory without any I/O, false otherwise.
+	 */
+	abstract boolean isInMemory();
+
+	/**
+	 * @return true if this source can be read concurrently by multiple threads, false otherwise.
+	 */
+	abstract boolean isThreadSafe();
+
+	/**
+	 * Reads the given amount of bytes from the given position. The returned buffer contains the data at the indices
+	 * {@code 0} to {@code length - 1}, its limit is set to {@code length}.
+	 * <p>
+	 * Implementations which copy the data may reuse the given buffer if its capacity is large enough, all others return
+	 * a view of their own memory.
+	 * 
+	 * @param position
+	 *            the absolute position in the map file.
+	 * @param length
+	 *            the amount of bytes to read.
+	 * @param buffer
+	 *            a previously returned buffer which may be reused (may be null).
+	 * @return a buffer with the requested data or null, if the data could not be read completely.
+	 * @throws IOException
+	 *             if an error occurs while reading the file.
+	 */
+	abstract ByteBuffer read(long position, int length, ByteBuffer buffer) throws IOException;
+}
@@ -17,7 +17,9 @@ package org.mapsforge.map.reader;
 import java.util.ArrayList;
 import java.util.List;
 
-class MapReadResultBuilder {
+import org.mapsforge.core.model.Tag;
+
+class MapReadResultBuilder implements MapDataSink {
 	boolean isWater;
 	final List<PointOfInterest> pointOfInterests;
 	final List<Way> ways;
@@ -27,9 +29,29 @@ class MapReadResultBuilder {
 		this.ways = new ArrayList<Way>();
 	}
 
-	void add(PoiWayBundle poiWayBundle) {
-		this.pointOfInterests.addAll(poiWayBundle.pois);
-		this.ways.addAll(poiWayBundle.ways);
+	@Override
+	public boolean acceptPointOfInterest(byte layer, List<Tag> tags) {
+		return true;
+	}
+
+	@Override
+	public boolean acceptWay(byte layer, List<Tag> tags) {
+		return true;
+	}
+
+	@Override
+	public void pointOfInterest(PointOfInterest pointOfInterest) {
+		this.pointOfInterests.add(pointOfInterest);
+	}
+
+	@Override
+	public void water() {
+		this.isWater = true;
+	}
+
+	@Override
+	public void way(PackedWay way) {
+		this.ways.add(way.toWay());
 	}
 
 	MapReadResult build() {
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A {@link MapFileSource} which maps the whole map file into memory via {@link FileChannel#map}.
+ * <p>
+ * A single {@link MappedByteBuffer} is limited to 2 GB, so the file is mapped in consecutive segments. Each segment
+ * overlaps with its successor by {@link ReadBuffer#MAXIMUM_BUFFER_SIZE} bytes, so every valid read is fully contained
+ * in the segment in which it starts and can be returned as a view without copying.
+ * <p>
+ * This class is thread-safe.
+ */
+class MappedFileSource extends MapFileSource {
+	private static final String READ_ONLY_MODE = "r";
+
+	/**
+	 * Distance in bytes between the start addresses of two consecutive segments.
+	 */
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	private final long fileSize;
+	private final RandomAccessFile inputFile;
+	private final ByteBuffer[] segments;
+
+	MappedFileSource(File mapFile) throws IOException {
+		this.inputFile = new RandomAccessFile(mapFile, READ_ONLY_MODE);
+		try {
+			this.fileSize = this.inputFile.length();
+			this.segments = mapSegments(this.inputFile.getChannel(), this.fileSize);
+		} catch (IOException e) {
+			this.inputFile.close();
+			throw e;
+		}
+	}
+
+	private static ByteBuffer[] mapSegments(FileChannel fileChannel, long fileSize) throws IOException {
+		int numberOfSegments = (int) ((fileSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+		ByteBuffer[] segments = new ByteBuffer[Math.max(numberOfSegments, 1)];
+		for (int i = 0; i < segments.length; ++i) {
+			long segmentStart = i * SEGMENT_SIZE;
+			long segmentSize = Math.min(SEGMENT_SIZE + ReadBuffer.MAXIMUM_BUFFER_SIZE, fileSize - segmentStart);
+			segments[i] = fileChannel.map(MapMode.READ_ONLY, segmentStart, segmentSize);
+		}
+		return segments;
+	}
+
+	@Override
+	void close() throws IOException {
+		// mapped buffers cannot be unmapped explicitly, they are released when garbage collected
+		this.inputFile.close();
+	}
+
+	@Override
+	long getSize() {
+		return this.fileSize;
+	}
+
+	@Override
+	boolean isInMemory() {
+		return true;
+	}
+
+	@Override
+	boolean isThreadSafe() {
+		return true;
+	}
+
+	@Override
+	ByteBuffer read(long position, int length, ByteBuffer buffer) {
+		if (position < 0 || length < 0 || position + length > this.fileSize) {
+			return null;
+		}
+
+		int segmentIndex = (int) (position / SEGMENT_SIZE);
+		int offset = (int) (position - segmentIndex * SEGMENT_SIZE);
+
+		// the segments are never modified, so each caller works on its own duplicate
+		ByteBuffer view = this.segments[segmentIndex].duplicate();
+		if (offset + length > view.capacity()) {
+			return null;
+		}
+		view.limit(offset + length);
+		view.position(offset);
+		return view.slice();
+	}
+}
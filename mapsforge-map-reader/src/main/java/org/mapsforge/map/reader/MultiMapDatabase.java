@@ -0,0 +1,246 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileInfo;
+
+/**
+ * A MultiMapDatabase combines several map files, e.g. adjacent regional extracts, into one map. Each tile is only read
+ * from the map files whose bounding box overlaps the tile, all map files stay open between queries.
+ * <p>
+ * Map files whose zoom range covers the zoom level of a tile are preferred. If no overlapping map file covers the zoom
+ * level, all overlapping map files are read at their closest zoom level like a single {@link MapDatabase} does.
+ * <p>
+ * A MultiMapDatabase is thread-safe if all of its map files are opened in a thread-safe {@link FileAccessMode}.
+ */
+public class MultiMapDatabase {
+	/**
+	 * An open map file together with its bounds and zoom range.
+	 */
+	private static final class MapFileEntry {
+		final MapDatabase mapDatabase;
+		final double maxLatitude;
+		final double maxLongitude;
+		final double minLatitude;
+		final double minLongitude;
+		final byte zoomLevelMax;
+		final byte zoomLevelMin;
+
+		MapFileEntry(MapDatabase mapDatabase) {
+			MapFileInfo mapFileInfo = mapDatabase.getMapFileInfo();
+			this.mapDatabase = mapDatabase;
+			this.maxLatitude = mapFileInfo.boundingBox.maxLatitude;
+			this.maxLongitude = mapFileInfo.boundingBox.maxLongitude;
+			this.minLatitude = mapFileInfo.boundingBox.minLatitude;
+			this.minLongitude = mapFileInfo.boundingBox.minLongitude;
+			this.zoomLevelMax = mapFileInfo.zoomLevelMax;
+			this.zoomLevelMin = mapFileInfo.zoomLevelMin;
+		}
+	}
+
+	/**
+	 * A sink which forwards all elements to another sink and records whether a map file reported a water tile.
+	 */
+	private static final class WaterSink implements MapDataSink {
+		private final MapDataSink mapDataSink;
+		boolean isWater;
+
+		WaterSink(MapDataSink mapDataSink) {
+			this.mapDataSink = mapDataSink;
+		}
+
+		@Override
+		public boolean acceptPointOfInterest(byte layer, List<Tag> tags) {
+			return this.mapDataSink.acceptPointOfInterest(layer, tags);
+		}
+
+		@Override
+		public boolean acceptWay(byte layer, List<Tag> tags) {
+			return this.mapDataSink.acceptWay(layer, tags);
+		}
+
+		@Override
+		public void pointOfInterest(PointOfInterest pointOfInterest) {
+			this.mapDataSink.pointOfInterest(pointOfInterest);
+		}
+
+		@Override
+		public void water() {
+			this.isWater = true;
+		}
+
+		@Override
+		public void way(PackedWay way) {
+			this.mapDataSink.way(way);
+		}
+	}
+
+	private volatile MapFileEntry[] mapFileEntries = new MapFileEntry[0];
+	private final List<MapDatabase> ownedMapDatabases = new ArrayList<MapDatabase>();
+
+	/**
+	 * Adds an already opened map database. The map database is not closed by {@link #closeFiles()}, so that it can be
+	 * shared with other users.
+	 * 
+	 * @param mapDatabase
+	 *            the opened map database.
+	 * @throws IllegalArgumentException
+	 *             if the given map database has no open file.
+	 */
+	public synchronized void addMapDatabase(MapDatabase mapDatabase) {
+		if (!mapDatabase.hasOpenFile()) {
+			throw new IllegalArgumentException("mapDatabase has no open file");
+		}
+
+		MapFileEntry[] currentMapFileEntries = this.mapFileEntries;
+		MapFileEntry[] newMapFileEntries = new MapFileEntry[currentMapFileEntries.length + 1];
+		System.arraycopy(currentMapFileEntries, 0, newMapFileEntries, 0, currentMapFileEntries.length);
+		newMapFileEntries[currentMapFileEntries.length] = new MapFileEntry(mapDatabase);
+		this.mapFileEntries = newMapFileEntries;
+	}
+
+	/**
+	 * Opens the given map file and adds it to this MultiMapDatabase.
+	 * 
+	 * @param mapFile
+	 *            the map file.
+	 * @param fileAccessMode
+	 *            the way in which the map file is accessed.
+	 * @return a FileOpenResult containing an error message in case of a failure.
+	 */
+	public synchronized FileOpenResult addMapFile(File mapFile, FileAccessMode fileAccessMode) {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile, fileAccessMode);
+		if (fileOpenResult.isSuccess()) {
+			addMapDatabase(mapDatabase);
+			this.ownedMapDatabases.add(mapDatabase);
+		}
+		return fileOpenResult;
+	}
+
+	/**
+	 * Closes all map files which have been opened by {@link #addMapFile(File, FileAccessMode)} and removes all map
+	 * databases.
+	 */
+	public synchronized void closeFiles() {
+		this.mapFileEntries = new MapFileEntry[0];
+		for (MapDatabase mapDatabase : this.ownedMapDatabases) {
+			mapDatabase.closeFile();
+		}
+		this.ownedMapDatabases.clear();
+	}
+
+	/**
+	 * @return the map databases of this MultiMapDatabase in the order in which they have been added.
+	 */
+	public List<MapDatabase> getMapDatabases() {
+		List<MapDatabase> list = new ArrayList<MapDatabase>();
+		for (MapFileEntry mapFileEntry : this.mapFileEntries) {
+			list.add(mapFileEntry.mapDatabase);
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the map databases from which the given tile is read.
+	 * 
+	 * @param tile
+	 *            the tile.
+	 * @return the map databases whose map files overlap the given tile.
+	 */
+	public List<MapDatabase> getMapDatabases(Tile tile) {
+		MapFileEntry[] currentMapFileEntries = this.mapFileEntries;
+
+		double minLatitude = MercatorProjection.tileYToLatitude(tile.tileY + 1, tile.zoomLevel);
+		double maxLatitude = MercatorProjection.tileYToLatitude(tile.tileY, tile.zoomLevel);
+		double minLongitude = MercatorProjection.tileXToLongitude(tile.tileX, tile.zoomLevel);
+		double maxLongitude = MercatorProjection.tileXToLongitude(tile.tileX + 1, tile.zoomLevel);
+
+		List<MapDatabase> overlapping = new ArrayList<MapDatabase>();
+		List<MapDatabase> coveringZoomLevel = new ArrayList<MapDatabase>();
+		for (MapFileEntry mapFileEntry : currentMapFileEntries) {
+			if (maxLatitude < mapFileEntry.minLatitude || minLatitude > mapFileEntry.maxLatitude
+					|| maxLongitude < mapFileEntry.minLongitude || minLongitude > mapFileEntry.maxLongitude) {
+				continue;
+			}
+
+			overlapping.add(mapFileEntry.mapDatabase);
+			if (tile.zoomLevel >= mapFileEntry.zoomLevelMin && tile.zoomLevel <= mapFileEntry.zoomLevelMax) {
+				coveringZoomLevel.add(mapFileEntry.mapDatabase);
+			}
+		}
+
+		return coveringZoomLevel.isEmpty() ? overlapping : coveringZoomLevel;
+	}
+
+	/**
+	 * Reads all map data for the area covered by the given tile from all overlapping map files and merges it into one
+	 * result. The result is a water tile only if every map file which has been read reports a water tile.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @return the read map data or null, if the map data of all overlapping map files could not be read.
+	 */
+	public MapReadResult readMapData(Tile tile) {
+		MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+		if (!readMapData(tile, mapReadResultBuilder)) {
+			return null;
+		}
+		return mapReadResultBuilder.build();
+	}
+
+	/**
+	 * Reads all map data for the area covered by the given tile from all overlapping map files and passes each POI and
+	 * way to the given sink. The water flag is passed to the sink only if every map file which has been read reports a
+	 * water tile.
+	 * 
+	 * @param tile
+	 *            defines area and zoom level of read map data.
+	 * @param mapDataSink
+	 *            the sink which receives the read map data.
+	 * @return true if the map data of at least one overlapping map file or of no map file at all could be read, false
+	 *         otherwise.
+	 */
+	public boolean readMapData(Tile tile, MapDataSink mapDataSink) {
+		List<MapDatabase> tileMapDatabases = getMapDatabases(tile);
+		if (tileMapDatabases.isEmpty()) {
+			return true;
+		}
+
+		WaterSink waterSink = new WaterSink(mapDataSink);
+		boolean isWater = true;
+		boolean success = false;
+		for (int i = 0, n = tileMapDatabases.size(); i < n; ++i) {
+			waterSink.isWater = false;
+			if (tileMapDatabases.get(i).readMapData(tile, waterSink)) {
+				success = true;
+				isWater &= waterSink.isWater;
+			}
+		}
+
+		if (success && isWater) {
+			mapDataSink.water();
+		}
+		return success;
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapsforge.core.model.Tag;
+
+/**
+ * A reusable container for the data returned by the {@link MapDatabase}. All ways and their coordinate arrays are kept
+ * after a query and reused by the next query, so that reading a tile does not allocate any objects for way nodes once
+ * the buffers have grown large enough.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class PackedMapReadResult {
+	private boolean isWater;
+	private int numberOfWays;
+	private final List<PointOfInterest> pointOfInterests;
+	final MapDataSink sink;
+	private final List<PackedWay> ways;
+
+	/**
+	 * Creates an empty result.
+	 */
+	public PackedMapReadResult() {
+		this.sink = new Sink();
+		this.pointOfInterests = new ArrayList<PointOfInterest>();
+		this.ways = new ArrayList<PackedWay>();
+	}
+
+	/**
+	 * Removes all map data from this result. The ways are kept for reuse.
+	 */
+	public void clear() {
+		this.isWater = false;
+		this.numberOfWays = 0;
+		this.pointOfInterests.clear();
+	}
+
+	/**
+	 * @return the number of read ways.
+	 */
+	public int getNumberOfWays() {
+		return this.numberOfWays;
+	}
+
+	/**
+	 * @return the read POIs.
+	 */
+	public List<PointOfInterest> getPointOfInterests() {
+		return this.pointOfInterests;
+	}
+
+	/**
+	 * @return the read way with the given index. The returned way is only valid until this result is cleared.
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is not smaller than the number of read ways.
+	 */
+	public PackedWay getWay(int index) {
+		if (index >= this.numberOfWays) {
+			throw new IndexOutOfBoundsException("invalid way index: " + index);
+		}
+		return this.ways.get(index);
+	}
+
+	/**
+	 * @return true if the read area is completely covered by water, false otherwise.
+	 */
+	public boolean isWater() {
+		return this.isWater;
+	}
+
+	private class Sink implements MapDataSink {
+		Sink() {
+			// do nothing
+		}
+
+		@Override
+		public boolean acceptPointOfInterest(byte layer, List<Tag> tags) {
+			return true;
+		}
+
+		@Override
+		public boolean acceptWay(byte layer, List<Tag> tags) {
+			return true;
+		}
+
+		@Override
+		public void pointOfInterest(PointOfInterest pointOfInterest) {
+			PackedMapReadResult.this.pointOfInterests.add(pointOfInterest);
+		}
+
+		@Override
+		public void water() {
+			PackedMapReadResult.this.isWater = true;
+		}
+
+		@Override
+		public void way(PackedWay way) {
+			List<PackedWay> packedWays = PackedMapReadResult.this.ways;
+			if (PackedMapReadResult.this.numberOfWays == packedWays.size()) {
+				packedWays.add(new PackedWay());
+			}
+			packedWays.get(PackedMapReadResult.this.numberOfWays++).set(way);
+		}
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tag;
+
+/**
+ * A reusable container for all data associated with a single way or area (closed way). In contrast to {@link Way}, the
+ * way nodes are stored in a flat array of coordinates which is reused when the container is filled again.
+ * <p>
+ * The way nodes of all segments are stored consecutively. The latitude of the way node with index i is at index 2 * i
+ * of the coordinates array, its longitude at index 2 * i + 1.
+ * <p>
+ * If the way has been read for a specific tile and tile size, its way nodes are projected into the pixel space of the
+ * tile instead. The horizontal pixel coordinate of the way node with index i is then at index 2 * i of the pixel
+ * coordinates array, the vertical one at index 2 * i + 1, and the geographic coordinates are not available.
+ */
+public class PackedWay {
+	private static final int INITIAL_NODES = 64;
+	private static final int INITIAL_SEGMENTS = 4;
+
+	double[] coordinates;
+	LatLong labelPosition;
+	byte layer;
+	int numberOfNodes;
+	int numberOfSegments;
+	float[] pixelCoordinates;
+	boolean projected;
+	int[] segmentOffsets;
+	final List<Tag> tags;
+	int tileBitmask;
+
+	/**
+	 * Creates an empty way.
+	 */
+	public PackedWay() {
+		this.coordinates = new double[INITIAL_NODES * 2];
+		this.pixelCoordinates = new float[INITIAL_NODES * 2];
+		this.segmentOffsets = new int[INITIAL_SEGMENTS + 1];
+		this.tags = new ArrayList<Tag>();
+	}
+
+	/**
+	 * @return the coordinates of all way nodes, which may be longer than twice the number of nodes. Not valid if this
+	 *         way has been projected.
+	 */
+	public double[] getCoordinates() {
+		return this.coordinates;
+	}
+
+	/**
+	 * @return the position of the area label (may be null).
+	 */
+	public LatLong getLabelPosition() {
+		return this.labelPosition;
+	}
+
+	/**
+	 * @return the latitude of the given way node.
+	 */
+	public double getLatitude(int node) {
+		return this.coordinates[node << 1];
+	}
+
+	/**
+	 * @return the layer of this way + 5 (to avoid negative values).
+	 */
+	public byte getLayer() {
+		return this.layer;
+	}
+
+	/**
+	 * @return the longitude of the given way node.
+	 */
+	public double getLongitude(int node) {
+		return this.coordinates[(node << 1) + 1];
+	}
+
+	/**
+	 * @return the number of way nodes in all segments.
+	 */
+	public int getNumberOfNodes() {
+		return this.numberOfNodes;
+	}
+
+	/**
+	 * @return the number of segments of this way.
+	 */
+	public int getNumberOfSegments() {
+		return this.numberOfSegments;
+	}
+
+	/**
+	 * @return the index of the way node after the last way node of the given segment.
+	 */
+	public int getSegmentEnd(int segment) {
+		return this.segmentOffsets[segment + 1];
+	}
+
+	/**
+	 * @return the index of the first way node of the given segment.
+	 */
+	public int getSegmentStart(int segment) {
+		return this.segmentOffsets[segment];
+	}
+
+	/**
+	 * @return the pixel coordinates of all way nodes relative to the tile, which may be longer than twice the number
+	 *         of nodes. Only valid if this way has been projected.
+	 */
+	public float[] getPixelCoordinates() {
+		return this.pixelCoordinates;
+	}
+
+	/**
+	 * @return the tags of this way.
+	 */
+	public List<Tag> getTags() {
+		return this.tags;
+	}
+
+	/**
+	 * @return true if the way nodes have been projected into the pixel space of a tile, false otherwise.
+	 */
+	public boolean isProjected() {
+		return this.projected;
+	}
+
+	void addNode(double latitude, double longitude) {
+		int index = this.numberOfNodes << 1;
+		this.coordinates[index] = latitude;
+		this.coordinates[index + 1] = longitude;
+		this.segmentOffsets[this.numberOfSegments] = ++this.numberOfNodes;
+	}
+
+	/**
+	 * Adds a way node, projected into the pixel space of a tile if a projection is given.
+	 */
+	void addNode(double latitude, double longitude, TileProjection tileProjection) {
+		if (tileProjection == null) {
+			addNode(latitude, longitude);
+		} else {
+			addPixel(tileProjection.getPixelX(longitude), tileProjection.getPixelY(latitude));
+		}
+	}
+
+	void addPixel(float pixelX, float pixelY) {
+		int index = this.numberOfNodes << 1;
+		this.pixelCoordinates[index] = pixelX;
+		this.pixelCoordinates[index + 1] = pixelY;
+		this.segmentOffsets[this.numberOfSegments] = ++this.numberOfNodes;
+	}
+
+	void clear() {
+		clearNodes();
+		this.labelPosition = null;
+		this.layer = 0;
+		this.projected = false;
+		this.tags.clear();
+		this.tileBitmask = 0;
+	}
+
+	/**
+	 * Removes all way nodes and segments but keeps the other properties of this way.
+	 */
+	void clearNodes() {
+		this.numberOfNodes = 0;
+		this.numberOfSegments = 0;
+	}
+
+	/**
+	 * Replaces the content of this way with a copy of the given way.
+	 */
+	void set(PackedWay packedWay) {
+		clear();
+		this.labelPosition = packedWay.labelPosition;
+		this.layer = packedWay.layer;
+		this.tags.addAll(packedWay.tags);
+		this.tileBitmask = packedWay.tileBitmask;
+		this.projected = packedWay.projected;
+
+		if (packedWay.projected) {
+			if (this.pixelCoordinates.length < packedWay.numberOfNodes << 1) {
+				this.pixelCoordinates = new float[packedWay.pixelCoordinates.length];
+			}
+			System.arraycopy(packedWay.pixelCoordinates, 0, this.pixelCoordinates, 0, packedWay.numberOfNodes << 1);
+		} else {
+			if (this.coordinates.length < packedWay.numberOfNodes << 1) {
+				this.coordinates = new double[packedWay.coordinates.length];
+			}
+			System.arraycopy(packedWay.coordinates, 0, this.coordinates, 0, packedWay.numberOfNodes << 1);
+		}
+		if (this.segmentOffsets.length < packedWay.numberOfSegments + 1) {
+			this.segmentOffsets = new int[packedWay.segmentOffsets.length];
+		}
+		System.arraycopy(packedWay.segmentOffsets, 0, this.segmentOffsets, 0, packedWay.numberOfSegments + 1);
+		this.numberOfNodes = packedWay.numberOfNodes;
+		this.numberOfSegments = packedWay.numberOfSegments;
+	}
+
+	/**
+	 * Replaces the content of this way with the given way and optionally projects its way nodes.
+	 */
+	void set(Way way, TileProjection tileProjection) {
+		clear();
+		this.labelPosition = way.labelPosition;
+		this.layer = way.layer;
+		this.tags.addAll(way.tags);
+		this.tileBitmask = way.tileBitmask;
+		this.projected = tileProjection != null;
+
+		for (LatLong[] latLongs : way.latLongs) {
+			if (latLongs == null) {
+				startSegment(0);
+				continue;
+			}
+			startSegment(latLongs.length);
+			for (LatLong latLong : latLongs) {
+				addNode(latLong.latitude, latLong.longitude, tileProjection);
+			}
+		}
+	}
+
+	/**
+	 * Starts a new segment and makes sure that the given number of way nodes can be added to it.
+	 */
+	void startSegment(int numberOfSegmentNodes) {
+		if (this.numberOfSegments + 2 > this.segmentOffsets.length) {
+			this.segmentOffsets = Arrays.copyOf(this.segmentOffsets, this.segmentOffsets.length * 2);
+		}
+		int requiredLength = (this.numberOfNodes + numberOfSegmentNodes) << 1;
+		if (this.projected) {
+			if (requiredLength > this.pixelCoordinates.length) {
+				this.pixelCoordinates = Arrays.copyOf(this.pixelCoordinates,
+						Math.max(requiredLength, this.pixelCoordinates.length * 2));
+			}
+		} else if (requiredLength > this.coordinates.length) {
+			this.coordinates = Arrays.copyOf(this.coordinates, Math.max(requiredLength, this.coordinates.length * 2));
+		}
+
+		++this.numberOfSegments;
+		this.segmentOffsets[this.numberOfSegments] = this.numberOfNodes;
+	}
+
+	/**
+	 * @return a new immutable way with the content of this way.
+	 * @throws IllegalStateException
+	 *             if this way has been projected.
+	 */
+	Way toWay() {
+		if (this.projected) {
+			throw new IllegalStateException("projected ways have no geographic coordinates");
+		}
+
+		LatLong[][] latLongs = new LatLong[this.numberOfSegments][];
+		for (int segment = 0; segment < this.numberOfSegments; ++segment) {
+			int start = this.segmentOffsets[segment];
+			int end = this.segmentOffsets[segment + 1];
+			if (start == end) {
+				// the way nodes of this segment were invalid
+				continue;
+			}
+			latLongs[segment] = new LatLong[end - start];
+			for (int node = start; node < end; ++node) {
+				latLongs[segment][node - start] = new LatLong(getLatitude(node), getLongitude(node));
+			}
+		}
+		return new Way(this.layer, new ArrayList<Tag>(this.tags), latLongs, this.labelPosition, this.tileBitmask);
+	}
+}
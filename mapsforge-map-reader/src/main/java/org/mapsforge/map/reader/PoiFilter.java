@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.List;
+
+import org.mapsforge.core.model.Tag;
+
+/**
+ * Selects the POIs which are returned by a POI query.
+ * 
+ * @see MapDatabase#readPoiData(org.mapsforge.core.model.BoundingBox, byte, PoiFilter)
+ */
+public interface PoiFilter {
+	/**
+	 * Decides whether a POI should be decoded completely and returned. The name, house number and elevation of the POI
+	 * are decoded only for accepted POIs, so they are not contained in the given tags yet.
+	 * 
+	 * @param layer
+	 *            the layer of the POI + 5 (to avoid negative values).
+	 * @param tags
+	 *            the tags of the POI, which must not be modified.
+	 * @return true if the POI should be returned, false otherwise.
+	 */
+	boolean accept(byte layer, List<Tag> tags);
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapsforge.core.model.BoundingBox;
+import org.mapsforge.core.model.Tag;
+
+/**
+ * Collects the POIs of a POI query which are accepted by its filter and inside of its bounding box.
+ */
+class PoiQuerySink implements MapDataSink {
+	private final BoundingBox boundingBox;
+	private final PoiFilter poiFilter;
+	final List<PointOfInterest> pointOfInterests;
+
+	PoiQuerySink(BoundingBox boundingBox, PoiFilter poiFilter) {
+		this.boundingBox = boundingBox;
+		this.poiFilter = poiFilter;
+		this.pointOfInterests = new ArrayList<PointOfInterest>();
+	}
+
+	@Override
+	public boolean acceptPointOfInterest(byte layer, List<Tag> tags) {
+		return this.poiFilter == null || this.poiFilter.accept(layer, tags);
+	}
+
+	@Override
+	public boolean acceptWay(byte layer, List<Tag> tags) {
+		return false;
+	}
+
+	@Override
+	public void pointOfInterest(PointOfInterest pointOfInterest) {
+		if (this.boundingBox.contains(pointOfInterest.position)) {
+			this.pointOfInterests.add(pointOfInterest);
+		}
+	}
+
+	@Override
+	public void water() {
+		// do nothing
+	}
+
+	@Override
+	public void way(PackedWay way) {
+		// do nothing
+	}
+}
@@ -14,10 +14,26 @@
  */
 package org.mapsforge.map.reader;
 
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.reader.header.SubFileParameter;
 
 final class QueryCalculations {
+	static void calculateBaseTiles(QueryParameters queryParameters, BoundingBox boundingBox,
+			SubFileParameter subFileParameter) {
+		// calculate the XY numbers of the upper left and lower right base tiles which cover the bounding box
+		queryParameters.fromBaseTileX = MercatorProjection.longitudeToTileX(boundingBox.minLongitude,
+				subFileParameter.baseZoomLevel);
+		queryParameters.fromBaseTileY = MercatorProjection.latitudeToTileY(boundingBox.maxLatitude,
+				subFileParameter.baseZoomLevel);
+		queryParameters.toBaseTileX = MercatorProjection.longitudeToTileX(boundingBox.maxLongitude,
+				subFileParameter.baseZoomLevel);
+		queryParameters.toBaseTileY = MercatorProjection.latitudeToTileY(boundingBox.minLatitude,
+				subFileParameter.baseZoomLevel);
+		queryParameters.useTileBitmask = false;
+	}
+
 	static void calculateBaseTiles(QueryParameters queryParameters, Tile tile, SubFileParameter subFileParameter) {
 		if (tile.zoomLevel < subFileParameter.baseZoomLevel) {
 			// calculate the XY numbers of the upper left and lower right sub-tiles
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Holds the mutable state of a map data query, so that concurrent queries do not share any state via the
+ * {@link MapDatabase}. A context is reused for all queries of the same thread.
+ */
+class QueryContext {
+	final ReadBuffer readBuffer;
+	final PackedWay wayBuffer;
+	String signatureBlock;
+	String signaturePoi;
+	String signatureWay;
+	QueryStatistics statistics;
+	final TagCache tagCache;
+	double tileLatitude;
+	double tileLongitude;
+
+	QueryContext(ReadBuffer readBuffer, int tagCacheCapacity) {
+		this.readBuffer = readBuffer;
+		this.statistics = new QueryStatistics();
+		this.tagCache = tagCacheCapacity > 0 ? new TagCache(tagCacheCapacity) : null;
+		this.wayBuffer = new PackedWay();
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * An immutable estimation of the cost of a query, which is calculated from the index of the map file alone.
+ * 
+ * @see MapDatabase#estimateQueryCost(org.mapsforge.core.model.Tile)
+ */
+public class QueryCost {
+	/**
+	 * The number of blocks which the query touches, including empty blocks.
+	 */
+	public final long blocks;
+
+	/**
+	 * The total size in bytes of all blocks which the query touches, the blocks are read and decoded completely.
+	 */
+	public final long bytes;
+
+	/**
+	 * True if all blocks which the query touches are flagged as water, false otherwise.
+	 */
+	public final boolean isWater;
+
+	QueryCost(long blocks, long bytes, boolean isWater) {
+		this.blocks = blocks;
+		this.bytes = bytes;
+		this.isWater = isWater;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder stringBuilder = new StringBuilder();
+		stringBuilder.append("blocks=");
+		stringBuilder.append(this.blocks);
+		stringBuilder.append(", bytes=");
+		stringBuilder.append(this.bytes);
+		stringBuilder.append(", isWater=");
+		stringBuilder.append(this.isWater);
+		return stringBuilder.toString();
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.mapsforge.core.model.Tile;
+
+/**
+ * Receives the statistics of each finished query of a {@link MapDatabase}.
+ * 
+ * @see MapDatabase#setQueryListener(QueryListener)
+ */
+public interface QueryListener {
+	/**
+	 * Called on the querying thread after a query has finished, whether it was successful or not. Implementations must
+	 * be thread-safe if the map file is queried by several threads and should return quickly.
+	 * 
+	 * @param tile
+	 *            the queried tile or null, if the query was not restricted to a single tile.
+	 * @param queryStatistics
+	 *            the statistics of the finished query.
+	 */
+	void queryFinished(Tile tile, QueryStatistics queryStatistics);
+}
@@ -14,13 +14,19 @@
  */
 package org.mapsforge.map.reader;
 
+import java.util.Set;
+
 class QueryParameters {
+	Set<DecodeSection> decodeSections;
 	long fromBaseTileX;
 	long fromBaseTileY;
 	long fromBlockX;
 	long fromBlockY;
+	boolean poisOnly;
 	int queryTileBitmask;
 	int queryZoomLevel;
+	TagFilter tagFilter;
+	TileProjection tileProjection;
 	long toBaseTileX;
 	long toBaseTileY;
 	long toBlockX;
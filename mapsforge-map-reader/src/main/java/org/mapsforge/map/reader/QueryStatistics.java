@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+/**
+ * Counts the work of the {@link MapDatabase} for a single query or for all of its queries.
+ * <p>
+ * The element counters describe the work of the decoder: elements which are taken from the {@link BlockCache} are not
+ * decoded and therefore not counted. Times are measured in nanoseconds, the read time contains the time which is
+ * needed to read the blocks from the map file and the decode time contains the time which is needed to decode them.
+ * Comparing both times shows whether a query is limited by I/O or by decoding.
+ * <p>
+ * This class is not thread-safe, a snapshot of the aggregated statistics is returned by
+ * {@link MapDatabase#getStatistics()}.
+ */
+public class QueryStatistics {
+	long blockCacheHits;
+	long blocksRead;
+	long bytesRead;
+	long decodeTime;
+	long indexCacheHits;
+	long indexCacheMisses;
+	long pointOfInterests;
+	long queries;
+	long readTime;
+	long rejectedPointOfInterests;
+	long rejectedWays;
+	long skippedWays;
+	long waterOnlyTiles;
+	long ways;
+
+	QueryStatistics() {
+		// do nothing
+	}
+
+	QueryStatistics(QueryStatistics queryStatistics) {
+		add(queryStatistics);
+	}
+
+	/**
+	 * @return the number of blocks which have been taken from the block cache.
+	 */
+	public long getBlockCacheHits() {
+		return this.blockCacheHits;
+	}
+
+	/**
+	 * @return the number of non-empty blocks which have been read from the map file.
+	 */
+	public long getBlocksRead() {
+		return this.blocksRead;
+	}
+
+	/**
+	 * @return the number of bytes which have been read from the map file for blocks and index entries.
+	 */
+	public long getBytesRead() {
+		return this.bytesRead;
+	}
+
+	/**
+	 * @return the time in nanoseconds which has been spent decoding blocks.
+	 */
+	public long getDecodeTime() {
+		return this.decodeTime;
+	}
+
+	/**
+	 * @return the number of index entries which have been found without reading from the map file.
+	 */
+	public long getIndexCacheHits() {
+		return this.indexCacheHits;
+	}
+
+	/**
+	 * @return the number of index entries which have been read from the map file.
+	 */
+	public long getIndexCacheMisses() {
+		return this.indexCacheMisses;
+	}
+
+	/**
+	 * @return the number of decoded POIs.
+	 */
+	public long getPointOfInterests() {
+		return this.pointOfInterests;
+	}
+
+	/**
+	 * @return the number of queries, which is 1 for the statistics of a single query.
+	 */
+	public long getQueries() {
+		return this.queries;
+	}
+
+	/**
+	 * @return the time in nanoseconds which has been spent reading blocks from the map file.
+	 */
+	public long getReadTime() {
+		return this.readTime;
+	}
+
+	/**
+	 * @return the number of POIs which have been skipped by the tag filter or the sink.
+	 */
+	public long getRejectedPointOfInterests() {
+		return this.rejectedPointOfInterests;
+	}
+
+	/**
+	 * @return the number of ways which have been skipped by the tag filter or the sink.
+	 */
+	public long getRejectedWays() {
+		return this.rejectedWays;
+	}
+
+	/**
+	 * @return the number of ways which have been skipped because they are outside of the queried tile.
+	 */
+	public long getSkippedWays() {
+		return this.skippedWays;
+	}
+
+	/**
+	 * @return the number of water tiles which have been answered from the index alone, without reading any block.
+	 */
+	public long getWaterOnlyTiles() {
+		return this.waterOnlyTiles;
+	}
+
+	/**
+	 * @return the number of decoded ways.
+	 */
+	public long getWays() {
+		return this.ways;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder stringBuilder = new StringBuilder();
+		stringBuilder.append("queries=");
+		stringBuilder.append(this.queries);
+		stringBuilder.append(", blocksRead=");
+		stringBuilder.append(this.blocksRead);
+		stringBuilder.append(", blockCacheHits=");
+		stringBuilder.append(this.blockCacheHits);
+		stringBuilder.append(", bytesRead=");
+		stringBuilder.append(this.bytesRead);
+		stringBuilder.append(", indexCacheHits=");
+		stringBuilder.append(this.indexCacheHits);
+		stringBuilder.append(", indexCacheMisses=");
+		stringBuilder.append(this.indexCacheMisses);
+		stringBuilder.append(", readTime=");
+		stringBuilder.append(this.readTime);
+		stringBuilder.append(", decodeTime=");
+		stringBuilder.append(this.decodeTime);
+		stringBuilder.append(", pointOfInterests=");
+		stringBuilder.append(this.pointOfInterests);
+		stringBuilder.append(", rejectedPointOfInterests=");
+		stringBuilder.append(this.rejectedPointOfInterests);
+		stringBuilder.append(", ways=");
+		stringBuilder.append(this.ways);
+		stringBuilder.append(", skippedWays=");
+		stringBuilder.append(this.skippedWays);
+		stringBuilder.append(", rejectedWays=");
+		stringBuilder.append(this.rejectedWays);
+		stringBuilder.append(", waterOnlyTiles=");
+		stringBuilder.append(this.waterOnlyTiles);
+		return stringBuilder.toString();
+	}
+
+	void add(QueryStatistics queryStatistics) {
+		this.blockCacheHits += queryStatistics.blockCacheHits;
+		this.blocksRead += queryStatistics.blocksRead;
+		this.bytesRead += queryStatistics.bytesRead;
+		this.decodeTime += queryStatistics.decodeTime;
+		this.indexCacheHits += queryStatistics.indexCacheHits;
+		this.indexCacheMisses += queryStatistics.indexCacheMisses;
+		this.pointOfInterests += queryStatistics.pointOfInterests;
+		this.queries += queryStatistics.queries;
+		this.readTime += queryStatistics.readTime;
+		this.rejectedPointOfInterests += queryStatistics.rejectedPointOfInterests;
+		this.rejectedWays += queryStatistics.rejectedWays;
+		this.skippedWays += queryStatistics.skippedWays;
+		this.waterOnlyTiles += queryStatistics.waterOnlyTiles;
+		this.ways += queryStatistics.ways;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link MapFileSource} which reads via {@link RandomAccessFile#seek(long)} and
+ * {@link RandomAccessFile#read(byte[], int, int)}.
+ * <p>
+ * This class is not thread-safe.
+ */
+class RandomAccessFileSource extends MapFileSource {
+	private static final String READ_ONLY_MODE = "r";
+
+	private final long fileSize;
+	private final RandomAccessFile inputFile;
+
+	RandomAccessFileSource(File mapFile) throws IOException {
+		this.inputFile = new RandomAccessFile(mapFile, READ_ONLY_MODE);
+		this.fileSize = this.inputFile.length();
+	}
+
+	@Override
+	void close() throws IOException {
+		this.inputFile.close();
+	}
+
+	@Override
+	long getSize() {
+		return this.fileSize;
+	}
+
+	@Override
+	boolean isInMemory() {
+		return false;
+	}
+
+	@Override
+	boolean isThreadSafe() {
+		return false;
+	}
+
+	@Override
+	ByteBuffer read(long position, int length, ByteBuffer buffer) throws IOException {
+		ByteBuffer readBuffer = buffer;
+		if (readBuffer == null || readBuffer.capacity() < length) {
+			readBuffer = ByteBuffer.allocate(length);
+		}
+		readBuffer.clear();
+		readBuffer.limit(length);
+
+		this.inputFile.seek(position);
+		if (this.inputFile.read(readBuffer.array(), readBuffer.arrayOffset(), length) != length) {
+			return null;
+		}
+		return readBuffer;
+	}
+}
@@ -15,12 +15,17 @@
 package org.mapsforge.map.reader;
 
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.logging.Logger;
 
+import org.mapsforge.core.model.Tag;
+
 /**
- * Reads from a {@link RandomAccessFile} into a buffer and decodes the data.
+ * Reads from a map file into a buffer and decodes the data.
+ * <p>
+ * Depending on the underlying {@link MapFileSource} the buffer either holds a copy of the data or is a view of the
+ * memory-mapped file.
  */
 public class ReadBuffer {
 	/**
@@ -30,12 +35,21 @@ public class ReadBuffer {
 	private static final String CHARSET_UTF8 = "UTF-8";
 	private static final Logger LOGGER = Logger.getLogger(ReadBuffer.class.getName());
 
-	private byte[] bufferData;
+	static String decodeUTF8(byte[] bytes) {
+		try {
+			return new String(bytes, CHARSET_UTF8);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private ByteBuffer bufferData;
 	private int bufferPosition;
-	private final RandomAccessFile inputFile;
+	private long filePosition;
+	private final MapFileSource mapFileSource;
 
-	ReadBuffer(RandomAccessFile inputFile) {
-		this.inputFile = inputFile;
+	ReadBuffer(MapFileSource mapFileSource) {
+		this.mapFileSource = mapFileSource;
 	}
 
 	/**
@@ -44,12 +58,12 @@ public class ReadBuffer {
 	 * @return the byte value.
 	 */
 	public byte readByte() {
-		return this.bufferData[this.bufferPosition++];
+		return this.bufferData.get(this.bufferPosition++);
 	}
 
 	/**
-	 * Reads the given amount of bytes from the file into the read buffer and resets the internal buffer position. If
-	 * the capacity of the read buffer is too small, a larger one is created automatically.
+	 * Reads the given amount of bytes from the file into the read buffer and resets the internal buffer position. The
+	 * data is read from where the previous read has ended, starting at the beginning of the file.
 	 * 
 	 * @param length
 	 *            the amount of bytes to read from the file.
@@ -58,19 +72,38 @@ public class ReadBuffer {
 	 *             if an error occurs while reading the file.
 	 */
 	public boolean readFromFile(int length) throws IOException {
-		// ensure that the read buffer is large enough
-		if (this.bufferData == null || this.bufferData.length < length) {
-			// ensure that the read buffer is not too large
-			if (length > MAXIMUM_BUFFER_SIZE) {
-				LOGGER.warning("invalid read length: " + length);
-				return false;
-			}
-			this.bufferData = new byte[length];
+		return readFromFile(this.filePosition, length);
+	}
+
+	/**
+	 * Reads the given amount of bytes from the given file position into the read buffer and resets the internal buffer
+	 * position. If the capacity of the read buffer is too small, a larger one is created automatically.
+	 * 
+	 * @param position
+	 *            the absolute position in the file.
+	 * @param length
+	 *            the amount of bytes to read from the file.
+	 * @return true if the whole data was read successfully, false otherwise.
+	 * @throws IOException
+	 *             if an error occurs while reading the file.
+	 */
+	public boolean readFromFile(long position, int length) throws IOException {
+		// ensure that the read buffer is not too large
+		if (length > MAXIMUM_BUFFER_SIZE) {
+			LOGGER.warning("invalid read length: " + length);
+			return false;
+		}
+
+		ByteBuffer data = this.mapFileSource.read(position, length, this.bufferData);
+		if (data == null) {
+			return false;
 		}
 
-		// reset the buffer position and read the data into the buffer
+		// reset the buffer position
+		this.bufferData = data;
 		this.bufferPosition = 0;
-		return this.inputFile.read(this.bufferData, 0, length) == length;
+		this.filePosition = position + length;
+		return true;
 	}
 
 	/**
@@ -82,7 +115,7 @@ public class ReadBuffer {
 	 */
 	public int readInt() {
 		this.bufferPosition += 4;
-		return Deserializer.getInt(this.bufferData, this.bufferPosition - 4);
+		return this.bufferData.getInt(this.bufferPosition - 4);
 	}
 
 	/**
@@ -94,7 +127,7 @@ public class ReadBuffer {
 	 */
 	public long readLong() {
 		this.bufferPosition += 8;
-		return Deserializer.getLong(this.bufferData, this.bufferPosition - 8);
+		return this.bufferData.getLong(this.bufferPosition - 8);
 	}
 
 	/**
@@ -106,7 +139,7 @@ public class ReadBuffer {
 	 */
 	public int readShort() {
 		this.bufferPosition += 2;
-		return Deserializer.getShort(this.bufferData, this.bufferPosition - 2);
+		return this.bufferData.getShort(this.bufferPosition - 2);
 	}
 
 	/**
@@ -122,18 +155,18 @@ public class ReadBuffer {
 		byte variableByteShift = 0;
 
 		// check if the continuation bit is set
-		while ((this.bufferData[this.bufferPosition] & 0x80) != 0) {
-			variableByteDecode |= (this.bufferData[this.bufferPosition++] & 0x7f) << variableByteShift;
+		while ((this.bufferData.get(this.bufferPosition) & 0x80) != 0) {
+			variableByteDecode |= (this.bufferData.get(this.bufferPosition++) & 0x7f) << variableByteShift;
 			variableByteShift += 7;
 		}
 
 		// read the six data bits from the last byte
-		if ((this.bufferData[this.bufferPosition] & 0x40) != 0) {
+		if ((this.bufferData.get(this.bufferPosition) & 0x40) != 0) {
 			// negative
-			return -(variableByteDecode | ((this.bufferData[this.bufferPosition++] & 0x3f) << variableByteShift));
+			return -(variableByteDecode | ((this.bufferData.get(this.bufferPosition++) & 0x3f) << variableByteShift));
 		}
 		// positive
-		return variableByteDecode | ((this.bufferData[this.bufferPosition++] & 0x3f) << variableByteShift);
+		return variableByteDecode | ((this.bufferData.get(this.bufferPosition++) & 0x3f) << variableByteShift);
 	}
 
 	/**
@@ -148,13 +181,13 @@ public class ReadBuffer {
 		byte variableByteShift = 0;
 
 		// check if the continuation bit is set
-		while ((this.bufferData[this.bufferPosition] & 0x80) != 0) {
-			variableByteDecode |= (this.bufferData[this.bufferPosition++] & 0x7f) << variableByteShift;
+		while ((this.bufferData.get(this.bufferPosition) & 0x80) != 0) {
+			variableByteDecode |= (this.bufferData.get(this.bufferPosition++) & 0x7f) << variableByteShift;
 			variableByteShift += 7;
 		}
 
 		// read the seven data bits from the last byte
-		return variableByteDecode | (this.bufferData[this.bufferPosition++] << variableByteShift);
+		return variableByteDecode | (this.bufferData.get(this.bufferPosition++) << variableByteShift);
 	}
 
 	/**
@@ -174,10 +207,18 @@ public class ReadBuffer {
 	 * @return the UTF-8 decoded string (may be null).
 	 */
 	public String readUTF8EncodedString(int stringLength) {
-		if (stringLength > 0 && this.bufferPosition + stringLength <= this.bufferData.length) {
+		if (stringLength > 0 && this.bufferPosition + stringLength <= this.bufferData.limit()) {
 			this.bufferPosition += stringLength;
 			try {
-				return new String(this.bufferData, this.bufferPosition - stringLength, stringLength, CHARSET_UTF8);
+				if (this.bufferData.hasArray()) {
+					return new String(this.bufferData.array(), this.bufferData.arrayOffset() + this.bufferPosition
+							- stringLength, stringLength, CHARSET_UTF8);
+				}
+				byte[] stringBytes = new byte[stringLength];
+				ByteBuffer stringData = this.bufferData.duplicate();
+				stringData.position(this.bufferPosition - stringLength);
+				stringData.get(stringBytes);
+				return new String(stringBytes, CHARSET_UTF8);
 			} catch (UnsupportedEncodingException e) {
 				throw new IllegalStateException(e);
 			}
@@ -186,6 +227,25 @@ public class ReadBuffer {
 		return null;
 	}
 
+	/**
+	 * Decodes a tag with the given key and a string value which is encoded like in {@link #readUTF8EncodedString()}.
+	 * 
+	 * @param key
+	 *            the key of the tag.
+	 * @param tagCache
+	 *            the cache for decoded tags, may be null.
+	 * @return the decoded tag, its value may be null.
+	 */
+	Tag readUTF8EncodedTag(String key, TagCache tagCache) {
+		int stringLength = readUnsignedInt();
+		if (tagCache == null || stringLength <= 0 || this.bufferPosition + stringLength > this.bufferData.limit()) {
+			return new Tag(key, readUTF8EncodedString(stringLength));
+		}
+		Tag tag = tagCache.getTag(key, this.bufferData, this.bufferPosition, stringLength);
+		this.bufferPosition += stringLength;
+		return tag;
+	}
+
 	/**
 	 * @return the current buffer position.
 	 */
@@ -197,7 +257,7 @@ public class ReadBuffer {
 	 * @return the current size of the read buffer.
 	 */
 	int getBufferSize() {
-		return this.bufferData.length;
+		return this.bufferData.limit();
 	}
 
 	/**
@@ -219,4 +279,11 @@ public class ReadBuffer {
 	void skipBytes(int bytes) {
 		this.bufferPosition += bytes;
 	}
+
+	/**
+	 * Skips a string which is encoded like in {@link #readUTF8EncodedString()}.
+	 */
+	void skipUTF8EncodedString() {
+		skipBytes(readUnsignedInt());
+	}
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.nio.ByteBuffer;
+
+import org.mapsforge.core.model.Tag;
+
+/**
+ * A bounded cache for tags with a string value which are decoded from a map file, for example names of streets which
+ * occur in many adjacent blocks. Tags are looked up by their key and the raw UTF-8 bytes of their value, so a known tag
+ * is returned without decoding its value again. Equal tags from different blocks are then the same instance.
+ * <p>
+ * The cache is a direct-mapped hash table with a fixed number of slots, a new tag replaces the tag in its slot. The
+ * keys of the tags are compared by identity, so only the key constants of the {@link MapDatabase} may be used.
+ * <p>
+ * This class is not thread-safe, each query context has its own cache.
+ */
+final class TagCache {
+	private static int getHashCode(String key, ByteBuffer byteBuffer, int offset, int length) {
+		int hashCode = key.hashCode();
+		for (int i = offset, end = offset + length; i < end; ++i) {
+			hashCode = 31 * hashCode + byteBuffer.get(i);
+		}
+		// spread the higher bits, as only the lower bits are used for the slot
+		return hashCode ^ (hashCode >>> 16);
+	}
+
+	private static boolean isEqual(byte[] bytes, ByteBuffer byteBuffer, int offset, int length) {
+		if (bytes.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; ++i) {
+			if (bytes[i] != byteBuffer.get(offset + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private final int mask;
+	private final Tag[] tags;
+	private final byte[][] values;
+
+	/**
+	 * @param capacity
+	 *            the minimum number of slots, which is rounded up to a power of two.
+	 */
+	TagCache(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		this.mask = slots - 1;
+		this.tags = new Tag[slots];
+		this.values = new byte[slots][];
+	}
+
+	/**
+	 * Returns the tag with the given key and the string value which is encoded in the given bytes. The value is only
+	 * decoded if the tag is not cached yet.
+	 * 
+	 * @return the cached or newly created tag.
+	 */
+	Tag getTag(String key, ByteBuffer byteBuffer, int offset, int length) {
+		int slot = getHashCode(key, byteBuffer, offset, length) & this.mask;
+		Tag tag = this.tags[slot];
+		if (tag != null && tag.key == key && isEqual(this.values[slot], byteBuffer, offset, length)) {
+			return tag;
+		}
+
+		byte[] value = new byte[length];
+		for (int i = 0; i < length; ++i) {
+			value[i] = byteBuffer.get(offset + i);
+		}
+		tag = new Tag(key, ReadBuffer.decodeUTF8(value));
+		this.tags[slot] = tag;
+		this.values[slot] = value;
+		return tag;
+	}
+}
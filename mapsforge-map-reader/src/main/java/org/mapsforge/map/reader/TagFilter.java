@@ -0,0 +1,132 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.reader.header.MapFileInfo;
+
+/**
+ * A filter which lets the {@link MapDatabase} skip POIs and ways that cannot be relevant to the caller. An element is
+ * skipped directly after its tag IDs have been read if none of its tags matches the filter, so that its name, label
+ * position and way nodes are never decoded.
+ * <p>
+ * A filter is created for a specific map file from a collection of tag patterns. A pattern with a null value matches
+ * all values of its key, a pattern with a null key matches its value for all keys. A filter which contains one of the
+ * keys that are stored as optional fields of an element (name, house number, reference and elevation) accepts all
+ * elements of that type.
+ * <p>
+ * This class is immutable and thread-safe.
+ */
+public class TagFilter {
+	private static boolean[] createTagIds(Tag[] mapTags, Collection<Tag> tagPatterns) {
+		if (tagPatterns == null) {
+			return null;
+		}
+
+		Set<String> keys = new HashSet<String>();
+		Set<Tag> tags = new HashSet<Tag>();
+		Set<String> values = new HashSet<String>();
+		for (Tag tagPattern : tagPatterns) {
+			if (isOptionalKey(tagPattern.key)) {
+				return null;
+			} else if (tagPattern.key == null) {
+				values.add(tagPattern.value);
+			} else if (tagPattern.value == null) {
+				keys.add(tagPattern.key);
+			} else {
+				tags.add(tagPattern);
+			}
+		}
+
+		boolean[] tagIds = new boolean[mapTags.length];
+		for (int i = 0; i < mapTags.length; ++i) {
+			Tag tag = mapTags[i];
+			tagIds[i] = keys.contains(tag.key) || tags.contains(tag) || values.contains(tag.value);
+		}
+		return tagIds;
+	}
+
+	private static Set<Tag> createTags(Tag[] tags, boolean[] tagIds) {
+		if (tagIds == null) {
+			return null;
+		}
+
+		Set<Tag> acceptedTags = new HashSet<Tag>();
+		for (int i = 0; i < tags.length; ++i) {
+			if (tagIds[i]) {
+				acceptedTags.add(tags[i]);
+			}
+		}
+		return acceptedTags;
+	}
+
+	private static boolean isAccepted(Set<Tag> acceptedTags, List<Tag> tags) {
+		if (acceptedTags == null) {
+			return true;
+		}
+		for (int i = 0, n = tags.size(); i < n; ++i) {
+			if (acceptedTags.contains(tags.get(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isOptionalKey(String key) {
+		return MapDatabase.TAG_KEY_ELE.equals(key) || MapDatabase.TAG_KEY_HOUSE_NUMBER.equals(key)
+				|| MapDatabase.TAG_KEY_NAME.equals(key) || MapDatabase.TAG_KEY_REF.equals(key);
+	}
+
+	final MapFileInfo mapFileInfo;
+	final boolean[] poiTagIds;
+	private final Set<Tag> poiTags;
+	final boolean[] wayTagIds;
+	private final Set<Tag> wayTags;
+
+	/**
+	 * @param mapFileInfo
+	 *            the metadata of the map file for which the filter is created.
+	 * @param poiTagPatterns
+	 *            the tag patterns of the POIs which should be read, null to read all POIs.
+	 * @param wayTagPatterns
+	 *            the tag patterns of the ways which should be read, null to read all ways.
+	 */
+	public TagFilter(MapFileInfo mapFileInfo, Collection<Tag> poiTagPatterns, Collection<Tag> wayTagPatterns) {
+		this.mapFileInfo = mapFileInfo;
+		this.poiTagIds = createTagIds(mapFileInfo.poiTags, poiTagPatterns);
+		this.poiTags = createTags(mapFileInfo.poiTags, this.poiTagIds);
+		this.wayTagIds = createTagIds(mapFileInfo.wayTags, wayTagPatterns);
+		this.wayTags = createTags(mapFileInfo.wayTags, this.wayTagIds);
+	}
+
+	/**
+	 * @return true if the filter accepts a POI with the given tags.
+	 */
+	boolean acceptsPointOfInterest(List<Tag> tags) {
+		return isAccepted(this.poiTags, tags);
+	}
+
+	/**
+	 * @return true if the filter accepts a way with the given tags.
+	 */
+	boolean acceptsWay(List<Tag> tags) {
+		return isAccepted(this.wayTags, tags);
+	}
+}
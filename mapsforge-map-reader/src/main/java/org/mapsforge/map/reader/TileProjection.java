@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+
+/**
+ * Projects coordinates into the pixel space of a single tile, relative to the top left corner of the tile. All
+ * constants of the Mercator projection are computed once per query, so that projecting a way node only needs a
+ * multiplication for the longitude and a logarithm for the latitude.
+ */
+final class TileProjection {
+	private static final double DEGREES_TO_RADIANS = Math.PI / 180;
+
+	private final double maxPixelY;
+	private final double minPixelY;
+	private final double offsetX;
+	private final double offsetY;
+	private final double scaleX;
+	private final double scaleY;
+
+	TileProjection(Tile tile, int tileSize) {
+		long mapSize = MercatorProjection.getMapSize(tile.zoomLevel, tileSize);
+		double tilePixelX = MercatorProjection.tileToPixel(tile.tileX, tileSize);
+		double tilePixelY = MercatorProjection.tileToPixel(tile.tileY, tileSize);
+
+		this.scaleX = mapSize / 360d;
+		this.offsetX = mapSize / 2d - tilePixelX;
+		this.scaleY = mapSize / (4 * Math.PI);
+		this.offsetY = mapSize / 2d - tilePixelY;
+		this.minPixelY = -tilePixelY;
+		this.maxPixelY = mapSize - tilePixelY;
+	}
+
+	/**
+	 * @return the horizontal pixel coordinate of the given longitude relative to the tile.
+	 */
+	float getPixelX(double longitude) {
+		return (float) (longitude * this.scaleX + this.offsetX);
+	}
+
+	/**
+	 * @return the vertical pixel coordinate of the given latitude relative to the tile.
+	 */
+	float getPixelY(double latitude) {
+		double sinLatitude = Math.sin(latitude * DEGREES_TO_RADIANS);
+		double pixelY = this.offsetY - Math.log((1 + sinLatitude) / (1 - sinLatitude)) * this.scaleY;
+		// clip like the MercatorProjection does
+		return (float) Math.min(Math.max(this.minPixelY, pixelY), this.maxPixelY);
+	}
+}
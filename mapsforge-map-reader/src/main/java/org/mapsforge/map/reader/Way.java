@@ -43,10 +43,16 @@ public class Way {
 	 */
 	public final List<Tag> tags;
 
-	Way(byte layer, List<Tag> tags, LatLong[][] latLongs, LatLong labelPosition) {
+	/**
+	 * The bitmask of the sub-tiles of its block which this way intersects.
+	 */
+	final int tileBitmask;
+
+	Way(byte layer, List<Tag> tags, LatLong[][] latLongs, LatLong labelPosition, int tileBitmask) {
 		this.layer = layer;
 		this.tags = tags;
 		this.latLongs = latLongs;
 		this.labelPosition = labelPosition;
+		this.tileBitmask = tileBitmask;
 	}
 }
@@ -227,6 +227,9 @@ public class MapFileHeader {
 			updateZoomLevelInformation(tempSubFileParameters[currentSubFile]);
 		}
 
+		mapFileInfoBuilder.zoomLevelMax = this.zoomLevelMaximum;
+		mapFileInfoBuilder.zoomLevelMin = this.zoomLevelMinimum;
+
 		// create and fill the lookup table for the sub-files
 		this.subFileParameters = new SubFileParameter[this.zoomLevelMaximum + 1];
 		for (int currentMapFile = 0; currentMapFile < numberOfSubFiles; ++currentMapFile) {
@@ -100,6 +100,16 @@ public class MapFileInfo {
 	 */
 	public final Tag[] wayTags;
 
+	/**
+	 * The maximum zoom level of all sub-files.
+	 */
+	public final byte zoomLevelMax;
+
+	/**
+	 * The minimum zoom level of all sub-files.
+	 */
+	public final byte zoomLevelMin;
+
 	MapFileInfo(MapFileInfoBuilder mapFileInfoBuilder) {
 		this.comment = mapFileInfoBuilder.optionalFields.comment;
 		this.createdBy = mapFileInfoBuilder.optionalFields.createdBy;
@@ -116,5 +126,7 @@ public class MapFileInfo {
 		this.startZoomLevel = mapFileInfoBuilder.optionalFields.startZoomLevel;
 		this.tilePixelSize = mapFileInfoBuilder.tilePixelSize;
 		this.wayTags = mapFileInfoBuilder.wayTags;
+		this.zoomLevelMax = mapFileInfoBuilder.zoomLevelMax;
+		this.zoomLevelMin = mapFileInfoBuilder.zoomLevelMin;
 	}
 }
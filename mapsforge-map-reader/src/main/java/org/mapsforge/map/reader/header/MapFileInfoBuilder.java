@@ -28,6 +28,8 @@ class MapFileInfoBuilder {
 	String projectionName;
 	int tilePixelSize;
 	Tag[] wayTags;
+	byte zoomLevelMax;
+	byte zoomLevelMin;
 
 	MapFileInfo build() {
 		return new MapFileInfo(this);
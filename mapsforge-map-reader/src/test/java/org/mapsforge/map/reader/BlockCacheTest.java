@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.LatLong;
+import org.mapsforge.core.model.Tag;
+
+public class BlockCacheTest {
+	private static final BlockCacheKey KEY1 = new BlockCacheKey(null, 1, 10);
+	private static final BlockCacheKey KEY2 = new BlockCacheKey(null, 2, 10);
+	private static final BlockCacheKey KEY3 = new BlockCacheKey(null, 2, 11);
+
+	private static PoiWayBundle createPoiWayBundle(int... tileBitmasks) {
+		List<Tag> tags = Collections.singletonList(new Tag("highway=motorway"));
+		LatLong[][] latLongs = new LatLong[][] { { new LatLong(0, 0), new LatLong(1, 1) } };
+
+		List<Way> ways = new ArrayList<Way>();
+		for (int tileBitmask : tileBitmasks) {
+			ways.add(new Way((byte) 5, tags, latLongs, null, tileBitmask));
+		}
+		return new PoiWayBundle(new ArrayList<PointOfInterest>(), ways);
+	}
+
+	private static void verifyInvalidCapacity(long capacity) {
+		try {
+			new BlockCache(capacity);
+			Assert.fail("capacity: " + capacity);
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void blockCacheTest() {
+		PoiWayBundle poiWayBundle1 = createPoiWayBundle(0x1);
+		PoiWayBundle poiWayBundle2 = createPoiWayBundle(0x2);
+
+		BlockCache blockCache = new BlockCache(1000);
+		Assert.assertEquals(1000, blockCache.getCapacity());
+
+		Assert.assertNull(blockCache.get(KEY1));
+		blockCache.put(KEY1, poiWayBundle1);
+		Assert.assertSame(poiWayBundle1, blockCache.get(KEY1));
+		Assert.assertNull(blockCache.get(KEY3));
+		Assert.assertTrue(blockCache.getSize() > 0);
+
+		// only one of both blocks fits into the cache
+		BlockCache smallBlockCache = new BlockCache(blockCache.getSize());
+		smallBlockCache.put(KEY1, poiWayBundle1);
+		smallBlockCache.put(KEY2, poiWayBundle2);
+		Assert.assertNull(smallBlockCache.get(KEY1));
+		Assert.assertSame(poiWayBundle2, smallBlockCache.get(KEY2));
+		Assert.assertEquals(1, smallBlockCache.getEvictions());
+		Assert.assertEquals(1, smallBlockCache.getHits());
+		Assert.assertEquals(1, smallBlockCache.getMisses());
+
+		smallBlockCache.clear();
+		Assert.assertEquals(0, smallBlockCache.getSize());
+		Assert.assertNull(smallBlockCache.get(KEY2));
+
+		// blocks which are larger than the cache are not stored
+		BlockCache tinyBlockCache = new BlockCache(1);
+		tinyBlockCache.put(KEY1, poiWayBundle1);
+		Assert.assertEquals(0, tinyBlockCache.getSize());
+		Assert.assertNull(tinyBlockCache.get(KEY1));
+
+		verifyInvalidCapacity(-1);
+	}
+}
@@ -14,10 +14,39 @@
  */
 package org.mapsforge.map.reader;
 
+import java.nio.ByteBuffer;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 public class DeserializerTest {
+	@Test
+	public void getFiveBytesLongTest() {
+		byte[] buffer = new byte[] { 0, 0, 0, 0, 0 };
+		Assert.assertEquals(0, Deserializer.getFiveBytesLong(buffer, 0));
+		Assert.assertEquals(0, Deserializer.getFiveBytesLong(ByteBuffer.wrap(buffer), 0));
+
+		buffer = new byte[] { 0, 0, 0, 0, 1 };
+		Assert.assertEquals(1, Deserializer.getFiveBytesLong(buffer, 0));
+		Assert.assertEquals(1, Deserializer.getFiveBytesLong(ByteBuffer.wrap(buffer), 0));
+
+		buffer = new byte[] { 0, 0, 0, 0, -1 };
+		Assert.assertEquals(255, Deserializer.getFiveBytesLong(buffer, 0));
+		Assert.assertEquals(255, Deserializer.getFiveBytesLong(ByteBuffer.wrap(buffer), 0));
+
+		buffer = new byte[] { 1, 0, 0, 0, 0 };
+		Assert.assertEquals(4294967296L, Deserializer.getFiveBytesLong(buffer, 0));
+		Assert.assertEquals(4294967296L, Deserializer.getFiveBytesLong(ByteBuffer.wrap(buffer), 0));
+
+		buffer = new byte[] { -1, -1, -1, -1, -1 };
+		Assert.assertEquals(1099511627775L, Deserializer.getFiveBytesLong(buffer, 0));
+		Assert.assertEquals(1099511627775L, Deserializer.getFiveBytesLong(ByteBuffer.wrap(buffer), 0));
+
+		buffer = new byte[] { 0, 0, 0, 0, 0, 1 };
+		Assert.assertEquals(1, Deserializer.getFiveBytesLong(buffer, 1));
+		Assert.assertEquals(1, Deserializer.getFiveBytesLong(ByteBuffer.wrap(buffer), 1));
+	}
+
 	@Test
 	public void getIntTest() {
 		byte[] buffer = new byte[] { 0, 0, 0, 0 };
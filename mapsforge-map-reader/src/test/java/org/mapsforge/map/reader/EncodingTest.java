@@ -25,9 +25,9 @@ import org.mapsforge.map.reader.header.FileOpenResult;
 final class EncodingTest {
 	private static final byte ZOOM_LEVEL = 8;
 
-	static void runTest(File mapFile) {
+	static void runTest(File mapFile, FileAccessMode fileAccessMode) {
 		MapDatabase mapDatabase = new MapDatabase();
-		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile);
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapFile, fileAccessMode);
 		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
 
 		long tileX = MercatorProjection.longitudeToTileX(0, ZOOM_LEVEL);
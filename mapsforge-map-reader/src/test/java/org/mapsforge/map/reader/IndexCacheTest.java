@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileHeader;
+import org.mapsforge.map.reader.header.SubFileParameter;
+
+public class IndexCacheTest {
+	private static final File MAP_FILE = new File("src/test/resources/with_data/output.map");
+
+	private static List<SubFileParameter> getSubFileParameters(MapFileSource mapFileSource, int zoomLevelMin,
+			int zoomLevelMax) throws IOException {
+		MapFileHeader mapFileHeader = new MapFileHeader();
+		FileOpenResult fileOpenResult = mapFileHeader.readHeader(new ReadBuffer(mapFileSource),
+				mapFileSource.getSize());
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		List<SubFileParameter> subFileParameters = new ArrayList<SubFileParameter>();
+		for (int zoomLevel = zoomLevelMin; zoomLevel <= zoomLevelMax; ++zoomLevel) {
+			SubFileParameter subFileParameter = mapFileHeader.getSubFileParameter(zoomLevel);
+			if (!subFileParameters.contains(subFileParameter)) {
+				subFileParameters.add(subFileParameter);
+			}
+		}
+		return subFileParameters;
+	}
+
+	@Test
+	public void concurrentIndexCacheTest() throws IOException, InterruptedException {
+		final MapFileSource mapFileSource = new FileChannelSource(MAP_FILE);
+		final List<SubFileParameter> subFileParameters = getSubFileParameters(mapFileSource, 0, 21);
+		final IndexCache loadedIndexCache = new IndexCache(mapFileSource, subFileParameters);
+		final IndexCache indexCache = new IndexCache(mapFileSource, 64);
+		Assert.assertEquals(8, indexCache.getNumberOfSegments());
+
+		// all threads read all index entries through the shared cache
+		final AtomicInteger errors = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; ++i) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int round = 0; round < 10; ++round) {
+							for (SubFileParameter subFileParameter : subFileParameters) {
+								long numberOfBlocks = subFileParameter.numberOfBlocks;
+								for (long blockNumber = 0; blockNumber < numberOfBlocks; ++blockNumber) {
+									if (indexCache.getIndexEntry(subFileParameter, blockNumber) != loadedIndexCache
+											.getIndexEntry(subFileParameter, blockNumber)) {
+										errors.incrementAndGet();
+									}
+								}
+							}
+						}
+					} catch (IOException e) {
+						errors.incrementAndGet();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(0, errors.get());
+
+		indexCache.destroy();
+		loadedIndexCache.destroy();
+		mapFileSource.close();
+	}
+
+	@Test
+	public void loadedIndexTest() throws IOException {
+		MapFileSource mapFileSource = new RandomAccessFileSource(MAP_FILE);
+		List<SubFileParameter> subFileParameters = getSubFileParameters(mapFileSource, 6, 11);
+		long numberOfBlocks = 0;
+		for (SubFileParameter subFileParameter : subFileParameters) {
+			numberOfBlocks += subFileParameter.numberOfBlocks;
+		}
+		Assert.assertEquals(numberOfBlocks * 8, IndexCache.getLoadedIndexSize(subFileParameters));
+
+		IndexCache lruIndexCache = new IndexCache(mapFileSource, 1);
+		IndexCache loadedIndexCache = new IndexCache(mapFileSource, subFileParameters);
+		for (SubFileParameter subFileParameter : subFileParameters) {
+			for (long blockNumber = 0; blockNumber < subFileParameter.numberOfBlocks; ++blockNumber) {
+				Assert.assertEquals(lruIndexCache.getIndexEntry(subFileParameter, blockNumber),
+						loadedIndexCache.getIndexEntry(subFileParameter, blockNumber));
+			}
+
+			try {
+				loadedIndexCache.getIndexEntry(subFileParameter, subFileParameter.numberOfBlocks);
+				Assert.fail();
+			} catch (IOException e) {
+				Assert.assertTrue(true);
+			}
+		}
+
+		lruIndexCache.destroy();
+		loadedIndexCache.destroy();
+		mapFileSource.close();
+	}
+
+	@Test
+	public void lruEvictionTest() throws IOException {
+		MapFileSource[] mapFileSources = { new RandomAccessFileSource(MAP_FILE), new FileChannelSource(MAP_FILE) };
+		for (MapFileSource mapFileSource : mapFileSources) {
+			List<SubFileParameter> subFileParameters = getSubFileParameters(mapFileSource, 0, 21);
+			Assert.assertEquals(3, subFileParameters.size());
+			SubFileParameter subFileParameter1 = subFileParameters.get(0);
+			SubFileParameter subFileParameter2 = subFileParameters.get(1);
+			SubFileParameter subFileParameter3 = subFileParameters.get(2);
+
+			IndexCache indexCache = new IndexCache(mapFileSource, 2);
+			// small caches are not split into segments
+			Assert.assertEquals(1, indexCache.getNumberOfSegments());
+			QueryStatistics queryStatistics = new QueryStatistics();
+			indexCache.getIndexEntry(subFileParameter1, 0, queryStatistics);
+			indexCache.getIndexEntry(subFileParameter2, 0, queryStatistics);
+			indexCache.getIndexEntry(subFileParameter1, 0, queryStatistics);
+			Assert.assertEquals(1, queryStatistics.getIndexCacheHits());
+			Assert.assertEquals(2, queryStatistics.getIndexCacheMisses());
+
+			// the least recently used entry of the second sub-file must be evicted
+			indexCache.getIndexEntry(subFileParameter3, 0, queryStatistics);
+			indexCache.getIndexEntry(subFileParameter1, 0, queryStatistics);
+			Assert.assertEquals(2, queryStatistics.getIndexCacheHits());
+			Assert.assertEquals(3, queryStatistics.getIndexCacheMisses());
+			indexCache.getIndexEntry(subFileParameter2, 0, queryStatistics);
+			Assert.assertEquals(2, queryStatistics.getIndexCacheHits());
+			Assert.assertEquals(4, queryStatistics.getIndexCacheMisses());
+
+			indexCache.destroy();
+			mapFileSource.close();
+		}
+	}
+}
@@ -21,8 +21,18 @@ import org.junit.Test;
 public class MapDatabaseDoubleDeltaEncodingTest {
 	private static final File MAP_FILE_DOUBLE_DELTA = new File("src/test/resources/double_delta_encoding/output.map");
 
+	@Test
+	public void executeQueryMemoryMappedTest() {
+		EncodingTest.runTest(MAP_FILE_DOUBLE_DELTA, FileAccessMode.MEMORY_MAPPED);
+	}
+
+	@Test
+	public void executeQueryPositionalReadTest() {
+		EncodingTest.runTest(MAP_FILE_DOUBLE_DELTA, FileAccessMode.POSITIONAL_READ);
+	}
+
 	@Test
 	public void executeQueryTest() {
-		EncodingTest.runTest(MAP_FILE_DOUBLE_DELTA);
+		EncodingTest.runTest(MAP_FILE_DOUBLE_DELTA, FileAccessMode.RANDOM_ACCESS_FILE);
 	}
 }
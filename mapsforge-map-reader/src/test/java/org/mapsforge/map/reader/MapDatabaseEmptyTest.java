@@ -14,13 +14,20 @@
  */
 package org.mapsforge.map.reader;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.Tile;
 import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileHeader;
+import org.mapsforge.map.reader.header.SubFileParameter;
 
 public class MapDatabaseEmptyTest {
 	private static final File MAP_FILE = new File("src/test/resources/empty/output.map");
@@ -47,4 +54,81 @@ public class MapDatabaseEmptyTest {
 		mapDatabase.closeFile();
 		Assert.assertFalse(mapDatabase.hasOpenFile());
 	}
+
+	@Test
+	public void waterTest() throws IOException {
+		// the input file contains no data, flag all of its blocks as water
+		File waterMapFile = File.createTempFile("water", ".map");
+		waterMapFile.deleteOnExit();
+		byte[] mapFileData = readFile(MAP_FILE);
+		MapFileSource mapFileSource = new RandomAccessFileSource(MAP_FILE);
+		MapFileHeader mapFileHeader = new MapFileHeader();
+		FileOpenResult fileOpenResult = mapFileHeader.readHeader(new ReadBuffer(mapFileSource),
+				mapFileSource.getSize());
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		for (byte zoomLevel = 0; zoomLevel <= mapFileHeader.getMapFileInfo().zoomLevelMax; ++zoomLevel) {
+			SubFileParameter subFileParameter = mapFileHeader.getSubFileParameter(zoomLevel);
+			for (long blockNumber = 0; blockNumber < subFileParameter.numberOfBlocks; ++blockNumber) {
+				mapFileData[(int) (subFileParameter.indexStartAddress + blockNumber
+						* SubFileParameter.BYTES_PER_INDEX_ENTRY)] |= 0x80;
+			}
+		}
+		mapFileSource.close();
+		FileOutputStream fileOutputStream = new FileOutputStream(waterMapFile);
+		try {
+			fileOutputStream.write(mapFileData);
+		} finally {
+			fileOutputStream.close();
+		}
+
+		MapDatabase mapDatabase = new MapDatabase();
+		fileOpenResult = mapDatabase.openFile(waterMapFile);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		BoundingBox boundingBox = mapDatabase.getMapFileInfo().boundingBox;
+
+		for (byte zoomLevel = 0; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(1, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(1, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			Assert.assertTrue(mapDatabase.readMapData(tile).isWater);
+			Assert.assertTrue(mapDatabase.isWaterOnly(tile));
+
+			long fromTileX = MercatorProjection.longitudeToTileX(boundingBox.minLongitude, zoomLevel);
+			long fromTileY = MercatorProjection.latitudeToTileY(boundingBox.maxLatitude, zoomLevel);
+			boolean[][] waterMask = mapDatabase.waterMask(boundingBox, zoomLevel);
+			Assert.assertTrue(waterMask[(int) (tileY - fromTileY)][(int) (tileX - fromTileX)]);
+		}
+
+		// the queries of water only tiles do not read any block
+		QueryStatistics queryStatistics = mapDatabase.getStatistics();
+		Assert.assertEquals(ZOOM_LEVEL_MAX + 1, queryStatistics.getWaterOnlyTiles());
+		Assert.assertEquals(0, queryStatistics.getBlocksRead());
+
+		// tiles outside of the map area are never water only
+		Assert.assertFalse(mapDatabase.isWaterOnly(new Tile(0, 0, (byte) 10)));
+		mapDatabase.closeFile();
+
+		// the original file is water only exactly where a query returns a water tile
+		fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		for (byte zoomLevel = 0; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(1, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(1, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+			Assert.assertEquals(mapDatabase.readMapData(tile).isWater, mapDatabase.isWaterOnly(tile));
+		}
+		mapDatabase.closeFile();
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		byte[] data = new byte[(int) file.length()];
+		DataInputStream dataInputStream = new DataInputStream(new FileInputStream(file));
+		try {
+			dataInputStream.readFully(data);
+		} finally {
+			dataInputStream.close();
+		}
+		return data;
+	}
 }
@@ -37,6 +37,8 @@ public class MapDatabaseFileHeaderTest {
 	private static final LatLong START_POSITION = new LatLong(0.15, 0.25);
 	private static final Byte START_ZOOM_LEVEL = Byte.valueOf((byte) 16);
 	private static final int TILE_PIXEL_SIZE = 256;
+	private static final byte ZOOM_LEVEL_MAX = 21;
+	private static final byte ZOOM_LEVEL_MIN = 0;
 
 	@Test
 	public void getMapFileInfoTest() {
@@ -57,6 +59,8 @@ public class MapDatabaseFileHeaderTest {
 		Assert.assertEquals(NUMBER_OF_SUBFILES, mapFileInfo.numberOfSubFiles);
 		Assert.assertEquals(PROJECTION_NAME, mapFileInfo.projectionName);
 		Assert.assertEquals(TILE_PIXEL_SIZE, mapFileInfo.tilePixelSize);
+		Assert.assertEquals(ZOOM_LEVEL_MAX, mapFileInfo.zoomLevelMax);
+		Assert.assertEquals(ZOOM_LEVEL_MIN, mapFileInfo.zoomLevelMin);
 
 		Assert.assertEquals(0, mapFileInfo.poiTags.length);
 		Assert.assertEquals(0, mapFileInfo.wayTags.length);
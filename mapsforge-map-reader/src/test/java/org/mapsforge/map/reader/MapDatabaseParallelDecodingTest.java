@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+public class MapDatabaseParallelDecodingTest {
+	private static final File MAP_FILE = new File("src/test/resources/double_delta_encoding/output.map");
+
+	// a tile at this zoom level covers 4x4 blocks of the sub-file with base zoom level 14
+	private static final byte ZOOM_LEVEL = 12;
+
+	private static void assertMapReadResultEquals(MapReadResult expected, MapReadResult actual) {
+		Assert.assertEquals(expected.isWater, actual.isWater);
+
+		Assert.assertEquals(expected.pointOfInterests.size(), actual.pointOfInterests.size());
+		for (int i = 0; i < expected.pointOfInterests.size(); ++i) {
+			PointOfInterest expectedPointOfInterest = expected.pointOfInterests.get(i);
+			PointOfInterest actualPointOfInterest = actual.pointOfInterests.get(i);
+			Assert.assertEquals(expectedPointOfInterest.position, actualPointOfInterest.position);
+			Assert.assertEquals(expectedPointOfInterest.tags, actualPointOfInterest.tags);
+		}
+
+		Assert.assertEquals(expected.ways.size(), actual.ways.size());
+		for (int i = 0; i < expected.ways.size(); ++i) {
+			Way expectedWay = expected.ways.get(i);
+			Way actualWay = actual.ways.get(i);
+			Assert.assertEquals(expectedWay.layer, actualWay.layer);
+			Assert.assertEquals(expectedWay.tags, actualWay.tags);
+			Assert.assertEquals(expectedWay.latLongs.length, actualWay.latLongs.length);
+			for (int j = 0; j < expectedWay.latLongs.length; ++j) {
+				Assert.assertArrayEquals(expectedWay.latLongs[j], actualWay.latLongs[j]);
+			}
+		}
+	}
+
+	private static void parallelDecoding(FileAccessMode fileAccessMode) {
+		MapDatabase sequentialMapDatabase = new MapDatabase();
+		sequentialMapDatabase.setDecodingParallelism(1);
+		FileOpenResult fileOpenResult = sequentialMapDatabase.openFile(MAP_FILE, fileAccessMode);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		MapDatabase parallelMapDatabase = new MapDatabase();
+		parallelMapDatabase.setDecodingParallelism(4);
+		fileOpenResult = parallelMapDatabase.openFile(MAP_FILE, fileAccessMode);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		long fromTileX = MercatorProjection.longitudeToTileX(0, ZOOM_LEVEL);
+		long fromTileY = MercatorProjection.latitudeToTileY(0, ZOOM_LEVEL);
+		long toTileX = MercatorProjection.longitudeToTileX(1, ZOOM_LEVEL);
+		long toTileY = MercatorProjection.latitudeToTileY(-1, ZOOM_LEVEL);
+
+		// run all queries twice to cover the block cache
+		for (int i = 0; i < 2; ++i) {
+			for (long tileY = fromTileY; tileY <= toTileY; ++tileY) {
+				for (long tileX = fromTileX; tileX <= toTileX; ++tileX) {
+					Tile tile = new Tile(tileX, tileY, ZOOM_LEVEL);
+					assertMapReadResultEquals(sequentialMapDatabase.readMapData(tile),
+							parallelMapDatabase.readMapData(tile));
+				}
+			}
+			parallelMapDatabase.setBlockCacheCapacity(1024 * 1024);
+		}
+
+		sequentialMapDatabase.closeFile();
+		parallelMapDatabase.closeFile();
+	}
+
+	@Test
+	public void parallelDecodingTagFilterTest() {
+		MapDatabase sequentialMapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = sequentialMapDatabase.openFile(MAP_FILE, FileAccessMode.POSITIONAL_READ);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		MapDatabase parallelMapDatabase = new MapDatabase();
+		parallelMapDatabase.setDecodingParallelism(4);
+		fileOpenResult = parallelMapDatabase.openFile(MAP_FILE, FileAccessMode.POSITIONAL_READ);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		List<Tag> wayTags = Collections.singletonList(new Tag("building", null));
+		TagFilter sequentialTagFilter = new TagFilter(sequentialMapDatabase.getMapFileInfo(), null, wayTags);
+		TagFilter parallelTagFilter = new TagFilter(parallelMapDatabase.getMapFileInfo(), null, wayTags);
+
+		long fromTileX = MercatorProjection.longitudeToTileX(0, ZOOM_LEVEL);
+		long fromTileY = MercatorProjection.latitudeToTileY(0, ZOOM_LEVEL);
+		long toTileX = MercatorProjection.longitudeToTileX(1, ZOOM_LEVEL);
+		long toTileY = MercatorProjection.latitudeToTileY(-1, ZOOM_LEVEL);
+		for (long tileY = fromTileY; tileY <= toTileY; ++tileY) {
+			for (long tileX = fromTileX; tileX <= toTileX; ++tileX) {
+				Tile tile = new Tile(tileX, tileY, ZOOM_LEVEL);
+				MapReadResultBuilder sequentialResult = new MapReadResultBuilder();
+				Assert.assertTrue(sequentialMapDatabase.readMapData(tile, sequentialResult, sequentialTagFilter));
+				MapReadResultBuilder parallelResult = new MapReadResultBuilder();
+				Assert.assertTrue(parallelMapDatabase.readMapData(tile, parallelResult, parallelTagFilter));
+				assertMapReadResultEquals(sequentialResult.build(), parallelResult.build());
+				Assert.assertTrue(parallelResult.ways.isEmpty());
+			}
+		}
+
+		// the ways must be rejected while they are decoded
+		long rejectedWays = sequentialMapDatabase.getStatistics().getRejectedWays();
+		Assert.assertTrue(rejectedWays > 0);
+		Assert.assertEquals(rejectedWays, parallelMapDatabase.getStatistics().getRejectedWays());
+
+		sequentialMapDatabase.closeFile();
+		parallelMapDatabase.closeFile();
+	}
+
+	@Test
+	public void parallelDecodingMemoryMappedTest() {
+		parallelDecoding(FileAccessMode.MEMORY_MAPPED);
+	}
+
+	@Test
+	public void parallelDecodingPositionalReadTest() {
+		parallelDecoding(FileAccessMode.POSITIONAL_READ);
+	}
+
+	@Test
+	public void parallelDecodingRandomAccessFileTest() {
+		// the file cannot be shared between threads, so all blocks are decoded sequentially
+		parallelDecoding(FileAccessMode.RANDOM_ACCESS_FILE);
+	}
+}
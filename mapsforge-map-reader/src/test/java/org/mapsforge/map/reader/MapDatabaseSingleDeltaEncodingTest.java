@@ -15,14 +15,68 @@
 package org.mapsforge.map.reader;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 
+import org.junit.Assert;
 import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileHeader;
+import org.mapsforge.map.reader.header.SubFileParameter;
 
 public class MapDatabaseSingleDeltaEncodingTest {
 	private static final File MAP_FILE_SINGLE_DELTA = new File("src/test/resources/single_delta_encoding/output.map");
 
+	@Test
+	public void executeQueryMemoryMappedTest() {
+		EncodingTest.runTest(MAP_FILE_SINGLE_DELTA, FileAccessMode.MEMORY_MAPPED);
+	}
+
+	@Test
+	public void executeQueryPositionalReadTest() {
+		EncodingTest.runTest(MAP_FILE_SINGLE_DELTA, FileAccessMode.POSITIONAL_READ);
+	}
+
 	@Test
 	public void executeQueryTest() {
-		EncodingTest.runTest(MAP_FILE_SINGLE_DELTA);
+		EncodingTest.runTest(MAP_FILE_SINGLE_DELTA, FileAccessMode.RANDOM_ACCESS_FILE);
+	}
+
+	@Test
+	public void truncatedBlockTest() throws IOException {
+		byte[] mapFileData = Files.readAllBytes(MAP_FILE_SINGLE_DELTA.toPath());
+		MapFileSource mapFileSource = new ByteBufferSource(ByteBuffer.wrap(mapFileData));
+		MapFileHeader mapFileHeader = new MapFileHeader();
+		FileOpenResult fileOpenResult = mapFileHeader.readHeader(new ReadBuffer(mapFileSource),
+				mapFileSource.getSize());
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		// truncate the last block of each sub-file to its last byte
+		byte zoomLevelMax = mapFileHeader.getMapFileInfo().zoomLevelMax;
+		for (byte zoomLevel = 0; zoomLevel <= zoomLevelMax; ++zoomLevel) {
+			SubFileParameter subFileParameter = mapFileHeader.getSubFileParameter(zoomLevel);
+			int indexEntryAddress = (int) (subFileParameter.indexStartAddress + (subFileParameter.numberOfBlocks - 1)
+					* SubFileParameter.BYTES_PER_INDEX_ENTRY);
+			long blockPointer = subFileParameter.subFileSize - 1;
+			for (int i = SubFileParameter.BYTES_PER_INDEX_ENTRY - 1; i > 0; --i) {
+				mapFileData[indexEntryAddress + i] = (byte) blockPointer;
+				blockPointer >>>= 8;
+			}
+			mapFileData[indexEntryAddress] = (byte) ((mapFileData[indexEntryAddress] & 0x80) | blockPointer);
+		}
+
+		MapDatabase mapDatabase = new MapDatabase();
+		fileOpenResult = mapDatabase.openFile(mapFileData);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		for (byte zoomLevel = 0; zoomLevel <= zoomLevelMax; ++zoomLevel) {
+			// the truncated block is skipped and does not abort the query
+			SubFileParameter subFileParameter = mapFileHeader.getSubFileParameter(zoomLevel);
+			Tile tile = new Tile(subFileParameter.boundaryTileRight, subFileParameter.boundaryTileBottom,
+					subFileParameter.baseZoomLevel);
+			Assert.assertNotNull(mapDatabase.readMapData(tile));
+		}
+		mapDatabase.closeFile();
 	}
 }
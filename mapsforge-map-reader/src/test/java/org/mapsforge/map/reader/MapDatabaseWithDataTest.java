@@ -15,18 +15,36 @@
 package org.mapsforge.map.reader;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.mapsforge.core.model.BoundingBox;
 import org.mapsforge.core.model.LatLong;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.core.model.Tile;
 import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.reader.header.FileOpenResult;
+import org.mapsforge.map.reader.header.MapFileHeader;
 import org.mapsforge.map.reader.header.MapFileInfo;
+import org.mapsforge.map.reader.header.SubFileParameter;
 
 public class MapDatabaseWithDataTest {
+	private static final int ITERATIONS_PER_THREAD = 50;
 	private static final File MAP_FILE = new File("src/test/resources/with_data/output.map");
+	private static final int NUMBER_OF_THREADS = 8;
 	private static final byte ZOOM_LEVEL_MAX = 11;
 	private static final int ZOOM_LEVEL_MIN = 6;
 
@@ -46,6 +64,22 @@ public class MapDatabaseWithDataTest {
 		}
 	}
 
+	private static void checkPackedTiles(MapDatabase mapDatabase, PackedMapReadResult packedMapReadResult) {
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			Assert.assertTrue(mapDatabase.readMapData(tile, packedMapReadResult));
+
+			Assert.assertEquals(1, packedMapReadResult.getPointOfInterests().size());
+			Assert.assertEquals(1, packedMapReadResult.getNumberOfWays());
+
+			checkPointOfInterest(packedMapReadResult.getPointOfInterests().get(0));
+			checkWay(packedMapReadResult.getWay(0).toWay());
+		}
+	}
+
 	private static void checkPointOfInterest(PointOfInterest pointOfInterest) {
 		Assert.assertEquals(7, pointOfInterest.layer);
 		Assert.assertEquals(0.04, pointOfInterest.position.latitude, 0.000001);
@@ -73,31 +107,854 @@ public class MapDatabaseWithDataTest {
 		Assert.assertTrue(way.tags.contains(new Tag("ref=äöü")));
 	}
 
-	@Test
-	public void executeQueryTest() {
+	private static void checkTiles(MapDatabase mapDatabase) {
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+
+			checkPointOfInterest(mapReadResult.pointOfInterests.get(0));
+			checkWay(mapReadResult.ways.get(0));
+		}
+	}
+
+	private static void concurrentQuery(FileAccessMode fileAccessMode) throws InterruptedException {
+		final MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE, fileAccessMode);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		Thread[] threads = new Thread[NUMBER_OF_THREADS];
+		for (int i = 0; i < threads.length; ++i) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < ITERATIONS_PER_THREAD; ++j) {
+							checkTiles(mapDatabase);
+						}
+					} catch (Throwable t) {
+						errors.add(t);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		mapDatabase.closeFile();
+		Assert.assertTrue(errors.toString(), errors.isEmpty());
+	}
+
+	private static void executeQuery(FileAccessMode fileAccessMode) {
 		MapDatabase mapDatabase = new MapDatabase();
-		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE, fileAccessMode);
 		Assert.assertTrue(mapDatabase.hasOpenFile());
 		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
 
 		MapFileInfo mapFileInfo = mapDatabase.getMapFileInfo();
 		Assert.assertTrue(mapFileInfo.debugFile);
 
+		checkTiles(mapDatabase);
+
+		mapDatabase.closeFile();
+		Assert.assertFalse(mapDatabase.hasOpenFile());
+	}
+
+	@Test
+	public void asyncQueryTest() throws InterruptedException, ExecutionException {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		try {
+			mapDatabase.readMapDataAsync(new Tile(0, 0, ZOOM_LEVEL_MAX));
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		mapDatabase.closeFile();
+
+		fileOpenResult = mapDatabase.openFile(MAP_FILE, FileAccessMode.POSITIONAL_READ);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		List<Future<MapReadResult>> futures = new ArrayList<Future<MapReadResult>>();
+		for (int i = 0; i < ITERATIONS_PER_THREAD; ++i) {
+			for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+				long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+				long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+				Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+				// a pending read of the same tile is shared
+				Future<MapReadResult> future1 = mapDatabase.readMapDataAsync(tile);
+				Future<MapReadResult> future2 = mapDatabase.readMapDataAsync(tile);
+				Assert.assertTrue(future1 == future2 || future1.isDone());
+				futures.add(future1);
+				futures.add(future2);
+			}
+		}
+
+		for (Future<MapReadResult> future : futures) {
+			MapReadResult mapReadResult = future.get();
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+			checkPointOfInterest(mapReadResult.pointOfInterests.get(0));
+			checkWay(mapReadResult.ways.get(0));
+		}
+
+		mapDatabase.closeFile();
+		try {
+			mapDatabase.readMapDataAsync(new Tile(0, 0, ZOOM_LEVEL_MAX));
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void batchQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		// a metatile of 2x2 tiles around the map data at each zoom level
+		List<Tile> tiles = new ArrayList<Tile>();
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel) & ~1L;
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel) & ~1L;
+			for (int i = 0; i < 4; ++i) {
+				tiles.add(new Tile(tileX + (i & 1), tileY + (i >> 1), zoomLevel));
+			}
+		}
+
+		for (int i = 0; i < 2; ++i) {
+			Map<Tile, MapReadResult> mapReadResults = mapDatabase.readMapData(tiles);
+			Assert.assertEquals(tiles, new ArrayList<Tile>(mapReadResults.keySet()));
+
+			for (Tile tile : tiles) {
+				MapReadResult expected = mapDatabase.readMapData(tile);
+				MapReadResult actual = mapReadResults.get(tile);
+				Assert.assertEquals(expected.isWater, actual.isWater);
+				Assert.assertEquals(expected.pointOfInterests.size(), actual.pointOfInterests.size());
+				Assert.assertEquals(expected.ways.size(), actual.ways.size());
+				for (Way way : actual.ways) {
+					checkWay(way);
+				}
+			}
+
+			// the second run reads the decoded blocks from the block cache
+			mapDatabase.setBlockCacheCapacity(1024 * 1024);
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void batchQueryClosedFileTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		List<Tile> tiles = Collections.singletonList(new Tile(0, 0, ZOOM_LEVEL_MAX));
+		try {
+			mapDatabase.readMapData(tiles);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+		try {
+			mapDatabase.readMapData(tiles.get(0));
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void batchQueryProjectedTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		final int tileSize = 256;
+		// run all queries twice to cover the block cache
+		for (int i = 0; i < 2; ++i) {
+			Map<Tile, List<float[]>> expected = new HashMap<Tile, List<float[]>>();
+			Map<Tile, MapDataSink> mapDataSinks = new LinkedHashMap<Tile, MapDataSink>();
+			final Map<Tile, List<float[]>> actual = new HashMap<Tile, List<float[]>>();
+			for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+				long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+				long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+				final Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+				final List<float[]> pixelCoordinates = new ArrayList<float[]>();
+				Assert.assertTrue(mapDatabase.readMapData(tile, tileSize, new MapReadResultBuilder() {
+					@Override
+					public void way(PackedWay packedWay) {
+						pixelCoordinates.add(packedWay.getPixelCoordinates().clone());
+					}
+				}, null));
+				expected.put(tile, pixelCoordinates);
+
+				actual.put(tile, new ArrayList<float[]>());
+				mapDataSinks.put(tile, new MapReadResultBuilder() {
+					@Override
+					public void way(PackedWay packedWay) {
+						Assert.assertTrue(packedWay.isProjected());
+						actual.get(tile).add(packedWay.getPixelCoordinates().clone());
+					}
+				});
+			}
+
+			Assert.assertEquals(mapDataSinks.keySet(), mapDatabase.readMapData(mapDataSinks, tileSize, null));
+			for (Tile tile : mapDataSinks.keySet()) {
+				Assert.assertEquals(1, actual.get(tile).size());
+				Assert.assertArrayEquals(expected.get(tile).get(0), actual.get(tile).get(0), 0);
+			}
+			mapDatabase.setBlockCacheCapacity(1024 * 1024);
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void batchQueryTagFilterTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		MapFileInfo mapFileInfo = mapDatabase.getMapFileInfo();
+
+		TagFilter acceptValues = new TagFilter(mapFileInfo, Collections.singletonList(new Tag(null, "country")),
+				Collections.singletonList(new Tag("highway=motorway")));
+		TagFilter rejectAll = new TagFilter(mapFileInfo, Collections.singletonList(new Tag("place=city")),
+				Collections.singletonList(new Tag("building", null)));
+
+		List<Tile> tiles = new ArrayList<Tile>();
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			tiles.add(new Tile(tileX, tileY, zoomLevel));
+		}
+
+		// run all queries twice to cover the block cache
+		for (int i = 0; i < 2; ++i) {
+			for (MapReadResult mapReadResult : mapDatabase.readMapData(tiles, acceptValues).values()) {
+				Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+				Assert.assertEquals(1, mapReadResult.ways.size());
+				checkPointOfInterest(mapReadResult.pointOfInterests.get(0));
+				checkWay(mapReadResult.ways.get(0));
+			}
+
+			for (MapReadResult mapReadResult : mapDatabase.readMapData(tiles, rejectAll).values()) {
+				Assert.assertTrue(mapReadResult.pointOfInterests.isEmpty());
+				Assert.assertTrue(mapReadResult.ways.isEmpty());
+			}
+			mapDatabase.setBlockCacheCapacity(1024 * 1024);
+		}
+
+		mapDatabase.closeFile();
+
+		fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		try {
+			mapDatabase.readMapData(tiles, acceptValues);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void blockCacheTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		Assert.assertNull(mapDatabase.getBlockCache());
+		mapDatabase.setBlockCacheCapacity(1024 * 1024);
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		BlockCache blockCache = mapDatabase.getBlockCache();
+		checkTiles(mapDatabase);
+		Assert.assertEquals(0, blockCache.getHits());
+		long misses = blockCache.getMisses();
+		Assert.assertTrue(misses > 0);
+
+		checkTiles(mapDatabase);
+		Assert.assertEquals(misses, blockCache.getHits());
+		Assert.assertEquals(misses, blockCache.getMisses());
+		Assert.assertEquals(0, blockCache.getEvictions());
+
+		mapDatabase.setBlockCacheCapacity(0);
+		Assert.assertNull(mapDatabase.getBlockCache());
+		checkTiles(mapDatabase);
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void concurrentQueryMemoryMappedTest() throws InterruptedException {
+		concurrentQuery(FileAccessMode.MEMORY_MAPPED);
+	}
+
+	@Test
+	public void concurrentQueryPositionalReadTest() throws InterruptedException {
+		concurrentQuery(FileAccessMode.POSITIONAL_READ);
+	}
+
+	@Test
+	public void estimateQueryCostTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		final List<QueryStatistics> queryStatistics = new ArrayList<QueryStatistics>();
+		mapDatabase.setQueryListener(new QueryListener() {
+			@Override
+			public void queryFinished(Tile tile, QueryStatistics statistics) {
+				queryStatistics.add(statistics);
+			}
+		});
+
 		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
 			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
 			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
 			Tile tile = new Tile(tileX, tileY, zoomLevel);
 
+			QueryCost queryCost = mapDatabase.estimateQueryCost(tile);
+			Assert.assertTrue(queryCost.blocks > 0);
+			Assert.assertTrue(queryCost.bytes > 0);
+
+			// the estimation matches the blocks which are actually read
+			queryStatistics.clear();
 			MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+			Assert.assertEquals(mapReadResult.isWater, queryCost.isWater);
+			Assert.assertTrue(queryStatistics.get(0).getBlocksRead() <= queryCost.blocks);
+			Assert.assertTrue(queryStatistics.get(0).getBytesRead() >= queryCost.bytes);
+		}
 
-			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
-			Assert.assertEquals(1, mapReadResult.ways.size());
+		// a tile outside of the map area touches no blocks
+		QueryCost queryCost = mapDatabase.estimateQueryCost(new Tile(0, 0, ZOOM_LEVEL_MAX));
+		Assert.assertEquals(0, queryCost.blocks);
+		Assert.assertEquals(0, queryCost.bytes);
+		Assert.assertFalse(queryCost.isWater);
 
-			checkPointOfInterest(mapReadResult.pointOfInterests.get(0));
-			checkWay(mapReadResult.ways.get(0));
+		mapDatabase.closeFile();
+		try {
+			mapDatabase.estimateQueryCost(new Tile(0, 0, ZOOM_LEVEL_MAX));
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(true);
 		}
+	}
 
+	@Test
+	public void executeQueryIndexCacheModeTest() {
+		for (IndexCacheMode indexCacheMode : IndexCacheMode.values()) {
+			MapDatabase mapDatabase = new MapDatabase();
+			mapDatabase.setIndexCacheMode(indexCacheMode);
+			mapDatabase.setIndexMemoryBudget(0);
+			FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+			Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+			checkTiles(mapDatabase);
+
+			mapDatabase.closeFile();
+		}
+	}
+
+	@Test
+	public void executeQueryInMemoryTest() throws IOException {
+		byte[] mapData = Files.readAllBytes(MAP_FILE.toPath());
+
+		// the map data may start at any position of a heap or direct buffer
+		ByteBuffer directBuffer = ByteBuffer.allocateDirect(mapData.length + 3);
+		directBuffer.position(3);
+		directBuffer.put(mapData);
+		directBuffer.position(3);
+		ByteBuffer[] buffers = { ByteBuffer.wrap(mapData), directBuffer, ByteBuffer.wrap(mapData).asReadOnlyBuffer() };
+
+		for (ByteBuffer buffer : buffers) {
+			MapDatabase mapDatabase = new MapDatabase();
+			FileOpenResult fileOpenResult = mapDatabase.openFile(buffer);
+			Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+			Assert.assertTrue(mapDatabase.getMapFileInfo().debugFile);
+
+			checkTiles(mapDatabase);
+
+			mapDatabase.closeFile();
+			Assert.assertFalse(mapDatabase.hasOpenFile());
+		}
+
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(mapData);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		checkTiles(mapDatabase);
 		mapDatabase.closeFile();
+
+		// truncated map data must be rejected
+		fileOpenResult = mapDatabase.openFile(Arrays.copyOf(mapData, 100));
+		Assert.assertFalse(fileOpenResult.isSuccess());
 		Assert.assertFalse(mapDatabase.hasOpenFile());
 	}
+
+	@Test
+	public void executeQueryMemoryMappedTest() {
+		executeQuery(FileAccessMode.MEMORY_MAPPED);
+	}
+
+	@Test
+	public void executeQueryPositionalReadTest() {
+		executeQuery(FileAccessMode.POSITIONAL_READ);
+	}
+
+	@Test
+	public void executeQueryTest() {
+		executeQuery(FileAccessMode.RANDOM_ACCESS_FILE);
+	}
+
+	@Test
+	public void interruptedQueryPositionalReadTest() throws InterruptedException {
+		final MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE, FileAccessMode.POSITIONAL_READ);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		// an interrupted read closes the underlying file channel
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				interrupt();
+				mapDatabase.readMapData(new Tile(0, 0, ZOOM_LEVEL_MAX));
+			}
+		};
+		thread.start();
+		thread.join();
+
+		checkTiles(mapDatabase);
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void packedQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		// the same result is reused for all queries
+		PackedMapReadResult packedMapReadResult = new PackedMapReadResult();
+		checkPackedTiles(mapDatabase, packedMapReadResult);
+
+		PackedWay packedWay = packedMapReadResult.getWay(0);
+		Assert.assertEquals(1, packedWay.getNumberOfSegments());
+		Assert.assertEquals(0, packedWay.getSegmentStart(0));
+		Assert.assertEquals(3, packedWay.getSegmentEnd(0));
+		Assert.assertEquals(0.04, packedWay.getLatitude(1), 0.000001);
+		Assert.assertEquals(0.08, packedWay.getLongitude(1), 0.000001);
+
+		// ways from the block cache are copied into the result
+		mapDatabase.setBlockCacheCapacity(1024 * 1024);
+		checkPackedTiles(mapDatabase, packedMapReadResult);
+		checkPackedTiles(mapDatabase, packedMapReadResult);
+		Assert.assertTrue(mapDatabase.getBlockCache().getHits() > 0);
+		Assert.assertSame(packedWay, packedMapReadResult.getWay(0));
+
+		packedMapReadResult.clear();
+		Assert.assertEquals(0, packedMapReadResult.getNumberOfWays());
+		Assert.assertTrue(packedMapReadResult.getPointOfInterests().isEmpty());
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void partialDecodeTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			// only the names and label positions, for example for a label overlay
+			MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+			Assert.assertTrue(mapDatabase.readMapData(tile, mapReadResultBuilder, null,
+					EnumSet.of(DecodeSection.NAMES, DecodeSection.LABEL_POSITION)));
+			Assert.assertEquals(1, mapReadResultBuilder.pointOfInterests.size());
+			PointOfInterest pointOfInterest = mapReadResultBuilder.pointOfInterests.get(0);
+			Assert.assertEquals(0.04, pointOfInterest.position.latitude, 0.000001);
+			Assert.assertEquals(2, pointOfInterest.tags.size());
+			Assert.assertTrue(pointOfInterest.tags.contains(new Tag("name=АБВГДЕЖЗ")));
+			Assert.assertTrue(pointOfInterest.tags.contains(new Tag("addr:housenumber=абвгдежз")));
+			Assert.assertEquals(1, mapReadResultBuilder.ways.size());
+			Way way = mapReadResultBuilder.ways.get(0);
+			Assert.assertEquals(0, way.latLongs.length);
+			Assert.assertEquals(2, way.tags.size());
+			Assert.assertTrue(way.tags.contains(new Tag("name=ÄÖÜ")));
+			Assert.assertTrue(way.tags.contains(new Tag("ref=äöü")));
+
+			// only the tags and way nodes, for example for hit-testing
+			mapReadResultBuilder = new MapReadResultBuilder();
+			Assert.assertTrue(mapDatabase.readMapData(tile, mapReadResultBuilder, null,
+					EnumSet.of(DecodeSection.TAGS, DecodeSection.GEOMETRY)));
+			pointOfInterest = mapReadResultBuilder.pointOfInterests.get(0);
+			Assert.assertEquals(2, pointOfInterest.tags.size());
+			Assert.assertTrue(pointOfInterest.tags.contains(new Tag("place=country")));
+			Assert.assertTrue(pointOfInterest.tags.contains(new Tag("ele=25")));
+			way = mapReadResultBuilder.ways.get(0);
+			Assert.assertEquals(Collections.singletonList(new Tag("highway=motorway")), way.tags);
+			Assert.assertEquals(1, way.latLongs.length);
+			Assert.assertEquals(3, way.latLongs[0].length);
+
+			// all sections
+			mapReadResultBuilder = new MapReadResultBuilder();
+			Assert.assertTrue(mapDatabase.readMapData(tile, mapReadResultBuilder, null,
+					EnumSet.allOf(DecodeSection.class)));
+			checkPointOfInterest(mapReadResultBuilder.pointOfInterests.get(0));
+			checkWay(mapReadResultBuilder.ways.get(0));
+		}
+
+		try {
+			mapDatabase.readMapData(new Tile(0, 0, ZOOM_LEVEL_MAX), new MapReadResultBuilder(), null, null);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void poiQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		BoundingBox inside = new BoundingBox(0.03, 0.07, 0.05, 0.09);
+		BoundingBox outside = new BoundingBox(0.05, 0.09, 0.06, 0.1);
+		PoiFilter acceptCountries = new PoiFilter() {
+			@Override
+			public boolean accept(byte layer, List<Tag> tags) {
+				return tags.contains(new Tag("place=country"));
+			}
+		};
+		PoiFilter acceptCities = new PoiFilter() {
+			@Override
+			public boolean accept(byte layer, List<Tag> tags) {
+				return tags.contains(new Tag("place=city"));
+			}
+		};
+
+		// run all queries twice to cover the block cache
+		for (int i = 0; i < 2; ++i) {
+			for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+				for (PoiFilter poiFilter : new PoiFilter[] { null, acceptCountries }) {
+					List<PointOfInterest> pointOfInterests = mapDatabase.readPoiData(inside, zoomLevel, poiFilter);
+					Assert.assertEquals(1, pointOfInterests.size());
+					checkPointOfInterest(pointOfInterests.get(0));
+				}
+
+				Assert.assertTrue(mapDatabase.readPoiData(inside, zoomLevel, acceptCities).isEmpty());
+				Assert.assertTrue(mapDatabase.readPoiData(outside, zoomLevel, null).isEmpty());
+			}
+			mapDatabase.setBlockCacheCapacity(1024 * 1024);
+		}
+
+		// POI queries must not put incomplete blocks into the block cache
+		Assert.assertEquals(0, mapDatabase.getBlockCache().getHits());
+		MapReadResult mapReadResult = mapDatabase.readMapData(new Tile(MercatorProjection.longitudeToTileX(0.04,
+				ZOOM_LEVEL_MAX), MercatorProjection.latitudeToTileY(0.04, ZOOM_LEVEL_MAX), ZOOM_LEVEL_MAX));
+		Assert.assertEquals(1, mapReadResult.ways.size());
+
+		mapDatabase.closeFile();
+		try {
+			mapDatabase.readPoiData(inside, ZOOM_LEVEL_MAX, null);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void truncatedBlockTest() throws IOException {
+		byte[] mapFileData = Files.readAllBytes(MAP_FILE.toPath());
+		MapFileSource mapFileSource = new ByteBufferSource(ByteBuffer.wrap(mapFileData));
+		MapFileHeader mapFileHeader = new MapFileHeader();
+		FileOpenResult fileOpenResult = mapFileHeader.readHeader(new ReadBuffer(mapFileSource),
+				mapFileSource.getSize());
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		// cut off the last byte of the block which contains the POI and the way by moving the next block pointer
+		SubFileParameter subFileParameter = mapFileHeader.getSubFileParameter(ZOOM_LEVEL_MAX);
+		byte zoomLevel = subFileParameter.baseZoomLevel;
+		Tile tile = new Tile(MercatorProjection.longitudeToTileX(0.04, zoomLevel), MercatorProjection.latitudeToTileY(
+				0.04, zoomLevel), zoomLevel);
+		long blockNumber = (tile.tileY - subFileParameter.boundaryTileTop) * subFileParameter.blocksWidth + tile.tileX
+				- subFileParameter.boundaryTileLeft;
+		Assert.assertTrue(blockNumber + 1 < subFileParameter.numberOfBlocks);
+		int indexEntryAddress = (int) (subFileParameter.indexStartAddress + (blockNumber + 1)
+				* SubFileParameter.BYTES_PER_INDEX_ENTRY);
+		long blockPointer = Deserializer.getFiveBytesLong(mapFileData, indexEntryAddress) - 1;
+		for (int i = SubFileParameter.BYTES_PER_INDEX_ENTRY - 1; i >= 0; --i) {
+			mapFileData[indexEntryAddress + i] = (byte) blockPointer;
+			blockPointer >>>= 8;
+		}
+
+		MapDatabase mapDatabase = new MapDatabase();
+		fileOpenResult = mapDatabase.openFile(mapFileData);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		// the POI has already been passed to the sink when the truncated way is detected
+		MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+		Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+		checkPointOfInterest(mapReadResult.pointOfInterests.get(0));
+		Assert.assertTrue(mapReadResult.ways.isEmpty());
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void projectedQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		final int tileSize = 256;
+		// run all queries twice to cover the block cache
+		for (int i = 0; i < 2; ++i) {
+			for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+				long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+				long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+				final Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+				final Way way = mapDatabase.readMapData(tile).ways.get(0);
+				final List<PackedWay> projectedWays = new ArrayList<PackedWay>();
+				Assert.assertTrue(mapDatabase.readMapData(tile, tileSize, new MapReadResultBuilder() {
+					@Override
+					public void way(PackedWay packedWay) {
+						Assert.assertTrue(packedWay.isProjected());
+						Assert.assertEquals(way.latLongs[0].length, packedWay.getNumberOfNodes());
+
+						double tilePixelX = MercatorProjection.tileToPixel(tile.tileX, tileSize);
+						double tilePixelY = MercatorProjection.tileToPixel(tile.tileY, tileSize);
+						float[] pixelCoordinates = packedWay.getPixelCoordinates();
+						for (int j = 0; j < packedWay.getNumberOfNodes(); ++j) {
+							LatLong latLong = way.latLongs[0][j];
+							double pixelX = MercatorProjection.longitudeToPixelX(latLong.longitude, tile.zoomLevel,
+									tileSize) - tilePixelX;
+							double pixelY = MercatorProjection.latitudeToPixelY(latLong.latitude, tile.zoomLevel,
+									tileSize) - tilePixelY;
+							Assert.assertEquals(pixelX, pixelCoordinates[j << 1], 0.01);
+							Assert.assertEquals(pixelY, pixelCoordinates[(j << 1) + 1], 0.01);
+						}
+						projectedWays.add(packedWay);
+
+						// projected ways cannot be converted back
+						try {
+							packedWay.toWay();
+							Assert.fail();
+						} catch (IllegalStateException e) {
+							Assert.assertTrue(true);
+						}
+					}
+				}, null));
+				Assert.assertEquals(1, projectedWays.size());
+			}
+			mapDatabase.setBlockCacheCapacity(1024 * 1024);
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void sinkQueryTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+			Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+			// skip all POIs
+			final List<Way> decodedWays = new ArrayList<Way>();
+			Assert.assertTrue(mapDatabase.readMapData(tile, new MapReadResultBuilder() {
+				@Override
+				public boolean acceptPointOfInterest(byte layer, List<Tag> tags) {
+					Assert.assertEquals(7, layer);
+					Assert.assertTrue(tags.contains(new Tag("place=country")));
+					return false;
+				}
+
+				@Override
+				public void way(PackedWay way) {
+					decodedWays.add(way.toWay());
+				}
+			}));
+			Assert.assertEquals(1, decodedWays.size());
+			checkWay(decodedWays.get(0));
+
+			// skip all ways
+			MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder() {
+				@Override
+				public boolean acceptWay(byte layer, List<Tag> tags) {
+					Assert.assertEquals(4, layer);
+					Assert.assertEquals(Collections.singletonList(new Tag("highway=motorway")), tags);
+					return false;
+				}
+			};
+			Assert.assertTrue(mapDatabase.readMapData(tile, mapReadResultBuilder));
+			Assert.assertEquals(1, mapReadResultBuilder.pointOfInterests.size());
+			Assert.assertTrue(mapReadResultBuilder.ways.isEmpty());
+			checkPointOfInterest(mapReadResultBuilder.pointOfInterests.get(0));
+		}
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void statisticsTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		mapDatabase.setBlockCacheCapacity(1024 * 1024);
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+		final List<Tile> queriedTiles = new ArrayList<Tile>();
+		final List<QueryStatistics> queryStatistics = new ArrayList<QueryStatistics>();
+		mapDatabase.setQueryListener(new QueryListener() {
+			@Override
+			public void queryFinished(Tile tile, QueryStatistics statistics) {
+				queriedTiles.add(tile);
+				queryStatistics.add(statistics);
+			}
+		});
+
+		long tileX = MercatorProjection.longitudeToTileX(0.04, ZOOM_LEVEL_MAX);
+		long tileY = MercatorProjection.latitudeToTileY(0.04, ZOOM_LEVEL_MAX);
+		Tile tile = new Tile(tileX, tileY, ZOOM_LEVEL_MAX);
+		MapReadResult mapReadResult = mapDatabase.readMapData(tile);
+		Assert.assertEquals(1, queryStatistics.size());
+		Assert.assertEquals(tile, queriedTiles.get(0));
+		QueryStatistics statistics1 = queryStatistics.get(0);
+		Assert.assertEquals(1, statistics1.getQueries());
+		Assert.assertTrue(statistics1.getBlocksRead() > 0);
+		Assert.assertTrue(statistics1.getBytesRead() > 0);
+		Assert.assertEquals(0, statistics1.getBlockCacheHits());
+		Assert.assertEquals(mapReadResult.pointOfInterests.size(), statistics1.getPointOfInterests());
+		Assert.assertEquals(mapReadResult.ways.size(), statistics1.getWays());
+
+		// the second query takes the decoded blocks from the block cache
+		mapDatabase.readMapData(tile);
+		QueryStatistics statistics2 = queryStatistics.get(1);
+		Assert.assertEquals(statistics1.getBlocksRead(), statistics2.getBlockCacheHits());
+		Assert.assertEquals(0, statistics2.getBlocksRead());
+		Assert.assertEquals(0, statistics2.getWays());
+
+		QueryStatistics statistics = mapDatabase.getStatistics();
+		Assert.assertEquals(2, statistics.getQueries());
+		Assert.assertEquals(statistics1.getBlocksRead(), statistics.getBlocksRead());
+		Assert.assertEquals(statistics1.getBlocksRead(), statistics.getBlockCacheHits());
+
+		mapDatabase.setQueryListener(null);
+		mapDatabase.readMapData(tile);
+		Assert.assertEquals(2, queryStatistics.size());
+		Assert.assertEquals(3, mapDatabase.getStatistics().getQueries());
+
+		mapDatabase.closeFile();
+	}
+
+	@Test
+	public void tagCacheTest() {
+		// a single slot per tag value is enough for correct results
+		for (int tagCacheCapacity : new int[] { 1, 1024 }) {
+			MapDatabase mapDatabase = new MapDatabase();
+			mapDatabase.setTagCacheCapacity(tagCacheCapacity);
+			FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+			Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+
+			checkTiles(mapDatabase);
+
+			long tileX = MercatorProjection.longitudeToTileX(0.04, ZOOM_LEVEL_MAX);
+			long tileY = MercatorProjection.latitudeToTileY(0.04, ZOOM_LEVEL_MAX);
+			Tile tile = new Tile(tileX, tileY, ZOOM_LEVEL_MAX);
+			MapReadResult mapReadResult1 = mapDatabase.readMapData(tile);
+			MapReadResult mapReadResult2 = mapDatabase.readMapData(tile);
+			List<Tag> tags1 = mapReadResult1.ways.get(0).tags;
+			List<Tag> tags2 = mapReadResult2.ways.get(0).tags;
+			Assert.assertEquals(tags1, tags2);
+			if (tagCacheCapacity > 1) {
+				// the decoded tags are the same instances
+				for (int i = 0; i < tags1.size(); ++i) {
+					Assert.assertSame(tags1.get(i), tags2.get(i));
+				}
+			}
+
+			mapDatabase.closeFile();
+		}
+
+		try {
+			new MapDatabase().setTagCacheCapacity(-1);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+	}
+
+	@Test
+	public void tagFilterTest() {
+		MapDatabase mapDatabase = new MapDatabase();
+		FileOpenResult fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		MapFileInfo mapFileInfo = mapDatabase.getMapFileInfo();
+
+		TagFilter acceptAll = new TagFilter(mapFileInfo, null, null);
+		TagFilter acceptKeys = new TagFilter(mapFileInfo, Collections.singletonList(new Tag("place", null)),
+				Collections.singletonList(new Tag("highway", null)));
+		TagFilter acceptValues = new TagFilter(mapFileInfo, Collections.singletonList(new Tag(null, "country")),
+				Collections.singletonList(new Tag("highway=motorway")));
+		TagFilter acceptNames = new TagFilter(mapFileInfo, Collections.singletonList(new Tag("name", null)),
+				Collections.singletonList(new Tag("name", null)));
+		TagFilter rejectAll = new TagFilter(mapFileInfo, Collections.singletonList(new Tag("place=city")),
+				Collections.singletonList(new Tag("building", null)));
+
+		// run all queries twice to cover the block cache
+		for (int i = 0; i < 2; ++i) {
+			for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+				long tileX = MercatorProjection.longitudeToTileX(0.04, zoomLevel);
+				long tileY = MercatorProjection.latitudeToTileY(0.04, zoomLevel);
+				Tile tile = new Tile(tileX, tileY, zoomLevel);
+
+				for (TagFilter tagFilter : new TagFilter[] { acceptAll, acceptKeys, acceptValues, acceptNames }) {
+					MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+					Assert.assertTrue(mapDatabase.readMapData(tile, mapReadResultBuilder, tagFilter));
+					Assert.assertEquals(1, mapReadResultBuilder.pointOfInterests.size());
+					Assert.assertEquals(1, mapReadResultBuilder.ways.size());
+					checkPointOfInterest(mapReadResultBuilder.pointOfInterests.get(0));
+					checkWay(mapReadResultBuilder.ways.get(0));
+				}
+
+				MapReadResultBuilder mapReadResultBuilder = new MapReadResultBuilder();
+				Assert.assertTrue(mapDatabase.readMapData(tile, mapReadResultBuilder, rejectAll));
+				Assert.assertTrue(mapReadResultBuilder.pointOfInterests.isEmpty());
+				Assert.assertTrue(mapReadResultBuilder.ways.isEmpty());
+			}
+			mapDatabase.setBlockCacheCapacity(1024 * 1024);
+		}
+
+		mapDatabase.closeFile();
+
+		fileOpenResult = mapDatabase.openFile(MAP_FILE);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		try {
+			mapDatabase.readMapData(new Tile(0, 0, ZOOM_LEVEL_MAX), new MapReadResultBuilder(), acceptAll);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(true);
+		}
+
+		mapDatabase.closeFile();
+	}
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.reader;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tile;
+import org.mapsforge.core.util.MercatorProjection;
+import org.mapsforge.map.reader.header.FileOpenResult;
+
+public class MultiMapDatabaseTest {
+	private static final File MAP_FILE_EMPTY = new File("src/test/resources/empty/output.map");
+	private static final File MAP_FILE_WITH_DATA = new File("src/test/resources/with_data/output.map");
+	private static final byte ZOOM_LEVEL_MAX = 11;
+	private static final int ZOOM_LEVEL_MIN = 9;
+
+	private static Tile getTile(double latitude, double longitude, byte zoomLevel) {
+		long tileX = MercatorProjection.longitudeToTileX(longitude, zoomLevel);
+		long tileY = MercatorProjection.latitudeToTileY(latitude, zoomLevel);
+		return new Tile(tileX, tileY, zoomLevel);
+	}
+
+	@Test
+	public void executeQueryTest() {
+		MultiMapDatabase multiMapDatabase = new MultiMapDatabase();
+		Assert.assertTrue(multiMapDatabase.getMapDatabases().isEmpty());
+		MapReadResult mapReadResult = multiMapDatabase.readMapData(new Tile(0, 0, (byte) 0));
+		Assert.assertTrue(mapReadResult.pointOfInterests.isEmpty());
+		Assert.assertTrue(mapReadResult.ways.isEmpty());
+		Assert.assertFalse(mapReadResult.isWater);
+
+		FileOpenResult fileOpenResult = multiMapDatabase.addMapFile(MAP_FILE_WITH_DATA, FileAccessMode.POSITIONAL_READ);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		MapDatabase emptyMapDatabase = new MapDatabase();
+		fileOpenResult = emptyMapDatabase.openFile(MAP_FILE_EMPTY, FileAccessMode.MEMORY_MAPPED);
+		Assert.assertTrue(fileOpenResult.getErrorMessage(), fileOpenResult.isSuccess());
+		multiMapDatabase.addMapDatabase(emptyMapDatabase);
+		Assert.assertEquals(2, multiMapDatabase.getMapDatabases().size());
+		MapDatabase dataMapDatabase = multiMapDatabase.getMapDatabases().get(0);
+
+		Assert.assertFalse(multiMapDatabase.addMapFile(new File("does_not_exist.map"), FileAccessMode.POSITIONAL_READ)
+				.isSuccess());
+		Assert.assertEquals(2, multiMapDatabase.getMapDatabases().size());
+
+		// the map files are only read where they overlap the tile
+		Tile tile = getTile(0.04, 0.04, (byte) 6);
+		Assert.assertEquals(Arrays.asList(dataMapDatabase, emptyMapDatabase), multiMapDatabase.getMapDatabases(tile));
+		for (byte zoomLevel = ZOOM_LEVEL_MIN; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+			tile = getTile(0.04, 0.04, zoomLevel);
+			Assert.assertEquals(Collections.singletonList(dataMapDatabase), multiMapDatabase.getMapDatabases(tile));
+
+			mapReadResult = multiMapDatabase.readMapData(tile);
+			MapReadResult expected = dataMapDatabase.readMapData(tile);
+			Assert.assertEquals(expected.isWater, mapReadResult.isWater);
+			Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+			Assert.assertEquals(1, mapReadResult.ways.size());
+
+			tile = getTile(1, 1, zoomLevel);
+			Assert.assertEquals(Collections.singletonList(emptyMapDatabase), multiMapDatabase.getMapDatabases(tile));
+			mapReadResult = multiMapDatabase.readMapData(tile);
+			expected = emptyMapDatabase.readMapData(tile);
+			Assert.assertEquals(expected.isWater, mapReadResult.isWater);
+			Assert.assertTrue(mapReadResult.pointOfInterests.isEmpty());
+			Assert.assertTrue(mapReadResult.ways.isEmpty());
+		}
+
+		// the merged result is a water tile only if all map files report a water tile
+		tile = getTile(0.04, 0.04, (byte) 6);
+		boolean isWater = dataMapDatabase.readMapData(tile).isWater && emptyMapDatabase.readMapData(tile).isWater;
+		mapReadResult = multiMapDatabase.readMapData(tile);
+		Assert.assertEquals(isWater, mapReadResult.isWater);
+		Assert.assertEquals(1, mapReadResult.pointOfInterests.size());
+		Assert.assertEquals(1, mapReadResult.ways.size());
+
+		multiMapDatabase.closeFiles();
+		Assert.assertTrue(multiMapDatabase.getMapDatabases().isEmpty());
+		Assert.assertFalse(dataMapDatabase.hasOpenFile());
+		Assert.assertTrue(emptyMapDatabase.hasOpenFile());
+		emptyMapDatabase.closeFile();
+	}
+}
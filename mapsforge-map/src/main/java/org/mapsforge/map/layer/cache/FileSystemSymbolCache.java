@@ -0,0 +1,221 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import org.mapsforge.core.graphics.DelegatingGraphicFactory;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.ResourceBitmap;
+import org.mapsforge.core.util.IOUtils;
+
+/**
+ * A thread-safe GraphicFactory which stores the rasterized SVG symbols of another GraphicFactory in a file system
+ * cache with a fixed size and LRU policy.
+ * <p>
+ * A symbol is identified by the checksum of its SVG source, the scale factor and the hash passed to
+ * {@link #renderSvg}, so cached symbols stay valid across restarts and are never used for a modified source. The
+ * cache directory is indexed on first use.
+ */
+public class FileSystemSymbolCache extends DelegatingGraphicFactory {
+	private static final class SymbolFileNameFilter implements FilenameFilter {
+		static final FilenameFilter INSTANCE = new SymbolFileNameFilter();
+
+		private SymbolFileNameFilter() {
+			// do nothing
+		}
+
+		@Override
+		public boolean accept(File directory, String fileName) {
+			return fileName.endsWith(FILE_EXTENSION);
+		}
+	}
+
+	static final String FILE_EXTENSION = ".symbol";
+	private static final Logger LOGGER = Logger.getLogger(FileSystemSymbolCache.class.getName());
+
+	private static File checkDirectory(File file) {
+		if (!file.exists() && !file.mkdirs()) {
+			throw new IllegalArgumentException("could not create directory: " + file);
+		} else if (!file.isDirectory()) {
+			throw new IllegalArgumentException("not a directory: " + file);
+		} else if (!file.canRead()) {
+			throw new IllegalArgumentException("cannot read directory: " + file);
+		} else if (!file.canWrite()) {
+			throw new IllegalArgumentException("cannot write directory: " + file);
+		}
+		return file;
+	}
+
+	private static String getFileName(byte[] svg, float scaleFactor, int hash) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(svg);
+		return Integer.toHexString(hash) + '_' + Integer.toHexString(Float.floatToIntBits(scaleFactor)) + '_'
+				+ Long.toHexString(crc32.getValue()) + FILE_EXTENSION;
+	}
+
+	private final File cacheDirectory;
+	private final int capacity;
+	private FileLRUCache<String> lruCache;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of symbols in this cache.
+	 * @param cacheDirectory
+	 *            the directory where cached symbols will be stored.
+	 * @param graphicFactory
+	 *            the GraphicFactory which renders the symbols that are not cached.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	public FileSystemSymbolCache(int capacity, File cacheDirectory, GraphicFactory graphicFactory) {
+		super(graphicFactory);
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+		}
+		this.capacity = capacity;
+		this.cacheDirectory = checkDirectory(cacheDirectory);
+	}
+
+	/**
+	 * Removes all symbols from this cache and deletes their files.
+	 */
+	public synchronized void destroy() {
+		if (this.lruCache != null) {
+			this.lruCache.clear();
+		}
+
+		File[] filesToDelete = this.cacheDirectory.listFiles(SymbolFileNameFilter.INSTANCE);
+		if (filesToDelete != null) {
+			for (File file : filesToDelete) {
+				if (file.exists() && !file.delete()) {
+					LOGGER.log(Level.SEVERE, "could not delete file: " + file);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the capacity of this cache.
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	@Override
+	public ResourceBitmap renderSvg(InputStream inputStream, float scaleFactor, int hash) throws IOException {
+		byte[] svg = IOUtils.readFully(inputStream);
+		String fileName = getFileName(svg, scaleFactor, hash);
+
+		ResourceBitmap resourceBitmap = get(fileName, hash);
+		if (resourceBitmap != null) {
+			return resourceBitmap;
+		}
+
+		resourceBitmap = this.graphicFactory.renderSvg(new ByteArrayInputStream(svg), scaleFactor, hash);
+		if (resourceBitmap != null) {
+			put(fileName, resourceBitmap);
+		}
+		return resourceBitmap;
+	}
+
+	private synchronized ResourceBitmap get(String fileName, int hash) {
+		File file = getLruCache().get(fileName);
+		if (file == null) {
+			return null;
+		}
+
+		InputStream inputStream = null;
+		try {
+			inputStream = new FileInputStream(file);
+			ResourceBitmap resourceBitmap = this.graphicFactory.createResourceBitmap(inputStream, hash);
+			// keeps the LRU order for the next start
+			if (!file.setLastModified(System.currentTimeMillis())) {
+				LOGGER.fine("could not update modification time: " + file);
+			}
+			return resourceBitmap;
+		} catch (IOException e) {
+			// the file is corrupted or has been removed, the symbol is rendered again
+			LOGGER.log(Level.WARNING, "could not read cached symbol: " + file, e);
+			this.lruCache.remove(fileName);
+			if (file.exists() && !file.delete()) {
+				LOGGER.log(Level.SEVERE, "could not delete file: " + file);
+			}
+			return null;
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+
+	private FileLRUCache<String> getLruCache() {
+		if (this.lruCache == null) {
+			this.lruCache = new FileLRUCache<String>(this.capacity);
+
+			File[] files = this.cacheDirectory.listFiles(SymbolFileNameFilter.INSTANCE);
+			if (files != null) {
+				// the least recently used files are added first and evicted first
+				Arrays.sort(files, new Comparator<File>() {
+					@Override
+					public int compare(File file1, File file2) {
+						long lastModified1 = file1.lastModified();
+						long lastModified2 = file2.lastModified();
+						return lastModified1 < lastModified2 ? -1 : (lastModified1 == lastModified2 ? 0 : 1);
+					}
+				});
+				for (File file : files) {
+					this.lruCache.put(file.getName(), file);
+				}
+			}
+		}
+		return this.lruCache;
+	}
+
+	private synchronized void put(String fileName, ResourceBitmap resourceBitmap) {
+		if (this.capacity == 0) {
+			return;
+		}
+
+		File file = new File(this.cacheDirectory, fileName);
+		OutputStream outputStream = null;
+		try {
+			outputStream = new FileOutputStream(file);
+			resourceBitmap.compress(outputStream);
+			outputStream.close();
+			outputStream = null;
+			getLruCache().put(fileName, file);
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "could not write cached symbol: " + file, e);
+			IOUtils.closeQuietly(outputStream);
+			outputStream = null;
+			if (file.exists() && !file.delete()) {
+				LOGGER.log(Level.SEVERE, "could not delete file: " + file);
+			}
+		} finally {
+			IOUtils.closeQuietly(outputStream);
+		}
+	}
+}
@@ -35,20 +35,21 @@ import org.mapsforge.core.model.Tag;
 import org.mapsforge.core.util.MercatorProjection;
 import org.mapsforge.map.model.DisplayModel;
 import org.mapsforge.map.reader.MapDatabase;
-import org.mapsforge.map.reader.MapReadResult;
+import org.mapsforge.map.reader.MapDataSink;
+import org.mapsforge.map.reader.PackedWay;
 import org.mapsforge.map.reader.PointOfInterest;
-import org.mapsforge.map.reader.Way;
+import org.mapsforge.map.reader.TagFilter;
 import org.mapsforge.map.reader.header.MapFileInfo;
 import org.mapsforge.map.rendertheme.RenderCallback;
 import org.mapsforge.map.rendertheme.XmlRenderTheme;
 import org.mapsforge.map.rendertheme.rule.RenderTheme;
-import org.mapsforge.map.rendertheme.rule.RenderThemeHandler;
+import org.mapsforge.map.rendertheme.rule.RenderThemeCache;
 import org.xml.sax.SAXException;
 
 /**
  * A DatabaseRenderer renders map tiles by reading from a {@link MapDatabase}.
  */
-public class DatabaseRenderer implements RenderCallback {
+public class DatabaseRenderer implements MapDataSink, RenderCallback {
 
 	private static final Byte DEFAULT_START_ZOOM_LEVEL = Byte.valueOf((byte) 12);
 	private static final byte LAYERS = 11;
@@ -89,10 +90,11 @@ public class DatabaseRenderer implements RenderCallback {
 	private final List<SymbolContainer> pointSymbols;
 	private Point poiPosition;
 	private XmlRenderTheme previousJobTheme;
-	private float previousTextScale;
-	private byte previousZoomLevel;
 	private RenderTheme renderTheme;
+	private float scaleStrokeWidth;
 	private ShapeContainer shapeContainer;
+	private MapFileInfo tagFilterMapFileInfo;
+	private final TagFilter[] tagFilters;
 	private final List<WayTextContainer> wayNames;
 	private final List<List<List<ShapePaintContainer>>> ways;
 	private final List<SymbolContainer> waySymbols;
@@ -116,6 +118,7 @@ public class DatabaseRenderer implements RenderCallback {
 		this.areaLabels = new ArrayList<PointTextContainer>(64);
 		this.waySymbols = new ArrayList<SymbolContainer>(64);
 		this.pointSymbols = new ArrayList<SymbolContainer>(64);
+		this.tagFilters = new TagFilter[ZOOM_MAX + 1];
 	}
 
 	public void destroy() {
@@ -143,31 +146,25 @@ public class DatabaseRenderer implements RenderCallback {
 
 		XmlRenderTheme jobTheme = rendererJob.xmlRenderTheme;
 		if (!jobTheme.equals(this.previousJobTheme)) {
+			if (this.renderTheme != null) {
+				this.renderTheme.destroy();
+			}
 			this.renderTheme = getRenderTheme(jobTheme, rendererJob.displayModel);
 			if (this.renderTheme == null) {
 				this.previousJobTheme = null;
 				return null;
 			}
 			createWayLists();
+			Arrays.fill(this.tagFilters, null);
 			this.previousJobTheme = jobTheme;
-			this.previousZoomLevel = Byte.MIN_VALUE;
 		}
 
 		byte zoomLevel = rendererJob.tile.zoomLevel;
-		if (zoomLevel != this.previousZoomLevel) {
-			setScaleStrokeWidth(zoomLevel);
-			this.previousZoomLevel = zoomLevel;
-		}
-
-		float textScale = rendererJob.textScale;
-		if (Float.compare(textScale, this.previousTextScale) != 0) {
-			this.renderTheme.scaleTextSize(textScale);
-			this.previousTextScale = textScale;
-		}
+		setScaleStrokeWidth(zoomLevel);
 
-		if (this.mapDatabase != null) {
-			MapReadResult mapReadResult = this.mapDatabase.readMapData(rendererJob.tile);
-			processReadMapData(mapReadResult);
+		if (this.mapDatabase != null && this.mapDatabase.hasOpenFile()) {
+			this.mapDatabase.readMapData(rendererJob.tile, rendererJob.displayModel.getTileSize(), this,
+					getTagFilter(zoomLevel));
 		}
 
 		this.nodes = this.labelPlacement.placeLabels(this.nodes, this.pointSymbols, this.areaLabels, rendererJob.tile,
@@ -190,6 +187,16 @@ public class DatabaseRenderer implements RenderCallback {
 		return bitmap;
 	}
 
+	@Override
+	public boolean acceptPointOfInterest(byte layer, List<Tag> tags) {
+		return true;
+	}
+
+	@Override
+	public boolean acceptWay(byte layer, List<Tag> tags) {
+		return true;
+	}
+
 	public MapDatabase getMapDatabase() {
 		return this.mapDatabase;
 	}
@@ -230,6 +237,11 @@ public class DatabaseRenderer implements RenderCallback {
 		return ZOOM_MAX;
 	}
 
+	@Override
+	public void pointOfInterest(PointOfInterest pointOfInterest) {
+		renderPointOfInterest(pointOfInterest);
+	}
+
 	@Override
 	public void renderArea(Paint fill, Paint stroke, int level) {
 		List<ShapePaintContainer> list = this.drawingLayers.get(level);
@@ -292,6 +304,16 @@ public class DatabaseRenderer implements RenderCallback {
 		WayDecorator.renderText(textKey, fill, stroke, this.coordinates, this.wayNames);
 	}
 
+	@Override
+	public void water() {
+		renderWaterBackground();
+	}
+
+	@Override
+	public void way(PackedWay way) {
+		renderWay(way);
+	}
+
 	private void clearLists() {
 		for (int i = this.ways.size() - 1; i >= 0; --i) {
 			List<List<ShapePaintContainer>> innerWayList = this.ways.get(i);
@@ -322,7 +344,7 @@ public class DatabaseRenderer implements RenderCallback {
 
 	private RenderTheme getRenderTheme(XmlRenderTheme jobTheme, DisplayModel displayModel) {
 		try {
-			return RenderThemeHandler.getRenderTheme(this.graphicFactory, displayModel, jobTheme);
+			return RenderThemeCache.getRenderTheme(this.graphicFactory, displayModel, jobTheme);
 		} catch (ParserConfigurationException e) {
 			LOGGER.log(Level.SEVERE, null, e);
 		} catch (SAXException e) {
@@ -333,59 +355,68 @@ public class DatabaseRenderer implements RenderCallback {
 		return null;
 	}
 
-	private void processReadMapData(MapReadResult mapReadResult) {
-		if (mapReadResult == null) {
-			return;
-		}
-
-		for (PointOfInterest pointOfInterest : mapReadResult.pointOfInterests) {
-			renderPointOfInterest(pointOfInterest);
+	private TagFilter getTagFilter(byte zoomLevel) {
+		if (zoomLevel < 0 || zoomLevel > ZOOM_MAX) {
+			return null;
 		}
 
-		for (Way way : mapReadResult.ways) {
-			renderWay(way);
+		MapFileInfo mapFileInfo = this.mapDatabase.getMapFileInfo();
+		if (mapFileInfo != this.tagFilterMapFileInfo) {
+			// the filters depend on the tag IDs of the currently opened map file
+			Arrays.fill(this.tagFilters, null);
+			this.tagFilterMapFileInfo = mapFileInfo;
 		}
 
-		if (mapReadResult.isWater) {
-			renderWaterBackground();
+		TagFilter tagFilter = this.tagFilters[zoomLevel];
+		if (tagFilter == null) {
+			tagFilter = this.renderTheme.createTagFilter(mapFileInfo, zoomLevel);
+			this.tagFilters[zoomLevel] = tagFilter;
 		}
+		return tagFilter;
 	}
 
 	private void renderPointOfInterest(PointOfInterest pointOfInterest) {
 		this.drawingLayers = this.ways.get(getValidLayer(pointOfInterest.layer));
 		this.poiPosition = scaleLatLong(pointOfInterest.position, this.currentRendererJob.displayModel.getTileSize());
-		this.renderTheme.matchNode(this, pointOfInterest.tags, this.currentRendererJob.tile.zoomLevel);
+		this.renderTheme.matchNode(this, pointOfInterest.tags, this.currentRendererJob.tile.zoomLevel,
+				this.scaleStrokeWidth, this.currentRendererJob.textScale);
 	}
 
 	private void renderWaterBackground() {
 		this.drawingLayers = this.ways.get(0);
 		this.coordinates = getTilePixelCoordinates(this.currentRendererJob.displayModel.getTileSize());
 		this.shapeContainer = new PolylineContainer(this.coordinates);
-		this.renderTheme.matchClosedWay(this, Arrays.asList(TAG_NATURAL_WATER), this.currentRendererJob.tile.zoomLevel);
+		this.renderTheme.matchClosedWay(this, Arrays.asList(TAG_NATURAL_WATER), this.currentRendererJob.tile.zoomLevel,
+				this.scaleStrokeWidth, this.currentRendererJob.textScale);
 	}
 
-	private void renderWay(Way way) {
-		this.drawingLayers = this.ways.get(getValidLayer(way.layer));
+	private void renderWay(PackedWay way) {
+		this.drawingLayers = this.ways.get(getValidLayer(way.getLayer()));
 		// TODO what about the label position?
 
-		LatLong[][] latLongs = way.latLongs;
-		this.coordinates = new Point[latLongs.length][];
+		// the way nodes have already been projected into the pixel space of the tile by the map database
+		byte zoomLevel = this.currentRendererJob.tile.zoomLevel;
+		float[] pixelCoordinates = way.getPixelCoordinates();
+		this.coordinates = new Point[way.getNumberOfSegments()][];
 		for (int i = 0; i < this.coordinates.length; ++i) {
-			if (latLongs[i] == null) {
+			int start = way.getSegmentStart(i);
+			int end = way.getSegmentEnd(i);
+			if (start == end) {
 				return;
 			}
-			this.coordinates[i] = new Point[latLongs[i].length];
-			for (int j = 0; j < this.coordinates[i].length; ++j) {
-				this.coordinates[i][j] = scaleLatLong(latLongs[i][j],
-						this.currentRendererJob.displayModel.getTileSize());
+			this.coordinates[i] = new Point[end - start];
+			for (int j = start; j < end; ++j) {
+				this.coordinates[i][j - start] = new Point(pixelCoordinates[j << 1], pixelCoordinates[(j << 1) + 1]);
 			}
 		}
 		this.shapeContainer = new PolylineContainer(this.coordinates);
 
 		if (GeometryUtils.isClosedWay(this.coordinates[0])) {
-			this.renderTheme.matchClosedWay(this, way.tags, this.currentRendererJob.tile.zoomLevel);
+			this.renderTheme.matchClosedWay(this, way.getTags(), zoomLevel, this.scaleStrokeWidth,
+					this.currentRendererJob.textScale);
 		} else {
-			this.renderTheme.matchLinearWay(this, way.tags, this.currentRendererJob.tile.zoomLevel);
+			this.renderTheme.matchLinearWay(this, way.getTags(), zoomLevel, this.scaleStrokeWidth,
+					this.currentRendererJob.textScale);
 		}
 	}
 
@@ -413,6 +444,6 @@ public class DatabaseRenderer implements RenderCallback {
 	 */
 	private void setScaleStrokeWidth(byte zoomLevel) {
 		int zoomLevelDiff = Math.max(zoomLevel - STROKE_MIN_ZOOM_LEVEL, 0);
-		this.renderTheme.scaleStrokeWidth((float) Math.pow(STROKE_INCREASE, zoomLevelDiff));
+		this.scaleStrokeWidth = (float) Math.pow(STROKE_INCREASE, zoomLevelDiff);
 	}
 }
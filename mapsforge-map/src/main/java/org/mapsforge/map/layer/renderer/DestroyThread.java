@@ -40,7 +40,9 @@ class DestroyThread extends Thread {
 			interrupt();
 		} finally {
 			this.renderer.destroy();
-			this.mapDatabase.closeFile();
+			if (this.mapDatabase != null) {
+				this.mapDatabase.closeFile();
+			}
 		}
 	}
 }
@@ -29,19 +29,47 @@ import org.mapsforge.map.reader.header.FileOpenResult;
 import org.mapsforge.map.rendertheme.XmlRenderTheme;
 
 public class TileRendererLayer extends TileLayer<RendererJob> {
+	/**
+	 * Number of decoded names, house numbers and references which are reused across adjacent tiles.
+	 */
+	private static final int TAG_CACHE_CAPACITY = 1024;
 
 	private final DatabaseRenderer databaseRenderer;
 	private final MapDatabase mapDatabase;
 	private File mapFile;
 	private MapWorker mapWorker;
+	private final boolean ownsMapDatabase;
 	private float textScale;
 	private XmlRenderTheme xmlRenderTheme;
 
 	public TileRendererLayer(TileCache tileCache, MapViewPosition mapViewPosition, boolean isTransparent,
 			GraphicFactory graphicFactory) {
+		this(tileCache, new MapDatabase(), true, mapViewPosition, isTransparent, graphicFactory);
+	}
+
+	/**
+	 * Creates a layer which renders from a MapDatabase that is shared with other layers. The MapDatabase must have been
+	 * opened in a thread-safe {@link org.mapsforge.map.reader.FileAccessMode} by the caller and is not closed when
+	 * this layer is destroyed. {@link #setMapFile(File)} must still be called with the opened map file to identify the
+	 * rendered tiles.
+	 */
+	public TileRendererLayer(TileCache tileCache, MapDatabase mapDatabase, MapViewPosition mapViewPosition,
+			boolean isTransparent, GraphicFactory graphicFactory) {
+		this(tileCache, mapDatabase, false, mapViewPosition, isTransparent, graphicFactory);
+	}
+
+	private TileRendererLayer(TileCache tileCache, MapDatabase mapDatabase, boolean ownsMapDatabase,
+			MapViewPosition mapViewPosition, boolean isTransparent, GraphicFactory graphicFactory) {
 		super(tileCache, mapViewPosition, graphicFactory.createMatrix(), isTransparent);
 
-		this.mapDatabase = new MapDatabase();
+		if (mapDatabase == null) {
+			throw new IllegalArgumentException("mapDatabase must not be null");
+		}
+		this.mapDatabase = mapDatabase;
+		this.ownsMapDatabase = ownsMapDatabase;
+		if (ownsMapDatabase) {
+			this.mapDatabase.setTagCacheCapacity(TAG_CACHE_CAPACITY);
+		}
 		this.databaseRenderer = new DatabaseRenderer(this.mapDatabase, graphicFactory);
 
 		this.textScale = 1;
@@ -65,7 +93,8 @@ public class TileRendererLayer extends TileLayer<RendererJob> {
 
 	@Override
 	public void onDestroy() {
-		new DestroyThread(this.mapWorker, this.mapDatabase, this.databaseRenderer).start();
+		MapDatabase ownedMapDatabase = this.ownsMapDatabase ? this.mapDatabase : null;
+		new DestroyThread(this.mapWorker, ownedMapDatabase, this.databaseRenderer).start();
 		super.onDestroy();
 	}
 
@@ -85,6 +114,10 @@ public class TileRendererLayer extends TileLayer<RendererJob> {
 
 	public void setMapFile(File mapFile) {
 		this.mapFile = mapFile;
+		if (!this.ownsMapDatabase) {
+			// a shared map database is opened by its owner
+			return;
+		}
 		FileOpenResult result = this.mapDatabase.openFile(mapFile);
 		if (!result.isSuccess()) {
 			throw new IllegalArgumentException(result.getErrorMessage());
@@ -26,14 +26,17 @@ import org.mapsforge.map.rendertheme.RenderCallback;
 public class Area implements RenderInstruction {
 	private final Paint fill;
 	private final int level;
-	private final Paint stroke;
-	private final float strokeWidth;
+	private final ScaledPaint stroke;
 
 	Area(AreaBuilder areaBuilder) {
 		this.fill = areaBuilder.fill;
 		this.level = areaBuilder.level;
-		this.stroke = areaBuilder.stroke;
-		this.strokeWidth = areaBuilder.strokeWidth;
+		if (areaBuilder.stroke == null) {
+			this.stroke = null;
+		} else {
+			this.stroke = ScaledPaint.forStrokeWidth(areaBuilder.graphicFactory, areaBuilder.stroke,
+					areaBuilder.strokeWidth);
+		}
 	}
 
 	@Override
@@ -42,25 +45,15 @@ public class Area implements RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
 		// do nothing
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
-		renderCallback.renderArea(this.fill, this.stroke, this.level);
-	}
-
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		if (this.stroke != null) {
-			this.stroke.setStrokeWidth(this.strokeWidth * scaleFactor);
-		}
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		// do nothing
+	public void renderWay(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
+		Paint scaledStroke = this.stroke == null ? null : this.stroke.get(strokeScaleFactor);
+		renderCallback.renderArea(this.fill, scaledStroke, this.level);
 	}
-
 }
@@ -38,12 +38,14 @@ public class AreaBuilder {
 	static final String STROKE_WIDTH = "stroke-width";
 
 	final Paint fill;
+	final GraphicFactory graphicFactory;
 	final int level;
 	final Paint stroke;
 	float strokeWidth;
 
 	public AreaBuilder(GraphicFactory graphicFactory, DisplayModel displayModel, String elementName,
 			Attributes attributes, int level, String relativePathPrefix) throws IOException, SAXException {
+		this.graphicFactory = graphicFactory;
 		this.level = level;
 
 		this.fill = graphicFactory.createPaint();
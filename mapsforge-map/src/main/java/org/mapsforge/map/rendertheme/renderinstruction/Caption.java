@@ -16,7 +16,6 @@ package org.mapsforge.map.rendertheme.renderinstruction;
 
 import java.util.List;
 
-import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
 
@@ -25,16 +24,16 @@ import org.mapsforge.map.rendertheme.RenderCallback;
  */
 public class Caption implements RenderInstruction {
 	private final float dy;
-	private final Paint fill;
-	private final float fontSize;
-	private final Paint stroke;
+	private final ScaledPaint fill;
+	private final ScaledPaint stroke;
 	private final TextKey textKey;
 
 	Caption(CaptionBuilder captionBuilder) {
 		this.dy = captionBuilder.dy;
-		this.fill = captionBuilder.fill;
-		this.fontSize = captionBuilder.fontSize;
-		this.stroke = captionBuilder.stroke;
+		this.fill = ScaledPaint.forTextSize(captionBuilder.graphicFactory, captionBuilder.fill,
+				captionBuilder.fontSize);
+		this.stroke = ScaledPaint.forTextSize(captionBuilder.graphicFactory, captionBuilder.stroke,
+				captionBuilder.fontSize);
 		this.textKey = captionBuilder.textKey;
 	}
 
@@ -44,32 +43,24 @@ public class Caption implements RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
 		String caption = this.textKey.getValue(tags);
 		if (caption == null) {
 			return;
 		}
-		renderCallback.renderPointOfInterestCaption(caption, this.dy, this.fill, this.stroke);
+		renderCallback.renderPointOfInterestCaption(caption, this.dy, this.fill.get(textScaleFactor),
+				this.stroke.get(textScaleFactor));
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderWay(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
 		String caption = this.textKey.getValue(tags);
 		if (caption == null) {
 			return;
 		}
-		renderCallback.renderAreaCaption(caption, this.dy, this.fill, this.stroke);
+		renderCallback.renderAreaCaption(caption, this.dy, this.fill.get(textScaleFactor),
+				this.stroke.get(textScaleFactor));
 	}
-
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		// do nothing
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		this.fill.setTextSize(this.fontSize * scaleFactor);
-		this.stroke.setTextSize(this.fontSize * scaleFactor);
-	}
-
 }
@@ -27,24 +27,19 @@ public class Circle implements RenderInstruction {
 	private final Paint fill;
 	private final int level;
 	private final float radius;
-	private float renderRadius;
 	private final boolean scaleRadius;
-	private final Paint stroke;
-	private final float strokeWidth;
+	private final ScaledPaint stroke;
 
 	Circle(CircleBuilder circleBuilder) {
 		this.fill = circleBuilder.fill;
 		this.level = circleBuilder.level;
 		this.radius = circleBuilder.radius.floatValue();
 		this.scaleRadius = circleBuilder.scaleRadius;
-		this.stroke = circleBuilder.stroke;
-		this.strokeWidth = circleBuilder.strokeWidth;
-
-		if (!this.scaleRadius) {
-			this.renderRadius = this.radius;
-			if (this.stroke != null) {
-				this.stroke.setStrokeWidth(this.strokeWidth);
-			}
+		if (circleBuilder.stroke == null) {
+			this.stroke = null;
+		} else {
+			this.stroke = ScaledPaint.forStrokeWidth(circleBuilder.graphicFactory, circleBuilder.stroke,
+					circleBuilder.strokeWidth);
 		}
 	}
 
@@ -54,27 +49,17 @@ public class Circle implements RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
-		renderCallback.renderPointOfInterestCircle(this.renderRadius, this.fill, this.stroke, this.level);
-	}
-
-	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
-		// do nothing
-	}
-
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		if (this.scaleRadius) {
-			this.renderRadius = this.radius * scaleFactor;
-			if (this.stroke != null) {
-				this.stroke.setStrokeWidth(this.strokeWidth * scaleFactor);
-			}
-		}
+	public void renderNode(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
+		// a circle without a scaled radius always uses its unscaled stroke width
+		float scaleFactor = this.scaleRadius ? strokeScaleFactor : 1;
+		Paint scaledStroke = this.stroke == null ? null : this.stroke.get(scaleFactor);
+		renderCallback.renderPointOfInterestCircle(this.radius * scaleFactor, this.fill, scaledStroke, this.level);
 	}
 
 	@Override
-	public void scaleTextSize(float scaleFactor) {
+	public void renderWay(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
 		// do nothing
 	}
 }
@@ -35,6 +35,7 @@ public class CircleBuilder {
 	static final String STROKE_WIDTH = "stroke-width";
 
 	final Paint fill;
+	final GraphicFactory graphicFactory;
 	final int level;
 	Float radius;
 	boolean scaleRadius;
@@ -43,6 +44,7 @@ public class CircleBuilder {
 
 	public CircleBuilder(GraphicFactory graphicFactory, DisplayModel displayModel, String elementName,
 			Attributes attributes, int level) throws SAXException {
+		this.graphicFactory = graphicFactory;
 		this.level = level;
 
 		this.fill = graphicFactory.createPaint();
@@ -16,7 +16,6 @@ package org.mapsforge.map.rendertheme.renderinstruction;
 
 import java.util.List;
 
-import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
 
@@ -25,13 +24,12 @@ import org.mapsforge.map.rendertheme.RenderCallback;
  */
 public class Line implements RenderInstruction {
 	private final int level;
-	private final Paint stroke;
-	private final float strokeWidth;
+	private final ScaledPaint stroke;
 
 	Line(LineBuilder lineBuilder) {
 		this.level = lineBuilder.level;
-		this.stroke = lineBuilder.stroke;
-		this.strokeWidth = lineBuilder.strokeWidth;
+		this.stroke = ScaledPaint.forStrokeWidth(lineBuilder.graphicFactory, lineBuilder.stroke,
+				lineBuilder.strokeWidth);
 	}
 
 	@Override
@@ -40,22 +38,14 @@ public class Line implements RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
 		// do nothing
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
-		renderCallback.renderWay(this.stroke, this.level);
-	}
-
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		this.stroke.setStrokeWidth(this.strokeWidth * scaleFactor);
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		// do nothing
+	public void renderWay(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
+		renderCallback.renderWay(this.stroke.get(strokeScaleFactor), this.level);
 	}
 }
@@ -50,12 +50,14 @@ public class LineBuilder {
 		return dashIntervals;
 	}
 
+	final GraphicFactory graphicFactory;
 	final int level;
 	final Paint stroke;
 	float strokeWidth;
 
 	public LineBuilder(GraphicFactory graphicFactory, DisplayModel displayModel, String elementName,
 			Attributes attributes, int level, String relativePathPrefix) throws IOException, SAXException {
+		this.graphicFactory = graphicFactory;
 		this.level = level;
 
 		this.stroke = graphicFactory.createPaint();
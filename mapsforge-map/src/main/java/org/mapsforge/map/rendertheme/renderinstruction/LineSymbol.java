@@ -40,22 +40,14 @@ public class LineSymbol implements RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
 		// do nothing
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderWay(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
 		renderCallback.renderWaySymbol(this.bitmap, this.alignCenter, this.repeat);
 	}
-
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		// do nothing
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		// do nothing
-	}
 }
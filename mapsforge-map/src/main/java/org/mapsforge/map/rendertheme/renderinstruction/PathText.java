@@ -16,7 +16,6 @@ package org.mapsforge.map.rendertheme.renderinstruction;
 
 import java.util.List;
 
-import org.mapsforge.core.graphics.Paint;
 import org.mapsforge.core.model.Tag;
 import org.mapsforge.map.rendertheme.RenderCallback;
 
@@ -24,15 +23,15 @@ import org.mapsforge.map.rendertheme.RenderCallback;
  * Represents a text along a polyline on the map.
  */
 public class PathText implements RenderInstruction {
-	private final Paint fill;
-	private final float fontSize;
-	private final Paint stroke;
+	private final ScaledPaint fill;
+	private final ScaledPaint stroke;
 	private final TextKey textKey;
 
 	PathText(PathTextBuilder pathTextBuilder) {
-		this.fill = pathTextBuilder.fill;
-		this.fontSize = pathTextBuilder.fontSize;
-		this.stroke = pathTextBuilder.stroke;
+		this.fill = ScaledPaint.forTextSize(pathTextBuilder.graphicFactory, pathTextBuilder.fill,
+				pathTextBuilder.fontSize);
+		this.stroke = ScaledPaint.forTextSize(pathTextBuilder.graphicFactory, pathTextBuilder.stroke,
+				pathTextBuilder.fontSize);
 		this.textKey = pathTextBuilder.textKey;
 	}
 
@@ -42,27 +41,18 @@ public class PathText implements RenderInstruction {
 	}
 
 	@Override
-	public void renderNode(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderNode(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
 		// do nothing
 	}
 
 	@Override
-	public void renderWay(RenderCallback renderCallback, List<Tag> tags) {
+	public void renderWay(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor,
+			float textScaleFactor) {
 		String caption = this.textKey.getValue(tags);
 		if (caption == null) {
 			return;
 		}
-		renderCallback.renderWayText(caption, this.fill, this.stroke);
-	}
-
-	@Override
-	public void scaleStrokeWidth(float scaleFactor) {
-		// do nothing
-	}
-
-	@Override
-	public void scaleTextSize(float scaleFactor) {
-		this.fill.setTextSize(this.fontSize * scaleFactor);
-		this.stroke.setTextSize(this.fontSize * scaleFactor);
+		renderCallback.renderWayText(caption, this.fill.get(textScaleFactor), this.stroke.get(textScaleFactor));
 	}
 }
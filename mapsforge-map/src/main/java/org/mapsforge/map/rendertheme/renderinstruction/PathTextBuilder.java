@@ -42,11 +42,13 @@ public class PathTextBuilder {
 
 	final Paint fill;
 	float fontSize;
+	final GraphicFactory graphicFactory;
 	final Paint stroke;
 	TextKey textKey;
 
 	public PathTextBuilder(GraphicFactory graphicFactory, DisplayModel displayModel, String elementName,
 			Attributes attributes) throws SAXException {
+		this.graphicFactory = graphicFactory;
 		this.fill = graphicFactory.createPaint();
 		this.fill.setColor(Color.BLACK);
 		this.fill.setStyle(Style.FILL);
@@ -31,30 +31,22 @@ public interface RenderInstruction {
 	 *            a reference to the receiver of all render callbacks.
 	 * @param tags
 	 *            the tags of the node.
+	 * @param strokeScaleFactor
+	 *            the factor by which stroke widths are scaled.
+	 * @param textScaleFactor
+	 *            the factor by which text sizes are scaled.
 	 */
-	void renderNode(RenderCallback renderCallback, List<Tag> tags);
+	void renderNode(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor, float textScaleFactor);
 
 	/**
 	 * @param renderCallback
 	 *            a reference to the receiver of all render callbacks.
 	 * @param tags
 	 *            the tags of the way.
+	 * @param strokeScaleFactor
+	 *            the factor by which stroke widths are scaled.
+	 * @param textScaleFactor
+	 *            the factor by which text sizes are scaled.
 	 */
-	void renderWay(RenderCallback renderCallback, List<Tag> tags);
-
-	/**
-	 * Scales the stroke width of this RenderInstruction by the given factor.
-	 * 
-	 * @param scaleFactor
-	 *            the factor by which the stroke width should be scaled.
-	 */
-	void scaleStrokeWidth(float scaleFactor);
-
-	/**
-	 * Scales the text size of this RenderInstruction by the given factor.
-	 * 
-	 * @param scaleFactor
-	 *            the factor by which the text size should be scaled.
-	 */
-	void scaleTextSize(float scaleFactor);
+	void renderWay(RenderCallback renderCallback, List<Tag> tags, float strokeScaleFactor, float textScaleFactor);
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.renderinstruction;
+
+import java.util.Arrays;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.Paint;
+
+/**
+ * Lazily creates scaled copies of a template paint. A copy is never modified after it has been created, so it can be
+ * used by several render threads at the same time, and switching between scale factors costs only a lookup.
+ */
+final class ScaledPaint {
+	private static final class Variant {
+		final Paint paint;
+		final float scaleFactor;
+
+		Variant(float scaleFactor, Paint paint) {
+			this.scaleFactor = scaleFactor;
+			this.paint = paint;
+		}
+	}
+
+	/**
+	 * Maximum number of scaled copies, the oldest copy is discarded when a new one is needed.
+	 */
+	private static final int VARIANTS_MAX = 32;
+
+	private static Paint find(Variant[] variants, float scaleFactor) {
+		for (int i = 0; i < variants.length; ++i) {
+			if (Float.compare(variants[i].scaleFactor, scaleFactor) == 0) {
+				return variants[i].paint;
+			}
+		}
+		return null;
+	}
+
+	static ScaledPaint forStrokeWidth(GraphicFactory graphicFactory, Paint paint, float strokeWidth) {
+		return new ScaledPaint(graphicFactory, paint, strokeWidth, false);
+	}
+
+	static ScaledPaint forTextSize(GraphicFactory graphicFactory, Paint paint, float textSize) {
+		return new ScaledPaint(graphicFactory, paint, textSize, true);
+	}
+
+	private final GraphicFactory graphicFactory;
+	private final Paint paint;
+	private final float size;
+	private final boolean textSize;
+	private volatile Variant[] variants = new Variant[0];
+
+	private ScaledPaint(GraphicFactory graphicFactory, Paint paint, float size, boolean textSize) {
+		this.graphicFactory = graphicFactory;
+		this.paint = paint;
+		this.size = size;
+		this.textSize = textSize;
+	}
+
+	/**
+	 * @param scaleFactor
+	 *            the factor by which the stroke width or text size of the template paint is scaled.
+	 * @return the scaled copy of the template paint, which must not be modified.
+	 */
+	Paint get(float scaleFactor) {
+		Paint scaledPaint = find(this.variants, scaleFactor);
+		if (scaledPaint != null) {
+			return scaledPaint;
+		}
+
+		synchronized (this) {
+			Variant[] currentVariants = this.variants;
+			scaledPaint = find(currentVariants, scaleFactor);
+			if (scaledPaint != null) {
+				return scaledPaint;
+			}
+
+			scaledPaint = this.graphicFactory.createPaint(this.paint);
+			if (this.textSize) {
+				scaledPaint.setTextSize(this.size * scaleFactor);
+			} else {
+				scaledPaint.setStrokeWidth(this.size * scaleFactor);
+			}
+
+			Variant[] newVariants;
+			if (currentVariants.length < VARIANTS_MAX) {
+				newVariants = Arrays.copyOf(currentVariants, currentVariants.length + 1);
+			} else {
+				newVariants = new Variant[VARIANTS_MAX];
+				System.arraycopy(currentVariants, 1, newVariants, 0, VARIANTS_MAX - 1);
+			}
+			newVariants[newVariants.length - 1] = new Variant(scaleFactor, scaledPaint);
+			this.variants = newVariants;
+			return scaledPaint;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mapsforge.core.util.LRUCache;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+
+/**
+ * A thread-safe cache for the render instructions which match a {@link MatchingCacheKey}.
+ * <p>
+ * The cache is split into segments which are locked independently, so that concurrent render threads rarely wait for
+ * each other. The capacity is divided evenly among the segments and each segment evicts its least recently used
+ * entries, so an entry may be evicted before the whole cache is full.
+ */
+class MatchingCache {
+	private static final int NUMBER_OF_SEGMENTS = 16;
+
+	private final List<LRUCache<MatchingCacheKey, List<RenderInstruction>>> segments;
+
+	/**
+	 * @param capacity
+	 *            the maximum number of entries in the cache, zero to disable the cache.
+	 * @throws IllegalArgumentException
+	 *             if the capacity is negative.
+	 */
+	MatchingCache(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+		}
+
+		int segmentCapacity = (capacity + NUMBER_OF_SEGMENTS - 1) / NUMBER_OF_SEGMENTS;
+		this.segments = new ArrayList<>(NUMBER_OF_SEGMENTS);
+		for (int i = 0; i < NUMBER_OF_SEGMENTS; ++i) {
+			this.segments.add(new LRUCache<MatchingCacheKey, List<RenderInstruction>>(segmentCapacity));
+		}
+	}
+
+	void clear() {
+		for (int i = 0; i < NUMBER_OF_SEGMENTS; ++i) {
+			LRUCache<MatchingCacheKey, List<RenderInstruction>> segment = this.segments.get(i);
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	List<RenderInstruction> get(MatchingCacheKey matchingCacheKey) {
+		LRUCache<MatchingCacheKey, List<RenderInstruction>> segment = getSegment(matchingCacheKey);
+		synchronized (segment) {
+			return segment.get(matchingCacheKey);
+		}
+	}
+
+	void put(MatchingCacheKey matchingCacheKey, List<RenderInstruction> matchingList) {
+		LRUCache<MatchingCacheKey, List<RenderInstruction>> segment = getSegment(matchingCacheKey);
+		synchronized (segment) {
+			segment.put(matchingCacheKey, matchingList);
+		}
+	}
+
+	int size() {
+		int size = 0;
+		for (int i = 0; i < NUMBER_OF_SEGMENTS; ++i) {
+			LRUCache<MatchingCacheKey, List<RenderInstruction>> segment = this.segments.get(i);
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	private LRUCache<MatchingCacheKey, List<RenderInstruction>> getSegment(MatchingCacheKey matchingCacheKey) {
+		// spread the high bits of the hash code, the low bits of similar keys are often equal
+		int hashCode = matchingCacheKey.hashCode();
+		hashCode ^= hashCode >>> 16;
+		return this.segments.get(hashCode & (NUMBER_OF_SEGMENTS - 1));
+	}
+}
@@ -15,6 +15,7 @@
 package org.mapsforge.map.rendertheme.rule;
 
 import java.util.List;
+import java.util.Set;
 
 import org.mapsforge.core.model.Tag;
 
@@ -27,6 +28,12 @@ class NegativeRule extends Rule {
 		this.attributeMatcher = attributeMatcher;
 	}
 
+	@Override
+	boolean addTagPatterns(Set<Tag> tagPatterns) {
+		// a negative rule may also match elements without any of its tags
+		return false;
+	}
+
 	@Override
 	boolean matchesNode(List<Tag> tags, byte zoomLevel) {
 		return this.zoomMin <= zoomLevel && this.zoomMax >= zoomLevel && this.elementMatcher.matches(Element.NODE)
@@ -15,6 +15,7 @@
 package org.mapsforge.map.rendertheme.rule;
 
 import java.util.List;
+import java.util.Set;
 
 import org.mapsforge.core.model.Tag;
 
@@ -29,6 +30,22 @@ class PositiveRule extends Rule {
 		this.valueMatcher = valueMatcher;
 	}
 
+	@Override
+	boolean addTagPatterns(Set<Tag> tagPatterns) {
+		if (this.keyMatcher instanceof KeyMatcher) {
+			for (String key : ((KeyMatcher) this.keyMatcher).keys) {
+				tagPatterns.add(new Tag(key, null));
+			}
+			return true;
+		} else if (this.valueMatcher instanceof ValueMatcher) {
+			for (String value : ((ValueMatcher) this.valueMatcher).values) {
+				tagPatterns.add(new Tag(null, value));
+			}
+			return true;
+		}
+		return false;
+	}
+
 	@Override
 	boolean matchesNode(List<Tag> tags, byte zoomLevel) {
 		return this.zoomMin <= zoomLevel && this.zoomMax >= zoomLevel && this.elementMatcher.matches(Element.NODE)
@@ -15,16 +15,24 @@
 package org.mapsforge.map.rendertheme.rule;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.mapsforge.core.model.Tag;
-import org.mapsforge.core.util.LRUCache;
+import org.mapsforge.map.reader.TagFilter;
+import org.mapsforge.map.reader.header.MapFileInfo;
 import org.mapsforge.map.rendertheme.RenderCallback;
 import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
 
 /**
  * A RenderTheme defines how ways and nodes are drawn.
+ * <p>
+ * A RenderTheme is never modified after it has been created and can be shared by several renderers, see
+ * {@link RenderThemeCache}. Stroke widths and text sizes are scaled per match, so concurrent jobs may render at
+ * different zoom levels and text scales.
  */
 public class RenderTheme {
 	private static final int MATCHING_CACHE_SIZE = 512;
@@ -33,16 +41,38 @@ public class RenderTheme {
 	private final float baseTextSize;
 	private int levels;
 	private final int mapBackground;
-	private final LRUCache<MatchingCacheKey, List<RenderInstruction>> matchingCache;
+	private final MatchingCache matchingCache;
+	private volatile MatchingCache nodeMatchingCache;
+	private final AtomicLong nodeMatchingCacheHits = new AtomicLong();
+	private final AtomicLong nodeMatchingCacheMisses = new AtomicLong();
+	private RuleIndex[] nodeRuleIndexes;
 	private final AtomicInteger refCount = new AtomicInteger();
-	private final ArrayList<Rule> rulesList; // NOPMD we need specific interface
+	final ArrayList<Rule> rulesList; // NOPMD we need specific interface
+	private RuleIndex[] wayRuleIndexes;
 
 	RenderTheme(RenderThemeBuilder renderThemeBuilder) {
 		this.baseStrokeWidth = renderThemeBuilder.baseStrokeWidth;
 		this.baseTextSize = renderThemeBuilder.baseTextSize;
 		this.mapBackground = renderThemeBuilder.mapBackground;
 		this.rulesList = new ArrayList<>();
-		this.matchingCache = new LRUCache<>(MATCHING_CACHE_SIZE);
+		this.matchingCache = new MatchingCache(MATCHING_CACHE_SIZE);
+		this.nodeMatchingCache = new MatchingCache(MATCHING_CACHE_SIZE);
+	}
+
+	/**
+	 * Creates a filter which lets the map database skip all POIs and ways that cannot be rendered by this RenderTheme
+	 * at the given zoom level. The filter may accept more elements than necessary but never rejects an element which
+	 * would be rendered.
+	 * 
+	 * @param mapFileInfo
+	 *            the metadata of the map file for which the filter is created.
+	 * @param zoomLevel
+	 *            the zoom level at which the elements are rendered.
+	 * @return the filter for the given map file and zoom level.
+	 */
+	public TagFilter createTagFilter(MapFileInfo mapFileInfo, byte zoomLevel) {
+		return new TagFilter(mapFileInfo, collectTagPatterns(Element.NODE, zoomLevel),
+				collectTagPatterns(Element.WAY, zoomLevel));
 	}
 
 	/**
@@ -51,6 +81,7 @@ public class RenderTheme {
 	public void destroy() {
 		if (this.refCount.decrementAndGet() < 0) {
 			this.matchingCache.clear();
+			this.nodeMatchingCache.clear();
 			for (Rule r : this.rulesList) {
 				r.destroy();
 			}
@@ -71,6 +102,20 @@ public class RenderTheme {
 		return this.mapBackground;
 	}
 
+	/**
+	 * @return the number of node matches which have been answered from the node matching cache.
+	 */
+	public long getNodeMatchingCacheHits() {
+		return this.nodeMatchingCacheHits.get();
+	}
+
+	/**
+	 * @return the number of node matches which had to walk the rules of this RenderTheme.
+	 */
+	public long getNodeMatchingCacheMisses() {
+		return this.nodeMatchingCacheMisses.get();
+	}
+
 	public void incrementRefCount() {
 		this.refCount.incrementAndGet();
 	}
@@ -84,9 +129,14 @@ public class RenderTheme {
 	 *            the tags of the way.
 	 * @param zoomLevel
 	 *            the zoom level at which the way should be matched.
+	 * @param strokeScaleFactor
+	 *            the factor by which the stroke widths of the matching render instructions are scaled.
+	 * @param textScaleFactor
+	 *            the factor by which the text sizes of the matching render instructions are scaled.
 	 */
-	public void matchClosedWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel) {
-		matchWay(renderCallback, tags, zoomLevel, Closed.YES);
+	public void matchClosedWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel, float strokeScaleFactor,
+			float textScaleFactor) {
+		matchWay(renderCallback, tags, zoomLevel, Closed.YES, strokeScaleFactor, textScaleFactor);
 	}
 
 	/**
@@ -98,9 +148,14 @@ public class RenderTheme {
 	 *            the tags of the way.
 	 * @param zoomLevel
 	 *            the zoom level at which the way should be matched.
+	 * @param strokeScaleFactor
+	 *            the factor by which the stroke widths of the matching render instructions are scaled.
+	 * @param textScaleFactor
+	 *            the factor by which the text sizes of the matching render instructions are scaled.
 	 */
-	public void matchLinearWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel) {
-		matchWay(renderCallback, tags, zoomLevel, Closed.NO);
+	public void matchLinearWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel, float strokeScaleFactor,
+			float textScaleFactor) {
+		matchWay(renderCallback, tags, zoomLevel, Closed.NO, strokeScaleFactor, textScaleFactor);
 	}
 
 	/**
@@ -112,70 +167,116 @@ public class RenderTheme {
 	 *            the tags of the node.
 	 * @param zoomLevel
 	 *            the zoom level at which the node should be matched.
+	 * @param strokeScaleFactor
+	 *            the factor by which the stroke widths of the matching render instructions are scaled.
+	 * @param textScaleFactor
+	 *            the factor by which the text sizes of the matching render instructions are scaled.
 	 */
-	public void matchNode(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel) {
-		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
-			this.rulesList.get(i).matchNode(renderCallback, tags, zoomLevel);
+	public void matchNode(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel, float strokeScaleFactor,
+			float textScaleFactor) {
+		MatchingCacheKey matchingCacheKey = new MatchingCacheKey(tags, zoomLevel, null);
+
+		MatchingCache cache = this.nodeMatchingCache;
+		List<RenderInstruction> matchingList = cache.get(matchingCacheKey);
+		if (matchingList != null) {
+			// cache hit
+			this.nodeMatchingCacheHits.incrementAndGet();
+		} else {
+			// cache miss
+			this.nodeMatchingCacheMisses.incrementAndGet();
+			matchingList = new ArrayList<RenderInstruction>();
+			RuleIndex.matchNode(this.rulesList, this.nodeRuleIndexes, tags, zoomLevel, matchingList);
+
+			// the caller may reuse the list of tags, so the cached key needs its own copy
+			cache.put(new MatchingCacheKey(new ArrayList<Tag>(tags), zoomLevel, null), matchingList);
 		}
-	}
 
-	/**
-	 * Scales the stroke width of this RenderTheme by the given factor.
-	 * 
-	 * @param scaleFactor
-	 *            the factor by which the stroke width should be scaled.
-	 */
-	public void scaleStrokeWidth(float scaleFactor) {
-		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
-			this.rulesList.get(i).scaleStrokeWidth(scaleFactor * this.baseStrokeWidth);
+		float strokeScale = strokeScaleFactor * this.baseStrokeWidth;
+		float textScale = textScaleFactor * this.baseTextSize;
+		for (int i = 0, n = matchingList.size(); i < n; ++i) {
+			matchingList.get(i).renderNode(renderCallback, tags, strokeScale, textScale);
 		}
 	}
 
 	/**
-	 * Scales the text size of this RenderTheme by the given factor.
+	 * Sets the maximum number of entries in the node matching cache and discards all cached entries. A size of zero
+	 * disables the cache.
 	 * 
-	 * @param scaleFactor
-	 *            the factor by which the text size should be scaled.
+	 * @param nodeMatchingCacheSize
+	 *            the maximum number of cached node matches.
+	 * @throws IllegalArgumentException
+	 *             if the size is negative.
 	 */
-	public void scaleTextSize(float scaleFactor) {
-		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
-			this.rulesList.get(i).scaleTextSize(scaleFactor * this.baseTextSize);
-		}
+	public void setNodeMatchingCacheSize(int nodeMatchingCacheSize) {
+		this.nodeMatchingCache = new MatchingCache(nodeMatchingCacheSize);
 	}
 
 	void addRule(Rule rule) {
 		this.rulesList.add(rule);
 	}
 
+	Set<Tag> collectTagPatterns(Element element, byte zoomLevel) {
+		Set<Tag> tagPatterns = new HashSet<Tag>();
+		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
+			if (!this.rulesList.get(i).collectTagPatterns(element, zoomLevel, false, tagPatterns)) {
+				// elements of this type may be rendered regardless of their tags
+				return null;
+			}
+		}
+		return tagPatterns;
+	}
+
 	void complete() {
 		this.rulesList.trimToSize();
 		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
 			this.rulesList.get(i).onComplete();
 		}
+		this.nodeRuleIndexes = RuleIndex.create(this.rulesList, Element.NODE);
+		this.wayRuleIndexes = RuleIndex.create(this.rulesList, Element.WAY);
+	}
+
+	boolean isDestroyed() {
+		return this.refCount.get() < 0;
 	}
 
 	void setLevels(int levels) {
 		this.levels = levels;
 	}
 
-	private void matchWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel, Closed closed) {
+	/**
+	 * Increments the reference count unless this RenderTheme has already been destroyed.
+	 * 
+	 * @return true if the reference count was incremented, false otherwise.
+	 */
+	boolean tryIncrementRefCount() {
+		while (true) {
+			int count = this.refCount.get();
+			if (count < 0) {
+				return false;
+			} else if (this.refCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private void matchWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel, Closed closed,
+			float strokeScaleFactor, float textScaleFactor) {
 		MatchingCacheKey matchingCacheKey = new MatchingCacheKey(tags, zoomLevel, closed);
 
 		List<RenderInstruction> matchingList = this.matchingCache.get(matchingCacheKey);
-		if (matchingList != null) {
-			// cache hit
-			for (int i = 0, n = matchingList.size(); i < n; ++i) {
-				matchingList.get(i).renderWay(renderCallback, tags);
-			}
-			return;
-		}
+		if (matchingList == null) {
+			// cache miss
+			matchingList = new ArrayList<RenderInstruction>();
+			RuleIndex.matchWay(this.rulesList, this.wayRuleIndexes, tags, zoomLevel, closed, matchingList);
 
-		// cache miss
-		matchingList = new ArrayList<RenderInstruction>();
-		for (int i = 0, n = this.rulesList.size(); i < n; ++i) {
-			this.rulesList.get(i).matchWay(renderCallback, tags, zoomLevel, closed, matchingList);
+			// the caller may reuse the list of tags, so the cached key needs its own copy
+			this.matchingCache.put(new MatchingCacheKey(new ArrayList<Tag>(tags), zoomLevel, closed), matchingList);
 		}
 
-		this.matchingCache.put(matchingCacheKey, matchingList);
+		float strokeScale = strokeScaleFactor * this.baseStrokeWidth;
+		float textScale = textScaleFactor * this.baseTextSize;
+		for (int i = 0, n = matchingList.size(); i < n; ++i) {
+			matchingList.get(i).renderWay(renderCallback, tags, strokeScale, textScale);
+		}
 	}
 }
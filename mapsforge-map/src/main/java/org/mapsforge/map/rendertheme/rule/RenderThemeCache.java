@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.xml.sax.SAXException;
+
+/**
+ * A process-wide cache of parsed render themes. All renderers which use the same {@link XmlRenderTheme},
+ * {@link DisplayModel} and {@link GraphicFactory} share one {@link RenderTheme} instance, so that the theme is parsed
+ * and its symbols are loaded only once.
+ * <p>
+ * Each returned RenderTheme has been reference counted for the caller, who must call {@link RenderTheme#destroy()}
+ * when the theme is no longer needed. A RenderTheme is removed from this cache when its last user has destroyed it.
+ */
+public final class RenderThemeCache {
+	private static class Key {
+		private final DisplayModel displayModel;
+		private final GraphicFactory graphicFactory;
+		private final XmlRenderTheme xmlRenderTheme;
+
+		Key(GraphicFactory graphicFactory, DisplayModel displayModel, XmlRenderTheme xmlRenderTheme) {
+			this.graphicFactory = graphicFactory;
+			this.displayModel = displayModel;
+			this.xmlRenderTheme = xmlRenderTheme;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.displayModel == other.displayModel && this.graphicFactory == other.graphicFactory
+					&& this.xmlRenderTheme.equals(other.xmlRenderTheme);
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + System.identityHashCode(this.displayModel);
+			result = prime * result + System.identityHashCode(this.graphicFactory);
+			result = prime * result + this.xmlRenderTheme.hashCode();
+			return result;
+		}
+	}
+
+	private static final Map<Key, RenderTheme> RENDER_THEMES = new HashMap<Key, RenderTheme>();
+
+	/**
+	 * Returns the shared RenderTheme for the given parameters, parsing it if necessary. Parsing is serialized, so that
+	 * each theme is parsed at most once even if several renderers request it at the same time.
+	 * 
+	 * @param graphicFactory
+	 *            the GraphicFactory which creates the paints and bitmaps of the theme.
+	 * @param displayModel
+	 *            the DisplayModel for which the theme is created.
+	 * @param xmlRenderTheme
+	 *            the XML source of the theme.
+	 * @return the shared RenderTheme, which must be destroyed by the caller when it is no longer needed.
+	 * @throws SAXException
+	 *             if an error occurs while parsing the render theme XML.
+	 * @throws ParserConfigurationException
+	 *             if an error occurs while creating the XML parser.
+	 * @throws IOException
+	 *             if an I/O error occurs while reading the render theme XML.
+	 */
+	public static synchronized RenderTheme getRenderTheme(GraphicFactory graphicFactory, DisplayModel displayModel,
+			XmlRenderTheme xmlRenderTheme) throws SAXException, ParserConfigurationException, IOException {
+		removeDestroyedRenderThemes();
+
+		Key key = new Key(graphicFactory, displayModel, xmlRenderTheme);
+		RenderTheme renderTheme = RENDER_THEMES.get(key);
+		if (renderTheme != null && renderTheme.tryIncrementRefCount()) {
+			return renderTheme;
+		}
+
+		renderTheme = RenderThemeHandler.getRenderTheme(graphicFactory, displayModel, xmlRenderTheme);
+		RENDER_THEMES.put(key, renderTheme);
+		return renderTheme;
+	}
+
+	/**
+	 * @return the number of render themes which are currently shared.
+	 */
+	public static synchronized int size() {
+		removeDestroyedRenderThemes();
+		return RENDER_THEMES.size();
+	}
+
+	private static void removeDestroyedRenderThemes() {
+		for (Iterator<RenderTheme> iterator = RENDER_THEMES.values().iterator(); iterator.hasNext();) {
+			if (iterator.next().isDestroyed()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	private RenderThemeCache() {
+		throw new IllegalStateException();
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.util.IOUtils;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.rule.SymbolGraphicFactory.Symbol;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Compiles XML render themes into a binary format which can be loaded without XML parsing and SVG rendering.
+ * <p>
+ * A compiled render theme stores the checksum of its XML source and is only loaded while that checksum matches, so
+ * a modified render theme is never replaced by an outdated compiled version. The rasterized SVG symbols are stored
+ * for the scale factor of the DisplayModel, so a compiled render theme is also outdated if the scale factor changes.
+ */
+public final class RenderThemeCompiler {
+	/**
+	 * Forwards all SAX events to a RenderThemeHandler and records them.
+	 */
+	private static final class RecordingHandler extends DefaultHandler {
+		private final DataOutputStream events;
+		private final ByteArrayOutputStream eventsBuffer = new ByteArrayOutputStream();
+		private final RenderThemeHandler renderThemeHandler;
+		private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+		private final List<String> strings = new ArrayList<String>();
+
+		RecordingHandler(RenderThemeHandler renderThemeHandler) {
+			super();
+			this.renderThemeHandler = renderThemeHandler;
+			this.events = new DataOutputStream(this.eventsBuffer);
+		}
+
+		@Override
+		public void endDocument() throws SAXException {
+			this.renderThemeHandler.endDocument();
+			try {
+				this.events.writeByte(EVENT_END_DOCUMENT);
+			} catch (IOException e) {
+				throw new SAXException(e);
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			this.renderThemeHandler.endElement(uri, localName, qName);
+			try {
+				this.events.writeByte(EVENT_END_ELEMENT);
+				this.events.writeShort(getStringIndex(qName));
+			} catch (IOException e) {
+				throw new SAXException(e);
+			}
+		}
+
+		@Override
+		public void error(SAXParseException exception) {
+			this.renderThemeHandler.error(exception);
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes)
+				throws SAXException {
+			this.renderThemeHandler.startElement(uri, localName, qName, attributes);
+			try {
+				this.events.writeByte(EVENT_START_ELEMENT);
+				this.events.writeShort(getStringIndex(qName));
+				this.events.writeShort(attributes.getLength());
+				for (int i = 0; i < attributes.getLength(); ++i) {
+					this.events.writeShort(getStringIndex(attributes.getQName(i)));
+					this.events.writeShort(getStringIndex(attributes.getValue(i)));
+				}
+			} catch (IOException e) {
+				throw new SAXException(e);
+			}
+		}
+
+		@Override
+		public void warning(SAXParseException exception) {
+			this.renderThemeHandler.warning(exception);
+		}
+
+		void write(DataOutputStream dataOutputStream) throws IOException {
+			dataOutputStream.writeInt(this.strings.size());
+			for (String string : this.strings) {
+				dataOutputStream.writeUTF(string);
+			}
+			this.eventsBuffer.writeTo(dataOutputStream);
+		}
+
+		private int getStringIndex(String string) throws IOException {
+			Integer index = this.stringIndexes.get(string);
+			if (index == null) {
+				if (this.strings.size() > STRINGS_MAX) {
+					throw new IOException("too many different strings: " + this.strings.size());
+				}
+				index = Integer.valueOf(this.strings.size());
+				this.strings.add(string);
+				this.stringIndexes.put(string, index);
+			}
+			return index.intValue();
+		}
+	}
+
+	private static final int EVENT_END_DOCUMENT = 0;
+	private static final int EVENT_END_ELEMENT = 2;
+	private static final int EVENT_START_ELEMENT = 1;
+	private static final int FORMAT_VERSION = 1;
+	private static final Logger LOGGER = Logger.getLogger(RenderThemeCompiler.class.getName());
+	private static final String MAGIC = "mapsforge compiled render theme";
+	private static final int STRINGS_MAX = 65535;
+
+	/**
+	 * Parses the given XML render theme and writes its compiled version to the given output stream. The output stream
+	 * is not closed.
+	 * 
+	 * @return the parsed render theme.
+	 */
+	public static RenderTheme compile(GraphicFactory graphicFactory, DisplayModel displayModel,
+			XmlRenderTheme xmlRenderTheme, OutputStream outputStream) throws SAXException,
+			ParserConfigurationException, IOException {
+		long checksum = getChecksum(xmlRenderTheme);
+		float scaleFactor = displayModel.getScaleFactor();
+		SymbolGraphicFactory symbolGraphicFactory = new SymbolGraphicFactory(graphicFactory, scaleFactor);
+		RenderThemeHandler renderThemeHandler = new RenderThemeHandler(symbolGraphicFactory, displayModel,
+				xmlRenderTheme.getRelativePathPrefix());
+		RecordingHandler recordingHandler = new RecordingHandler(renderThemeHandler);
+		RenderTheme renderTheme = RenderThemeHandler.getRenderTheme(renderThemeHandler, recordingHandler,
+				xmlRenderTheme);
+
+		try {
+			DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+			dataOutputStream.writeUTF(MAGIC);
+			dataOutputStream.writeInt(FORMAT_VERSION);
+			dataOutputStream.writeLong(checksum);
+			dataOutputStream.writeFloat(scaleFactor);
+			dataOutputStream.writeInt(symbolGraphicFactory.symbols.size());
+			for (Map.Entry<Integer, Symbol> entry : symbolGraphicFactory.symbols.entrySet()) {
+				dataOutputStream.writeInt(entry.getKey().intValue());
+				dataOutputStream.writeLong(entry.getValue().checksum);
+				dataOutputStream.writeInt(entry.getValue().bitmap.length);
+				dataOutputStream.write(entry.getValue().bitmap);
+			}
+			recordingHandler.write(dataOutputStream);
+			dataOutputStream.flush();
+			return renderTheme;
+		} catch (IOException e) {
+			renderTheme.destroy();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the render theme for the given XML render theme, using the given file as compiled version. The file is
+	 * loaded if it is up to date and (re)written otherwise. A new compiled version is written to a temporary file in
+	 * the same directory and renamed when it is complete, so that no incomplete file is ever loaded.
+	 */
+	public static RenderTheme getRenderTheme(GraphicFactory graphicFactory, DisplayModel displayModel,
+			XmlRenderTheme xmlRenderTheme, File compiledFile) throws SAXException, ParserConfigurationException,
+			IOException {
+		if (compiledFile.isFile()) {
+			InputStream inputStream = null;
+			try {
+				inputStream = new BufferedInputStream(new FileInputStream(compiledFile));
+				RenderTheme renderTheme = load(graphicFactory, displayModel, xmlRenderTheme, inputStream);
+				if (renderTheme != null) {
+					return renderTheme;
+				}
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "could not load compiled render theme: " + compiledFile, e);
+			} finally {
+				IOUtils.closeQuietly(inputStream);
+			}
+		}
+
+		File temporaryFile = File.createTempFile(compiledFile.getName() + ".part", null, compiledFile
+				.getAbsoluteFile().getParentFile());
+		OutputStream outputStream = null;
+		try {
+			outputStream = new BufferedOutputStream(new FileOutputStream(temporaryFile));
+			RenderTheme renderTheme = compile(graphicFactory, displayModel, xmlRenderTheme, outputStream);
+			outputStream.close();
+			outputStream = null;
+			rename(temporaryFile, compiledFile);
+			return renderTheme;
+		} finally {
+			IOUtils.closeQuietly(outputStream);
+			if (temporaryFile.exists() && !temporaryFile.delete()) {
+				LOGGER.warning("could not delete file: " + temporaryFile);
+			}
+		}
+	}
+
+	/**
+	 * Loads a compiled render theme from the given input stream. The input stream is not closed.
+	 * 
+	 * @return the loaded render theme or null if the compiled render theme is not up to date with the given XML
+	 *         render theme.
+	 */
+	public static RenderTheme load(GraphicFactory graphicFactory, DisplayModel displayModel,
+			XmlRenderTheme xmlRenderTheme, InputStream inputStream) throws SAXException, IOException {
+		DataInputStream dataInputStream = new DataInputStream(inputStream);
+		if (!MAGIC.equals(dataInputStream.readUTF()) || dataInputStream.readInt() != FORMAT_VERSION
+				|| dataInputStream.readLong() != getChecksum(xmlRenderTheme)) {
+			return null;
+		}
+
+		float scaleFactor = dataInputStream.readFloat();
+		if (Float.compare(scaleFactor, displayModel.getScaleFactor()) != 0) {
+			return null;
+		}
+
+		int numberOfSymbols = dataInputStream.readInt();
+		Map<Integer, Symbol> symbols = new HashMap<Integer, Symbol>();
+		for (int i = 0; i < numberOfSymbols; ++i) {
+			Integer hash = Integer.valueOf(dataInputStream.readInt());
+			long checksum = dataInputStream.readLong();
+			byte[] bitmap = new byte[dataInputStream.readInt()];
+			dataInputStream.readFully(bitmap);
+			symbols.put(hash, new Symbol(checksum, bitmap));
+		}
+
+		String[] strings = new String[dataInputStream.readInt()];
+		for (int i = 0; i < strings.length; ++i) {
+			strings[i] = dataInputStream.readUTF();
+		}
+
+		RenderThemeHandler renderThemeHandler = new RenderThemeHandler(new SymbolGraphicFactory(graphicFactory,
+				scaleFactor, symbols), displayModel, xmlRenderTheme.getRelativePathPrefix());
+		try {
+			replay(dataInputStream, strings, renderThemeHandler);
+			renderThemeHandler.renderTheme.incrementRefCount();
+			return renderThemeHandler.renderTheme;
+		} finally {
+			if (renderThemeHandler.renderTheme != null) {
+				renderThemeHandler.renderTheme.destroy();
+			}
+		}
+	}
+
+	private static long getChecksum(XmlRenderTheme xmlRenderTheme) throws IOException {
+		CRC32 crc32 = new CRC32();
+		InputStream inputStream = null;
+		try {
+			inputStream = xmlRenderTheme.getRenderThemeAsStream();
+			byte[] buffer = new byte[8192];
+			int bytesRead;
+			while ((bytesRead = inputStream.read(buffer)) != -1) {
+				crc32.update(buffer, 0, bytesRead);
+			}
+			return crc32.getValue();
+		} finally {
+			IOUtils.closeQuietly(inputStream);
+		}
+	}
+
+	/**
+	 * Replaces the target file by the source file. The compiled render theme is still valid if this fails, so only a
+	 * warning is logged.
+	 */
+	private static void rename(File source, File target) {
+		if (source.renameTo(target)) {
+			return;
+		}
+
+		// some platforms cannot rename a file to an existing file
+		if (target.exists() && !target.delete()) {
+			LOGGER.warning("could not delete file: " + target);
+		} else if (!source.renameTo(target)) {
+			LOGGER.warning("could not rename file: " + source);
+		}
+	}
+
+	private static void replay(DataInputStream dataInputStream, String[] strings,
+			RenderThemeHandler renderThemeHandler) throws SAXException, IOException {
+		while (true) {
+			int event = dataInputStream.readByte();
+			switch (event) {
+				case EVENT_END_DOCUMENT:
+					renderThemeHandler.endDocument();
+					return;
+				case EVENT_END_ELEMENT:
+					renderThemeHandler.endElement(null, null, strings[dataInputStream.readUnsignedShort()]);
+					break;
+				case EVENT_START_ELEMENT:
+					String qName = strings[dataInputStream.readUnsignedShort()];
+					int numberOfAttributes = dataInputStream.readUnsignedShort();
+					AttributesImpl attributes = new AttributesImpl();
+					for (int i = 0; i < numberOfAttributes; ++i) {
+						String name = strings[dataInputStream.readUnsignedShort()];
+						String value = strings[dataInputStream.readUnsignedShort()];
+						attributes.addAttribute("", name, name, "CDATA", value);
+					}
+					renderThemeHandler.startElement(null, null, qName, attributes);
+					break;
+				default:
+					throw new IOException("invalid event: " + event);
+			}
+		}
+	}
+
+	private RenderThemeCompiler() {
+		throw new IllegalStateException();
+	}
+}
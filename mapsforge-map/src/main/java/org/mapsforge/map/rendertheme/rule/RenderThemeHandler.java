@@ -43,6 +43,7 @@ import org.mapsforge.map.rendertheme.renderinstruction.PathTextBuilder;
 import org.mapsforge.map.rendertheme.renderinstruction.Symbol;
 import org.mapsforge.map.rendertheme.renderinstruction.SymbolBuilder;
 import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
@@ -66,8 +67,17 @@ public final class RenderThemeHandler extends DefaultHandler {
 			XmlRenderTheme xmlRenderTheme) throws SAXException, ParserConfigurationException, IOException {
 		RenderThemeHandler renderThemeHandler = new RenderThemeHandler(graphicFactory, displayModel,
 				xmlRenderTheme.getRelativePathPrefix());
+		return getRenderTheme(renderThemeHandler, renderThemeHandler, xmlRenderTheme);
+	}
+
+	/**
+	 * Parses the given XML render theme, passing all SAX events to the given content handler which must forward them
+	 * to the given RenderThemeHandler.
+	 */
+	static RenderTheme getRenderTheme(RenderThemeHandler renderThemeHandler, ContentHandler contentHandler,
+			XmlRenderTheme xmlRenderTheme) throws SAXException, ParserConfigurationException, IOException {
 		XMLReader xmlReader = SAXParserFactory.newInstance().newSAXParser().getXMLReader();
-		xmlReader.setContentHandler(renderThemeHandler);
+		xmlReader.setContentHandler(contentHandler);
 		InputStream inputStream = null;
 		try {
 			inputStream = xmlRenderTheme.getRenderThemeAsStream();
@@ -88,10 +98,10 @@ public final class RenderThemeHandler extends DefaultHandler {
 	private final GraphicFactory graphicFactory;
 	private int level;
 	private final String relativePathPrefix;
-	private RenderTheme renderTheme;
+	RenderTheme renderTheme;
 	private final Stack<Rule> ruleStack = new Stack<Rule>();
 
-	private RenderThemeHandler(GraphicFactory graphicFactory, DisplayModel displayModel, String relativePathPrefix) {
+	RenderThemeHandler(GraphicFactory graphicFactory, DisplayModel displayModel, String relativePathPrefix) {
 		super();
 		this.graphicFactory = graphicFactory;
 		this.displayModel = displayModel;
@@ -18,9 +18,9 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.mapsforge.core.model.Tag;
-import org.mapsforge.map.rendertheme.RenderCallback;
 import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
 
 abstract class Rule {
@@ -31,8 +31,10 @@ abstract class Rule {
 	final ElementMatcher elementMatcher;
 	final byte zoomMax;
 	final byte zoomMin;
-	private final ArrayList<RenderInstruction> renderInstructions; // NOPMD we need specific interface
-	private final ArrayList<Rule> subRules; // NOPMD we need specific interface
+	private RuleIndex[] nodeSubRuleIndexes;
+	final ArrayList<RenderInstruction> renderInstructions; // NOPMD we need specific interface
+	final ArrayList<Rule> subRules; // NOPMD we need specific interface
+	private RuleIndex[] waySubRuleIndexes;
 
 	Rule(RuleBuilder ruleBuilder) {
 		this.closedMatcher = ruleBuilder.closedMatcher;
@@ -52,6 +54,30 @@ abstract class Rule {
 		this.subRules.add(rule);
 	}
 
+	/**
+	 * Adds the tag patterns of this rule and all its sub-rules which may render an element of the given type at the
+	 * given zoom level to the given set.
+	 * 
+	 * @return false if an element of the given type may be rendered regardless of its tags, true otherwise.
+	 */
+	boolean collectTagPatterns(Element element, byte zoomLevel, boolean constrained, Set<Tag> tagPatterns) {
+		if (this.zoomMin > zoomLevel || this.zoomMax < zoomLevel || !this.elementMatcher.matches(element)) {
+			return true;
+		}
+
+		// the patterns of a sub-rule are redundant if the element must already match a pattern of a parent rule
+		boolean ruleConstrained = constrained || addTagPatterns(tagPatterns);
+		if (!ruleConstrained && !this.renderInstructions.isEmpty()) {
+			return false;
+		}
+		for (int i = 0, n = this.subRules.size(); i < n; ++i) {
+			if (!this.subRules.get(i).collectTagPatterns(element, zoomLevel, ruleConstrained, tagPatterns)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	void destroy() {
 		for (RenderInstruction ri : this.renderInstructions) {
 			ri.destroy();
@@ -61,31 +87,28 @@ abstract class Rule {
 		}
 	}
 
+	/**
+	 * Adds the tag patterns of which a matching element must contain at least one to the given set.
+	 * 
+	 * @return true if this rule requires a matching element to contain one of the added patterns, false otherwise.
+	 */
+	abstract boolean addTagPatterns(Set<Tag> tagPatterns);
+
 	abstract boolean matchesNode(List<Tag> tags, byte zoomLevel);
 
 	abstract boolean matchesWay(List<Tag> tags, byte zoomLevel, Closed closed);
 
-	void matchNode(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel) {
+	void matchNode(List<Tag> tags, byte zoomLevel, List<RenderInstruction> matchingList) {
 		if (matchesNode(tags, zoomLevel)) {
-			for (int i = 0, n = this.renderInstructions.size(); i < n; ++i) {
-				this.renderInstructions.get(i).renderNode(renderCallback, tags);
-			}
-			for (int i = 0, n = this.subRules.size(); i < n; ++i) {
-				this.subRules.get(i).matchNode(renderCallback, tags, zoomLevel);
-			}
+			matchingList.addAll(this.renderInstructions);
+			RuleIndex.matchNode(this.subRules, this.nodeSubRuleIndexes, tags, zoomLevel, matchingList);
 		}
 	}
 
-	void matchWay(RenderCallback renderCallback, List<Tag> tags, byte zoomLevel, Closed closed,
-			List<RenderInstruction> matchingList) {
+	void matchWay(List<Tag> tags, byte zoomLevel, Closed closed, List<RenderInstruction> matchingList) {
 		if (matchesWay(tags, zoomLevel, closed)) {
-			for (int i = 0, n = this.renderInstructions.size(); i < n; ++i) {
-				this.renderInstructions.get(i).renderWay(renderCallback, tags);
-				matchingList.add(this.renderInstructions.get(i));
-			}
-			for (int i = 0, n = this.subRules.size(); i < n; ++i) {
-				this.subRules.get(i).matchWay(renderCallback, tags, zoomLevel, closed, matchingList);
-			}
+			matchingList.addAll(this.renderInstructions);
+			RuleIndex.matchWay(this.subRules, this.waySubRuleIndexes, tags, zoomLevel, closed, matchingList);
 		}
 	}
 
@@ -98,23 +121,8 @@ abstract class Rule {
 		for (int i = 0, n = this.subRules.size(); i < n; ++i) {
 			this.subRules.get(i).onComplete();
 		}
-	}
 
-	void scaleStrokeWidth(float scaleFactor) {
-		for (int i = 0, n = this.renderInstructions.size(); i < n; ++i) {
-			this.renderInstructions.get(i).scaleStrokeWidth(scaleFactor);
-		}
-		for (int i = 0, n = this.subRules.size(); i < n; ++i) {
-			this.subRules.get(i).scaleStrokeWidth(scaleFactor);
-		}
-	}
-
-	void scaleTextSize(float scaleFactor) {
-		for (int i = 0, n = this.renderInstructions.size(); i < n; ++i) {
-			this.renderInstructions.get(i).scaleTextSize(scaleFactor);
-		}
-		for (int i = 0, n = this.subRules.size(); i < n; ++i) {
-			this.subRules.get(i).scaleTextSize(scaleFactor);
-		}
+		this.nodeSubRuleIndexes = RuleIndex.create(this.subRules, Element.NODE);
+		this.waySubRuleIndexes = RuleIndex.create(this.subRules, Element.WAY);
 	}
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+
+/**
+ * An index of a list of sibling rules, either the top-level rules of a {@link RenderTheme} or the sub-rules of a
+ * {@link Rule}, which may match an element of one type at one zoom level.
+ * <p>
+ * A rule which requires one of its keys is only reachable via the keys of an element, a rule which requires one of its
+ * values only via the values. All other rules are candidates for every element. The candidates are returned by their
+ * position in the list, so that they are matched in the same order as by a linear walk over all rules.
+ * <p>
+ * This class is immutable and thread-safe.
+ */
+final class RuleIndex {
+	/**
+	 * Minimum number of sibling rules for which an index is created, shorter lists are walked linearly.
+	 */
+	private static final int RULES_MIN = 4;
+
+	/**
+	 * Creates the indexes of the given rules for all zoom levels. The candidate rules only change at the zoom levels at
+	 * which a rule starts or ends, so consecutive zoom levels share the same index.
+	 * 
+	 * @param rules
+	 *            the sibling rules.
+	 * @param element
+	 *            the type of the elements which are matched.
+	 * @return the indexes by zoom level or null, if the rules should be walked linearly.
+	 */
+	static RuleIndex[] create(List<Rule> rules, Element element) {
+		if (rules.size() < RULES_MIN) {
+			return null;
+		}
+
+		int maxZoomLevel = 0;
+		Set<Integer> zoomLevels = new HashSet<Integer>();
+		for (int i = 0, n = rules.size(); i < n; ++i) {
+			Rule rule = rules.get(i);
+			zoomLevels.add(Integer.valueOf(rule.zoomMin));
+			maxZoomLevel = Math.max(maxZoomLevel, rule.zoomMin);
+			if (rule.zoomMax < Byte.MAX_VALUE) {
+				zoomLevels.add(Integer.valueOf(rule.zoomMax + 1));
+				maxZoomLevel = Math.max(maxZoomLevel, rule.zoomMax + 1);
+			}
+		}
+
+		RuleIndex[] ruleIndexes = new RuleIndex[maxZoomLevel + 1];
+		for (int zoomLevel = 0; zoomLevel <= maxZoomLevel; ++zoomLevel) {
+			if (zoomLevel == 0 || zoomLevels.contains(Integer.valueOf(zoomLevel))) {
+				ruleIndexes[zoomLevel] = new RuleIndex(rules, element, (byte) zoomLevel);
+			} else {
+				ruleIndexes[zoomLevel] = ruleIndexes[zoomLevel - 1];
+			}
+		}
+		return ruleIndexes;
+	}
+
+	/**
+	 * Adds the render instructions of all sibling rules which match the given node to the list, using their indexes.
+	 */
+	static void matchNode(List<Rule> rules, RuleIndex[] ruleIndexes, List<Tag> tags, byte zoomLevel,
+			List<RenderInstruction> matchingList) {
+		if (ruleIndexes == null) {
+			for (int i = 0, n = rules.size(); i < n; ++i) {
+				rules.get(i).matchNode(tags, zoomLevel, matchingList);
+			}
+			return;
+		}
+
+		BitSet candidates = get(ruleIndexes, zoomLevel).getCandidates(tags);
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+			rules.get(i).matchNode(tags, zoomLevel, matchingList);
+		}
+	}
+
+	/**
+	 * Adds the render instructions of all sibling rules which match the given way to the list, using their indexes.
+	 */
+	static void matchWay(List<Rule> rules, RuleIndex[] ruleIndexes, List<Tag> tags, byte zoomLevel, Closed closed,
+			List<RenderInstruction> matchingList) {
+		if (ruleIndexes == null) {
+			for (int i = 0, n = rules.size(); i < n; ++i) {
+				rules.get(i).matchWay(tags, zoomLevel, closed, matchingList);
+			}
+			return;
+		}
+
+		BitSet candidates = get(ruleIndexes, zoomLevel).getCandidates(tags);
+		for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+			rules.get(i).matchWay(tags, zoomLevel, closed, matchingList);
+		}
+	}
+
+	private static RuleIndex get(RuleIndex[] ruleIndexes, byte zoomLevel) {
+		// all zoom levels above the last indexed one share its index
+		return ruleIndexes[Math.min(zoomLevel, ruleIndexes.length - 1)];
+	}
+
+	private static void put(Map<String, List<Integer>> map, String string, int ruleIndex) {
+		List<Integer> ruleIndexes = map.get(string);
+		if (ruleIndexes == null) {
+			ruleIndexes = new ArrayList<Integer>(2);
+			map.put(string, ruleIndexes);
+		}
+		// a rule may contain the same key or value several times
+		if (ruleIndexes.isEmpty() || ruleIndexes.get(ruleIndexes.size() - 1).intValue() != ruleIndex) {
+			ruleIndexes.add(Integer.valueOf(ruleIndex));
+		}
+	}
+
+	private static void set(BitSet candidates, int[] ruleIndexes) {
+		if (ruleIndexes != null) {
+			for (int ruleIndex : ruleIndexes) {
+				candidates.set(ruleIndex);
+			}
+		}
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; ++i) {
+			array[i] = list.get(i).intValue();
+		}
+		return array;
+	}
+
+	private static Map<String, int[]> toArrays(Map<String, List<Integer>> map) {
+		Map<String, int[]> arrays = new HashMap<String, int[]>(map.size() * 2);
+		for (Map.Entry<String, List<Integer>> entry : map.entrySet()) {
+			arrays.put(entry.getKey(), toArray(entry.getValue()));
+		}
+		return arrays;
+	}
+
+	private final int numberOfRules;
+	private final Map<String, int[]> rulesByKey;
+	private final Map<String, int[]> rulesByValue;
+	private final int[] unconstrainedRules;
+
+	/**
+	 * @param rules
+	 *            the sibling rules.
+	 * @param element
+	 *            the type of the elements which are matched.
+	 * @param zoomLevel
+	 *            the zoom level at which the elements are matched.
+	 */
+	RuleIndex(List<Rule> rules, Element element, byte zoomLevel) {
+		Map<String, List<Integer>> keys = new HashMap<String, List<Integer>>();
+		Map<String, List<Integer>> values = new HashMap<String, List<Integer>>();
+		List<Integer> unconstrained = new ArrayList<Integer>();
+
+		Set<Tag> tagPatterns = new HashSet<Tag>();
+		for (int i = 0, n = rules.size(); i < n; ++i) {
+			Rule rule = rules.get(i);
+			if (rule.zoomMin > zoomLevel || rule.zoomMax < zoomLevel || !rule.elementMatcher.matches(element)) {
+				// the rule can never match
+				continue;
+			}
+
+			tagPatterns.clear();
+			if (!rule.addTagPatterns(tagPatterns)) {
+				unconstrained.add(Integer.valueOf(i));
+				continue;
+			}
+			for (Tag tagPattern : tagPatterns) {
+				if (tagPattern.key != null) {
+					put(keys, tagPattern.key, i);
+				} else {
+					put(values, tagPattern.value, i);
+				}
+			}
+		}
+
+		this.numberOfRules = rules.size();
+		this.rulesByKey = toArrays(keys);
+		this.rulesByValue = toArrays(values);
+		this.unconstrainedRules = toArray(unconstrained);
+	}
+
+	/**
+	 * @param tags
+	 *            the tags of the element.
+	 * @return the positions of all rules which may match an element with the given tags.
+	 */
+	BitSet getCandidates(List<Tag> tags) {
+		BitSet candidates = new BitSet(this.numberOfRules);
+		for (int ruleIndex : this.unconstrainedRules) {
+			candidates.set(ruleIndex);
+		}
+
+		for (int i = 0, n = tags.size(); i < n; ++i) {
+			Tag tag = tags.get(i);
+			set(candidates, this.rulesByKey.get(tag.key));
+			set(candidates, this.rulesByValue.get(tag.value));
+		}
+		return candidates;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.mapsforge.core.graphics.DelegatingGraphicFactory;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.ResourceBitmap;
+import org.mapsforge.core.util.IOUtils;
+
+/**
+ * A GraphicFactory which either records the SVG symbols rendered by another GraphicFactory or replaces them by
+ * previously recorded bitmaps. A recorded bitmap is only used if its SVG source and scale factor are unchanged.
+ */
+final class SymbolGraphicFactory extends DelegatingGraphicFactory {
+	/**
+	 * A rasterized SVG symbol.
+	 */
+	static final class Symbol {
+		final byte[] bitmap;
+		final long checksum;
+
+		Symbol(long checksum, byte[] bitmap) {
+			this.checksum = checksum;
+			this.bitmap = bitmap;
+		}
+	}
+
+	private static long getChecksum(byte[] data) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(data);
+		return crc32.getValue();
+	}
+
+	private final boolean recording;
+	private final float scaleFactor;
+	final Map<Integer, Symbol> symbols;
+
+	/**
+	 * Creates a GraphicFactory which records all SVG symbols rendered for the given scale factor.
+	 */
+	SymbolGraphicFactory(GraphicFactory graphicFactory, float scaleFactor) {
+		this(graphicFactory, scaleFactor, new HashMap<Integer, Symbol>(), true);
+	}
+
+	/**
+	 * Creates a GraphicFactory which replaces the SVG symbols for the given scale factor by the given bitmaps.
+	 */
+	SymbolGraphicFactory(GraphicFactory graphicFactory, float scaleFactor, Map<Integer, Symbol> symbols) {
+		this(graphicFactory, scaleFactor, symbols, false);
+	}
+
+	private SymbolGraphicFactory(GraphicFactory graphicFactory, float scaleFactor, Map<Integer, Symbol> symbols,
+			boolean recording) {
+		super(graphicFactory);
+		this.scaleFactor = scaleFactor;
+		this.symbols = symbols;
+		this.recording = recording;
+	}
+
+	@Override
+	public ResourceBitmap renderSvg(InputStream inputStream, float scaleFactor, int hash) throws IOException {
+		byte[] svg = IOUtils.readFully(inputStream);
+		long checksum = getChecksum(svg);
+		Integer key = Integer.valueOf(hash);
+
+		if (!this.recording && Float.compare(scaleFactor, this.scaleFactor) == 0) {
+			Symbol symbol = this.symbols.get(key);
+			if (symbol != null && symbol.checksum == checksum) {
+				return this.graphicFactory.createResourceBitmap(new ByteArrayInputStream(symbol.bitmap), hash);
+			}
+		}
+
+		ResourceBitmap resourceBitmap = this.graphicFactory.renderSvg(new ByteArrayInputStream(svg), scaleFactor,
+				hash);
+		if (this.recording && resourceBitmap != null && Float.compare(scaleFactor, this.scaleFactor) == 0) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			resourceBitmap.compress(outputStream);
+			this.symbols.put(key, new Symbol(checksum, outputStream.toByteArray()));
+		}
+		return resourceBitmap;
+	}
+}
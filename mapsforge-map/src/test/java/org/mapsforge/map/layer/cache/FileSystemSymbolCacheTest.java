@@ -0,0 +1,131 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.layer.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+
+public class FileSystemSymbolCacheTest {
+	/**
+	 * Counts the SVG render calls and returns a PNG bitmap for them, as the AWT GraphicFactory cannot render SVG.
+	 */
+	private static final class SvgInvocationHandler implements InvocationHandler {
+		int svgRenderCalls;
+
+		SvgInvocationHandler() {
+			// do nothing
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if ("renderSvg".equals(method.getName())) {
+				++this.svgRenderCalls;
+				InputStream inputStream = new FileInputStream(PNG_FILE);
+				try {
+					return GRAPHIC_FACTORY.createResourceBitmap(inputStream, ((Integer) args[2]).intValue());
+				} finally {
+					inputStream.close();
+				}
+			}
+			return method.invoke(GRAPHIC_FACTORY, args);
+		}
+	}
+
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final String PNG_FILE = "src/test/resources/rendertheme/parking.png";
+	private static final byte[] SVG1 = "<svg width=\"1\" height=\"1\" />".getBytes();
+	private static final byte[] SVG2 = "<svg width=\"2\" height=\"2\" />".getBytes();
+	private static final String TMP_DIR = System.getProperty("java.io.tmpdir");
+
+	private static Bitmap renderSvg(GraphicFactory graphicFactory, byte[] svg, float scaleFactor) throws IOException {
+		return graphicFactory.renderSvg(new ByteArrayInputStream(svg), scaleFactor, 42);
+	}
+
+	private final File cacheDirectory = new File(TMP_DIR, getClass().getSimpleName() + System.currentTimeMillis());
+	private final SvgInvocationHandler svgInvocationHandler = new SvgInvocationHandler();
+	private final GraphicFactory svgGraphicFactory = (GraphicFactory) Proxy.newProxyInstance(
+			GraphicFactory.class.getClassLoader(), new Class<?>[] { GraphicFactory.class }, this.svgInvocationHandler);
+
+	@After
+	public void afterTest() {
+		if (this.cacheDirectory.exists() && !this.cacheDirectory.delete()) {
+			throw new IllegalStateException("could not delete cache directory: " + this.cacheDirectory);
+		}
+	}
+
+	@Test
+	public void capacityZeroTest() throws IOException {
+		FileSystemSymbolCache symbolCache = new FileSystemSymbolCache(0, this.cacheDirectory, this.svgGraphicFactory);
+		Assert.assertNotNull(renderSvg(symbolCache, SVG1, 1));
+		Assert.assertNotNull(renderSvg(symbolCache, SVG1, 1));
+		Assert.assertEquals(2, this.svgInvocationHandler.svgRenderCalls);
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+
+		symbolCache.destroy();
+	}
+
+	@Test
+	public void fileSystemSymbolCacheTest() throws IOException {
+		FileSystemSymbolCache symbolCache = new FileSystemSymbolCache(2, this.cacheDirectory, this.svgGraphicFactory);
+		Assert.assertEquals(2, symbolCache.getCapacity());
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+
+		Bitmap bitmap = renderSvg(symbolCache, SVG1, 1);
+		Assert.assertEquals(1, this.svgInvocationHandler.svgRenderCalls);
+		Assert.assertEquals(1, this.cacheDirectory.list().length);
+
+		Bitmap cachedBitmap = renderSvg(symbolCache, SVG1, 1);
+		Assert.assertEquals(1, this.svgInvocationHandler.svgRenderCalls);
+		Assert.assertEquals(bitmap.getWidth(), cachedBitmap.getWidth());
+		Assert.assertEquals(bitmap.getHeight(), cachedBitmap.getHeight());
+
+		// a new instance uses the symbols of the previous one
+		symbolCache = new FileSystemSymbolCache(2, this.cacheDirectory, this.svgGraphicFactory);
+		Assert.assertNotNull(renderSvg(symbolCache, SVG1, 1));
+		Assert.assertEquals(1, this.svgInvocationHandler.svgRenderCalls);
+
+		// a different scale factor or source renders the symbol again
+		Assert.assertNotNull(renderSvg(symbolCache, SVG1, 2));
+		Assert.assertEquals(2, this.svgInvocationHandler.svgRenderCalls);
+		Assert.assertNotNull(renderSvg(symbolCache, SVG2, 2));
+		Assert.assertEquals(3, this.svgInvocationHandler.svgRenderCalls);
+		Assert.assertEquals(2, this.cacheDirectory.list().length);
+
+		// the least recently used symbol has been evicted
+		Assert.assertNotNull(renderSvg(symbolCache, SVG1, 1));
+		Assert.assertEquals(4, this.svgInvocationHandler.svgRenderCalls);
+
+		symbolCache.destroy();
+		Assert.assertEquals(0, this.cacheDirectory.list().length);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidConstructorTest() {
+		new FileSystemSymbolCache(-1, this.cacheDirectory, GRAPHIC_FACTORY);
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+
+public class MatchingCacheTest {
+	private static MatchingCacheKey createMatchingCacheKey(int i) {
+		return new MatchingCacheKey(Collections.singletonList(new Tag("key", String.valueOf(i))), (byte) 10, null);
+	}
+
+	@Test
+	public void capacityTest() {
+		MatchingCache matchingCache = new MatchingCache(64);
+		for (int i = 0; i < 1000; ++i) {
+			matchingCache.put(createMatchingCacheKey(i), new ArrayList<RenderInstruction>());
+			Assert.assertTrue(matchingCache.size() <= 64);
+		}
+
+		matchingCache.clear();
+		Assert.assertEquals(0, matchingCache.size());
+	}
+
+	@Test
+	public void getTest() {
+		MatchingCache matchingCache = new MatchingCache(64);
+		List<RenderInstruction> matchingList = new ArrayList<RenderInstruction>();
+		matchingCache.put(createMatchingCacheKey(1), matchingList);
+
+		Assert.assertSame(matchingList, matchingCache.get(createMatchingCacheKey(1)));
+		Assert.assertNull(matchingCache.get(createMatchingCacheKey(2)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void negativeCapacityTest() {
+		new MatchingCache(-1);
+	}
+
+	@Test
+	public void zeroCapacityTest() {
+		MatchingCache matchingCache = new MatchingCache(0);
+		matchingCache.put(createMatchingCacheKey(1), new ArrayList<RenderInstruction>());
+		Assert.assertNull(matchingCache.get(createMatchingCacheKey(1)));
+		Assert.assertEquals(0, matchingCache.size());
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.rule.RuleIndexTest.RecordingRenderCallback;
+import org.xml.sax.SAXException;
+
+public class RenderThemeCacheTest {
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final int THREADS = 4;
+
+	private static XmlRenderTheme getXmlRenderTheme() throws IOException {
+		return new ExternalRenderTheme(new File(RuleIndexTest.THEME_FILE));
+	}
+
+	@Test
+	public void concurrentMatchingTest() throws SAXException, ParserConfigurationException, IOException,
+			InterruptedException {
+		final RenderTheme renderTheme = RenderThemeCache.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(),
+				getXmlRenderTheme());
+		// a small node matching cache makes the threads evict each other's entries
+		renderTheme.setNodeMatchingCacheSize(16);
+		final List<List<Tag>> tagLists = RuleIndexTest.createTagLists(200, 2);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < THREADS; ++i) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (List<Tag> tags : tagLists) {
+							for (byte zoomLevel = 10; zoomLevel <= 18; ++zoomLevel) {
+								RecordingRenderCallback expected = new RecordingRenderCallback();
+								RecordingRenderCallback actual = new RecordingRenderCallback();
+
+								RuleIndexTest.matchNodeLinear(renderTheme, expected, tags, zoomLevel);
+								renderTheme.matchNode(actual, tags, zoomLevel, 1, 1);
+								RuleIndexTest.matchWayLinear(renderTheme, expected, tags, zoomLevel, Closed.YES);
+								renderTheme.matchClosedWay(actual, tags, zoomLevel, 1, 1);
+								Assert.assertEquals(expected.calls, actual.calls);
+							}
+						}
+					} catch (Throwable t) {
+						failure.compareAndSet(null, t);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Assert.assertNull(failure.get());
+		Assert.assertEquals((long) THREADS * tagLists.size() * 9,
+				renderTheme.getNodeMatchingCacheHits() + renderTheme.getNodeMatchingCacheMisses());
+
+		renderTheme.destroy();
+	}
+
+	@Test
+	public void sharedRenderThemeTest() throws SAXException, ParserConfigurationException, IOException {
+		DisplayModel displayModel1 = new DisplayModel();
+		DisplayModel displayModel2 = new DisplayModel();
+
+		RenderTheme renderTheme1 = RenderThemeCache.getRenderTheme(GRAPHIC_FACTORY, displayModel1,
+				getXmlRenderTheme());
+		RenderTheme renderTheme2 = RenderThemeCache.getRenderTheme(GRAPHIC_FACTORY, displayModel1,
+				getXmlRenderTheme());
+		RenderTheme renderTheme3 = RenderThemeCache.getRenderTheme(GRAPHIC_FACTORY, displayModel2,
+				getXmlRenderTheme());
+		Assert.assertSame(renderTheme1, renderTheme2);
+		Assert.assertNotSame(renderTheme1, renderTheme3);
+		Assert.assertEquals(2, RenderThemeCache.size());
+
+		// the shared theme stays alive until its last user destroys it
+		renderTheme1.destroy();
+		Assert.assertFalse(renderTheme2.isDestroyed());
+		Assert.assertSame(renderTheme2, RenderThemeCache.getRenderTheme(GRAPHIC_FACTORY, displayModel1,
+				getXmlRenderTheme()));
+		renderTheme2.destroy();
+		renderTheme2.destroy();
+		Assert.assertTrue(renderTheme2.isDestroyed());
+		Assert.assertEquals(1, RenderThemeCache.size());
+
+		RenderTheme renderTheme4 = RenderThemeCache.getRenderTheme(GRAPHIC_FACTORY, displayModel1,
+				getXmlRenderTheme());
+		Assert.assertNotSame(renderTheme2, renderTheme4);
+
+		renderTheme3.destroy();
+		renderTheme4.destroy();
+		Assert.assertEquals(0, RenderThemeCache.size());
+	}
+}
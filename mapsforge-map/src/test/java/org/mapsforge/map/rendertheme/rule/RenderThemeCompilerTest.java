@@ -0,0 +1,212 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.GraphicFactory;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.rule.RuleIndexTest.RecordingRenderCallback;
+import org.xml.sax.SAXException;
+
+public class RenderThemeCompilerTest {
+	/**
+	 * Counts the SVG render calls and returns a PNG bitmap for them, as the AWT GraphicFactory cannot render SVG.
+	 */
+	private static final class SvgInvocationHandler implements InvocationHandler {
+		int svgRenderCalls;
+
+		SvgInvocationHandler() {
+			// do nothing
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if ("renderSvg".equals(method.getName())) {
+				++this.svgRenderCalls;
+				InputStream inputStream = new FileInputStream(PNG_FILE);
+				try {
+					return GRAPHIC_FACTORY.createResourceBitmap(inputStream, ((Integer) args[2]).intValue());
+				} finally {
+					inputStream.close();
+				}
+			}
+			return method.invoke(GRAPHIC_FACTORY, args);
+		}
+	}
+
+	private static final GraphicFactory GRAPHIC_FACTORY = AwtGraphicFactory.INSTANCE;
+	private static final String PNG_FILE = "src/test/resources/rendertheme/parking.png";
+	private static final String SVG_THEME_FILE = "src/test/resources/rendertheme/svg-render-theme.xml";
+	private static final String TMP_DIR = System.getProperty("java.io.tmpdir");
+
+	private static byte[] compile(GraphicFactory graphicFactory, XmlRenderTheme xmlRenderTheme)
+			throws SAXException, ParserConfigurationException, IOException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		RenderThemeCompiler.compile(graphicFactory, new DisplayModel(), xmlRenderTheme, outputStream).destroy();
+		return outputStream.toByteArray();
+	}
+
+	private static RenderTheme load(GraphicFactory graphicFactory, XmlRenderTheme xmlRenderTheme, byte[] compiled)
+			throws SAXException, IOException {
+		return RenderThemeCompiler.load(graphicFactory, new DisplayModel(), xmlRenderTheme, new ByteArrayInputStream(
+				compiled));
+	}
+
+	/**
+	 * Replaces the platform objects in the recorded render calls by some of their properties.
+	 */
+	private static List<Object> normalize(List<Object> calls) {
+		List<Object> result = new ArrayList<Object>();
+		for (Object call : calls) {
+			if (call instanceof Paint) {
+				result.add(Boolean.valueOf(((Paint) call).isTransparent()));
+			} else if (call instanceof Bitmap) {
+				Bitmap bitmap = (Bitmap) call;
+				result.add(Arrays.asList(Integer.valueOf(bitmap.getWidth()), Integer.valueOf(bitmap.getHeight())));
+			} else {
+				result.add(call);
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void compileTest() throws SAXException, ParserConfigurationException, IOException {
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(RuleIndexTest.THEME_FILE));
+		RenderTheme expectedRenderTheme = RuleIndexTest.loadRenderTheme();
+		RenderTheme actualRenderTheme = load(GRAPHIC_FACTORY, xmlRenderTheme, compile(GRAPHIC_FACTORY, xmlRenderTheme));
+		Assert.assertNotNull(actualRenderTheme);
+		Assert.assertEquals(expectedRenderTheme.getLevels(), actualRenderTheme.getLevels());
+		Assert.assertEquals(expectedRenderTheme.getMapBackground(), actualRenderTheme.getMapBackground());
+
+		for (List<Tag> tags : RuleIndexTest.createTagLists(200, 3)) {
+			for (byte zoomLevel = 10; zoomLevel <= 18; ++zoomLevel) {
+				RecordingRenderCallback expected = new RecordingRenderCallback();
+				RecordingRenderCallback actual = new RecordingRenderCallback();
+
+				expectedRenderTheme.matchNode(expected, tags, zoomLevel, 1, 1);
+				actualRenderTheme.matchNode(actual, tags, zoomLevel, 1, 1);
+				expectedRenderTheme.matchClosedWay(expected, tags, zoomLevel, 1, 1);
+				actualRenderTheme.matchClosedWay(actual, tags, zoomLevel, 1, 1);
+				expectedRenderTheme.matchLinearWay(expected, tags, zoomLevel, 1, 1);
+				actualRenderTheme.matchLinearWay(actual, tags, zoomLevel, 1, 1);
+				Assert.assertEquals(normalize(expected.calls), normalize(actual.calls));
+			}
+		}
+
+		expectedRenderTheme.destroy();
+		actualRenderTheme.destroy();
+	}
+
+	@Test
+	public void compiledFileTest() throws SAXException, ParserConfigurationException, IOException {
+		File directory = new File(TMP_DIR, getClass().getSimpleName() + System.currentTimeMillis());
+		Assert.assertTrue(directory.mkdir());
+		File compiledFile = new File(directory, "theme.bin");
+		File invalidThemeFile = new File(directory, "invalid.xml");
+		try {
+			XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(RuleIndexTest.THEME_FILE));
+			RenderThemeCompiler.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(), xmlRenderTheme, compiledFile)
+					.destroy();
+			Assert.assertEquals(Arrays.asList(compiledFile.getName()), Arrays.asList(directory.list()));
+
+			// a theme which cannot be parsed must not leave an incomplete file behind
+			FileOutputStream fileOutputStream = new FileOutputStream(invalidThemeFile);
+			try {
+				fileOutputStream.write("<rendertheme".getBytes());
+			} finally {
+				fileOutputStream.close();
+			}
+			File invalidCompiledFile = new File(directory, "invalid.bin");
+			try {
+				RenderThemeCompiler.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(), new ExternalRenderTheme(
+						invalidThemeFile), invalidCompiledFile);
+				Assert.fail();
+			} catch (SAXException e) {
+				Assert.assertFalse(invalidCompiledFile.exists());
+			}
+			Assert.assertEquals(2, directory.list().length);
+		} finally {
+			compiledFile.delete();
+			invalidThemeFile.delete();
+			directory.delete();
+		}
+	}
+
+	@Test
+	public void scaleFactorTest() throws SAXException, ParserConfigurationException, IOException {
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(RuleIndexTest.THEME_FILE));
+		byte[] compiled = compile(GRAPHIC_FACTORY, xmlRenderTheme);
+
+		DisplayModel displayModel = new DisplayModel();
+		displayModel.setUserScaleFactor(displayModel.getUserScaleFactor() * 2);
+		Assert.assertNull(RenderThemeCompiler.load(GRAPHIC_FACTORY, displayModel, xmlRenderTheme,
+				new ByteArrayInputStream(compiled)));
+	}
+
+	@Test
+	public void staleTest() throws SAXException, ParserConfigurationException, IOException {
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(RuleIndexTest.THEME_FILE));
+		XmlRenderTheme otherXmlRenderTheme = new ExternalRenderTheme(new File(SVG_THEME_FILE));
+		byte[] compiled = compile(GRAPHIC_FACTORY, xmlRenderTheme);
+
+		Assert.assertNull(load(GRAPHIC_FACTORY, otherXmlRenderTheme, compiled));
+		Assert.assertNull(load(GRAPHIC_FACTORY, xmlRenderTheme, new byte[] { 0, 4, 'j', 'u', 'n', 'k' }));
+	}
+
+	@Test
+	public void symbolTest() throws SAXException, ParserConfigurationException, IOException {
+		SvgInvocationHandler svgInvocationHandler = new SvgInvocationHandler();
+		GraphicFactory graphicFactory = (GraphicFactory) Proxy.newProxyInstance(GraphicFactory.class.getClassLoader(),
+				new Class<?>[] { GraphicFactory.class }, svgInvocationHandler);
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(SVG_THEME_FILE));
+
+		byte[] compiled = compile(graphicFactory, xmlRenderTheme);
+		Assert.assertEquals(1, svgInvocationHandler.svgRenderCalls);
+
+		RenderTheme renderTheme = load(graphicFactory, xmlRenderTheme, compiled);
+		Assert.assertEquals(1, svgInvocationHandler.svgRenderCalls);
+
+		RecordingRenderCallback recordingRenderCallback = new RecordingRenderCallback();
+		renderTheme.matchNode(recordingRenderCallback, Arrays.asList(new Tag("amenity", "parking")), (byte) 16, 1, 1);
+		Bitmap symbol = (Bitmap) recordingRenderCallback.calls.get(1);
+		Assert.assertEquals(20, symbol.getWidth());
+		Assert.assertEquals(20, symbol.getHeight());
+		renderTheme.destroy();
+	}
+}
@@ -18,6 +18,7 @@ package org.mapsforge.map.rendertheme.rule;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -31,6 +32,7 @@ import org.mapsforge.map.model.DisplayModel;
 import org.mapsforge.map.rendertheme.ExternalRenderTheme;
 import org.mapsforge.map.rendertheme.RenderCallback;
 import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.rule.RuleIndexTest.RecordingRenderCallback;
 import org.xml.sax.SAXException;
 
 public class RenderThemeTest {
@@ -48,6 +50,32 @@ public class RenderThemeTest {
 		}
 	}
 
+	@Test
+	public void collectTagPatternsTest() throws SAXException, ParserConfigurationException, IOException {
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(RESOURCE_FOLDER, "test-render-theme.xml"));
+		RenderTheme renderTheme = RenderThemeHandler
+				.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(), xmlRenderTheme);
+
+		Tag amenity = new Tag("amenity", null);
+		Tag highway = new Tag("highway", null);
+		Tag place = new Tag("place", null);
+
+		for (byte zoomLevel = 0; zoomLevel < 25; ++zoomLevel) {
+			Assert.assertEquals(new HashSet<Tag>(Arrays.asList(amenity, highway)),
+					renderTheme.collectTagPatterns(Element.WAY, zoomLevel));
+
+			if (zoomLevel <= 15) {
+				Assert.assertEquals(new HashSet<Tag>(Arrays.asList(highway, place)),
+						renderTheme.collectTagPatterns(Element.NODE, zoomLevel));
+			} else {
+				Assert.assertEquals(new HashSet<Tag>(Arrays.asList(highway)),
+						renderTheme.collectTagPatterns(Element.NODE, zoomLevel));
+			}
+		}
+
+		renderTheme.destroy();
+	}
+
 	@Test
 	public void invalidRenderThemeTest() throws ParserConfigurationException, IOException {
 		verifyInvalid(RESOURCE_FOLDER + "invalid-render-theme1.xml");
@@ -55,6 +83,30 @@ public class RenderThemeTest {
 		verifyInvalid(RESOURCE_FOLDER + "invalid-render-theme3.xml");
 	}
 
+	@Test
+	public void scaledPaintsTest() throws SAXException, ParserConfigurationException, IOException {
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(RESOURCE_FOLDER, "test-render-theme.xml"));
+		RenderTheme renderTheme = RenderThemeHandler
+				.getRenderTheme(GRAPHIC_FACTORY, new DisplayModel(), xmlRenderTheme);
+
+		List<Tag> linearWayTags = Arrays.asList(new Tag("highway", "primary"), new Tag("oneway", "yes"));
+		byte zoomLevel = 17;
+
+		RecordingRenderCallback renderCallback1 = new RecordingRenderCallback();
+		RecordingRenderCallback renderCallback2 = new RecordingRenderCallback();
+		RecordingRenderCallback renderCallback3 = new RecordingRenderCallback();
+		renderTheme.matchLinearWay(renderCallback1, linearWayTags, zoomLevel, 1, 1);
+		renderTheme.matchLinearWay(renderCallback2, linearWayTags, zoomLevel, 2, 1);
+		renderTheme.matchLinearWay(renderCallback3, linearWayTags, zoomLevel, 1, 1);
+
+		// each scale factor has its own paints, which are reused when the factor comes up again
+		Assert.assertFalse(renderCallback1.calls.isEmpty());
+		Assert.assertEquals(renderCallback1.calls, renderCallback3.calls);
+		Assert.assertFalse(renderCallback1.calls.equals(renderCallback2.calls));
+
+		renderTheme.destroy();
+	}
+
 	@Test
 	public void validRenderThemeTest() throws SAXException, ParserConfigurationException, IOException {
 		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(RESOURCE_FOLDER, "test-render-theme.xml"));
@@ -63,9 +115,6 @@ public class RenderThemeTest {
 
 		Assert.assertEquals(3, renderTheme.getLevels());
 
-		renderTheme.scaleStrokeWidth(12.34f);
-		renderTheme.scaleTextSize(56.78f);
-
 		RenderCallback renderCallback = new DummyRenderCallback();
 
 		List<Tag> closedWayTags = Arrays.asList(new Tag("amenity", "parking"));
@@ -73,9 +122,9 @@ public class RenderThemeTest {
 		List<Tag> nodeTags = Arrays.asList(new Tag("place", "city"), new Tag("highway", "turning_circle"));
 
 		for (byte zoomLevel = 0; zoomLevel < 25; ++zoomLevel) {
-			renderTheme.matchClosedWay(renderCallback, closedWayTags, zoomLevel);
-			renderTheme.matchLinearWay(renderCallback, linearWayTags, zoomLevel);
-			renderTheme.matchNode(renderCallback, nodeTags, zoomLevel);
+			renderTheme.matchClosedWay(renderCallback, closedWayTags, zoomLevel, 12.34f, 56.78f);
+			renderTheme.matchLinearWay(renderCallback, linearWayTags, zoomLevel, 12.34f, 56.78f);
+			renderTheme.matchNode(renderCallback, nodeTags, zoomLevel, 12.34f, 56.78f);
 		}
 
 		renderTheme.destroy();
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+import org.xml.sax.SAXException;
+
+/**
+ * Compares the matching throughput of the rule indexes with a linear walk over all rules of the osmarender theme. Ways
+ * are matched without the matching cache, so each way match corresponds to a cache miss.
+ * <p>
+ * The benchmark takes several seconds and is therefore ignored by default. Remove the {@link Ignore} annotation to run
+ * it, the throughput of each round is logged.
+ */
+public class RuleIndexBenchmark {
+	private static final Logger LOGGER = Logger.getLogger(RuleIndexBenchmark.class.getName());
+	private static final int ROUNDS = 10;
+	private static final byte ZOOM_LEVEL_MAX = 18;
+
+	@Ignore("benchmark")
+	@Test
+	public void matchingThroughputTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderTheme renderTheme = RuleIndexTest.loadRenderTheme();
+		List<List<Tag>> tagLists = RuleIndexTest.createTagLists(2000, 42);
+		RenderCallback renderCallback = new DummyRenderCallback();
+		RuleIndex[] nodeRuleIndexes = RuleIndex.create(renderTheme.rulesList, Element.NODE);
+		RuleIndex[] wayRuleIndexes = RuleIndex.create(renderTheme.rulesList, Element.WAY);
+		List<RenderInstruction> matchingList = new ArrayList<RenderInstruction>();
+		long matches = 2L * tagLists.size() * (ZOOM_LEVEL_MAX + 1);
+		long linearTime = 0;
+		long indexedTime = 0;
+
+		for (int round = 0; round < ROUNDS; ++round) {
+			long startTime = System.nanoTime();
+			for (List<Tag> tags : tagLists) {
+				for (byte zoomLevel = 0; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+					RuleIndexTest.matchNodeLinear(renderTheme, renderCallback, tags, zoomLevel);
+					RuleIndexTest.matchWayLinear(renderTheme, renderCallback, tags, zoomLevel, Closed.NO);
+				}
+			}
+			linearTime = System.nanoTime() - startTime;
+
+			startTime = System.nanoTime();
+			for (List<Tag> tags : tagLists) {
+				for (byte zoomLevel = 0; zoomLevel <= ZOOM_LEVEL_MAX; ++zoomLevel) {
+					// bypass the matching caches of the render theme, so that each match is a cache miss
+					matchingList.clear();
+					RuleIndex.matchNode(renderTheme.rulesList, nodeRuleIndexes, tags, zoomLevel, matchingList);
+					for (RenderInstruction renderInstruction : matchingList) {
+						renderInstruction.renderNode(renderCallback, tags, 1, 1);
+					}
+					matchingList.clear();
+					RuleIndex.matchWay(renderTheme.rulesList, wayRuleIndexes, tags, zoomLevel, Closed.NO, matchingList);
+					for (RenderInstruction renderInstruction : matchingList) {
+						renderInstruction.renderWay(renderCallback, tags, 1, 1);
+					}
+				}
+			}
+			indexedTime = System.nanoTime() - startTime;
+
+			LOGGER.info("round " + round + ": linear " + matches * 1000000000L / linearTime
+					+ " matches/s, indexed " + matches * 1000000000L / indexedTime + " matches/s");
+		}
+
+		// after the warm-up rounds the rule indexes must be faster than the linear walk
+		Assert.assertTrue(indexedTime < linearTime);
+		renderTheme.destroy();
+	}
+}
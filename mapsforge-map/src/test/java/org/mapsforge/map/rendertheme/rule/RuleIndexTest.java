@@ -0,0 +1,239 @@
+/*
+ * Copyright 2014 mapsforge.org
+ *
+ * This program is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE. See the GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.mapsforge.map.rendertheme.rule;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mapsforge.core.graphics.Bitmap;
+import org.mapsforge.core.graphics.Paint;
+import org.mapsforge.core.model.Tag;
+import org.mapsforge.map.awt.AwtGraphicFactory;
+import org.mapsforge.map.model.DisplayModel;
+import org.mapsforge.map.rendertheme.ExternalRenderTheme;
+import org.mapsforge.map.rendertheme.RenderCallback;
+import org.mapsforge.map.rendertheme.XmlRenderTheme;
+import org.mapsforge.map.rendertheme.renderinstruction.RenderInstruction;
+import org.xml.sax.SAXException;
+
+public class RuleIndexTest {
+	/**
+	 * Records all render calls, so that the results of two matching runs can be compared.
+	 */
+	static class RecordingRenderCallback implements RenderCallback {
+		final List<Object> calls = new ArrayList<Object>();
+
+		@Override
+		public void renderArea(Paint fill, Paint stroke, int level) {
+			this.calls.addAll(Arrays.asList("area", fill, stroke, Integer.valueOf(level)));
+		}
+
+		@Override
+		public void renderAreaCaption(String caption, float verticalOffset, Paint fill, Paint stroke) {
+			this.calls.addAll(Arrays.asList("areaCaption", caption, Float.valueOf(verticalOffset), fill, stroke));
+		}
+
+		@Override
+		public void renderAreaSymbol(Bitmap symbol) {
+			this.calls.addAll(Arrays.asList("areaSymbol", symbol));
+		}
+
+		@Override
+		public void renderPointOfInterestCaption(String caption, float verticalOffset, Paint fill, Paint stroke) {
+			this.calls.addAll(Arrays.asList("poiCaption", caption, Float.valueOf(verticalOffset), fill, stroke));
+		}
+
+		@Override
+		public void renderPointOfInterestCircle(float radius, Paint fill, Paint stroke, int level) {
+			this.calls.addAll(Arrays.asList("poiCircle", Float.valueOf(radius), fill, stroke, Integer.valueOf(level)));
+		}
+
+		@Override
+		public void renderPointOfInterestSymbol(Bitmap symbol) {
+			this.calls.addAll(Arrays.asList("poiSymbol", symbol));
+		}
+
+		@Override
+		public void renderWay(Paint stroke, int level) {
+			this.calls.addAll(Arrays.asList("way", stroke, Integer.valueOf(level)));
+		}
+
+		@Override
+		public void renderWaySymbol(Bitmap symbol, boolean alignCenter, boolean repeat) {
+			this.calls.addAll(Arrays.asList("waySymbol", symbol, Boolean.valueOf(alignCenter),
+					Boolean.valueOf(repeat)));
+		}
+
+		@Override
+		public void renderWayText(String text, Paint fill, Paint stroke) {
+			this.calls.addAll(Arrays.asList("wayText", text, fill, stroke));
+		}
+	}
+
+	private static final String[] TAGS = { "amenity=parking", "amenity=restaurant", "area=yes", "boundary=national",
+			"bridge=yes", "building=yes", "highway=footway", "highway=motorway", "highway=primary",
+			"highway=residential", "highway=turning_circle", "landuse=forest", "landuse=residential", "leisure=park",
+			"name=Test", "natural=water", "oneway=yes", "place=city", "place=village", "railway=rail",
+			"tourism=hotel", "tunnel=yes", "waterway=river", "yes=yes" };
+
+	static final String THEME_FILE = "src/main/resources/osmarender/osmarender.xml";
+
+	/**
+	 * Creates random tag lists from a fixed vocabulary which covers many rules of the osmarender theme.
+	 */
+	static List<List<Tag>> createTagLists(int numberOfTagLists, long seed) {
+		Random random = new Random(seed);
+		List<List<Tag>> tagLists = new ArrayList<List<Tag>>(numberOfTagLists);
+		tagLists.add(Collections.<Tag> emptyList());
+		while (tagLists.size() < numberOfTagLists) {
+			int numberOfTags = 1 + random.nextInt(4);
+			List<Tag> tags = new ArrayList<Tag>(numberOfTags);
+			for (int i = 0; i < numberOfTags; ++i) {
+				tags.add(new Tag(TAGS[random.nextInt(TAGS.length)]));
+			}
+			tagLists.add(tags);
+		}
+		return tagLists;
+	}
+
+	static RenderTheme loadRenderTheme() throws SAXException, ParserConfigurationException, IOException {
+		XmlRenderTheme xmlRenderTheme = new ExternalRenderTheme(new File(THEME_FILE));
+		return RenderThemeHandler.getRenderTheme(AwtGraphicFactory.INSTANCE, new DisplayModel(), xmlRenderTheme);
+	}
+
+	/**
+	 * Matches a node against all rules of the given render theme without using any index.
+	 */
+	static void matchNodeLinear(RenderTheme renderTheme, RenderCallback renderCallback, List<Tag> tags,
+			byte zoomLevel) {
+		for (int i = 0, n = renderTheme.rulesList.size(); i < n; ++i) {
+			matchNodeLinear(renderTheme.rulesList.get(i), renderCallback, tags, zoomLevel);
+		}
+	}
+
+	/**
+	 * Matches a way against all rules of the given render theme without using any index or the matching cache.
+	 */
+	static void matchWayLinear(RenderTheme renderTheme, RenderCallback renderCallback, List<Tag> tags,
+			byte zoomLevel, Closed closed) {
+		for (int i = 0, n = renderTheme.rulesList.size(); i < n; ++i) {
+			matchWayLinear(renderTheme.rulesList.get(i), renderCallback, tags, zoomLevel, closed);
+		}
+	}
+
+	private static void matchNodeLinear(Rule rule, RenderCallback renderCallback, List<Tag> tags, byte zoomLevel) {
+		if (rule.matchesNode(tags, zoomLevel)) {
+			for (RenderInstruction renderInstruction : rule.renderInstructions) {
+				renderInstruction.renderNode(renderCallback, tags, 1, 1);
+			}
+			for (Rule subRule : rule.subRules) {
+				matchNodeLinear(subRule, renderCallback, tags, zoomLevel);
+			}
+		}
+	}
+
+	private static void matchWayLinear(Rule rule, RenderCallback renderCallback, List<Tag> tags, byte zoomLevel,
+			Closed closed) {
+		if (rule.matchesWay(tags, zoomLevel, closed)) {
+			for (RenderInstruction renderInstruction : rule.renderInstructions) {
+				renderInstruction.renderWay(renderCallback, tags, 1, 1);
+			}
+			for (Rule subRule : rule.subRules) {
+				matchWayLinear(subRule, renderCallback, tags, zoomLevel, closed);
+			}
+		}
+	}
+
+	@Test
+	public void indexedMatchingTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderTheme renderTheme = loadRenderTheme();
+
+		int matches = 0;
+		for (List<Tag> tags : createTagLists(500, 0)) {
+			for (byte zoomLevel = 0; zoomLevel <= 22; ++zoomLevel) {
+				RecordingRenderCallback expected = new RecordingRenderCallback();
+				RecordingRenderCallback actual = new RecordingRenderCallback();
+
+				matchNodeLinear(renderTheme, expected, tags, zoomLevel);
+				renderTheme.matchNode(actual, tags, zoomLevel, 1, 1);
+				Assert.assertEquals(expected.calls, actual.calls);
+
+				matchWayLinear(renderTheme, expected, tags, zoomLevel, Closed.NO);
+				renderTheme.matchLinearWay(actual, tags, zoomLevel, 1, 1);
+				Assert.assertEquals(expected.calls, actual.calls);
+
+				matchWayLinear(renderTheme, expected, tags, zoomLevel, Closed.YES);
+				renderTheme.matchClosedWay(actual, tags, zoomLevel, 1, 1);
+				Assert.assertEquals(expected.calls, actual.calls);
+
+				matches += expected.calls.size();
+			}
+		}
+		// make sure that the tags are relevant for the theme
+		Assert.assertTrue(matches > 0);
+
+		renderTheme.destroy();
+	}
+
+	@Test
+	public void nodeMatchingCacheTest() throws SAXException, ParserConfigurationException, IOException {
+		RenderTheme renderTheme = loadRenderTheme();
+		List<List<Tag>> tagLists = createTagLists(100, 1);
+		// the cache must be large enough to keep all combinations of tags and zoom levels
+		renderTheme.setNodeMatchingCacheSize(tagLists.size() * 23);
+
+		for (int round = 0; round < 2; ++round) {
+			for (List<Tag> tags : tagLists) {
+				for (byte zoomLevel = 0; zoomLevel <= 22; ++zoomLevel) {
+					RecordingRenderCallback expected = new RecordingRenderCallback();
+					RecordingRenderCallback actual = new RecordingRenderCallback();
+
+					matchNodeLinear(renderTheme, expected, tags, zoomLevel);
+					// a copy of the tags must hit the cache entry of the original list
+					renderTheme.matchNode(actual, new ArrayList<Tag>(tags), zoomLevel, 1, 1);
+					Assert.assertEquals(expected.calls, actual.calls);
+				}
+			}
+		}
+
+		// the random tag lists may contain duplicates, so only the second round is guaranteed to hit
+		long numberOfMatches = 2L * tagLists.size() * 23;
+		Assert.assertEquals(numberOfMatches, renderTheme.getNodeMatchingCacheHits()
+				+ renderTheme.getNodeMatchingCacheMisses());
+		Assert.assertTrue(renderTheme.getNodeMatchingCacheHits() >= numberOfMatches / 2);
+
+		renderTheme.setNodeMatchingCacheSize(0);
+		long misses = renderTheme.getNodeMatchingCacheMisses();
+		for (int i = 0; i < 2; ++i) {
+			RecordingRenderCallback expected = new RecordingRenderCallback();
+			RecordingRenderCallback actual = new RecordingRenderCallback();
+			matchNodeLinear(renderTheme, expected, tagLists.get(1), (byte) 17);
+			renderTheme.matchNode(actual, tagLists.get(1), (byte) 17, 1, 1);
+			Assert.assertEquals(expected.calls, actual.calls);
+		}
+		Assert.assertEquals(misses + 2, renderTheme.getNodeMatchingCacheMisses());
+
+		renderTheme.destroy();
+	}
+}